@@ -0,0 +1,124 @@
+package cpen221.mp3.codec;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestDeserializer;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.ActuatorEventDeserializer;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.event.SensorEventDeserializer;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares TextEventScanner against the regex-based deserializers on the events in data/tests/*.csv.
+ * Run with "gradle jmh" from the project root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextParsingBenchmark {
+
+    private String[] events;
+    private ByteBuffer[] eventBytes;
+    private String[] requests;
+
+    private final SensorEventDeserializer sensorDeserializer = new SensorEventDeserializer();
+    private final RequestDeserializer requestDeserializer = new RequestDeserializer();
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> serialized = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get("data/tests"), "*.csv")) {
+            for (Path file : files) {
+                List<String> lines = Files.readAllLines(file);
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] fields = line.split(",");
+                    double timeStamp = Double.parseDouble(fields[0]);
+                    int clientId = Integer.parseInt(fields[1]);
+                    int entityId = Integer.parseInt(fields[2]);
+                    if (fields[4].equals("boolean")) {
+                        serialized.add(new ActuatorEvent(timeStamp, clientId, entityId, fields[3],
+                                Boolean.parseBoolean(fields[5])).toString());
+                    } else {
+                        serialized.add(new SensorEvent(timeStamp, clientId, entityId, fields[3],
+                                Double.parseDouble(fields[5])).toString());
+                    }
+                }
+            }
+        }
+        events = serialized.toArray(new String[0]);
+        eventBytes = new ByteBuffer[events.length];
+        requests = new String[events.length];
+        for (int i = 0; i < events.length; i++) {
+            eventBytes[i] = ByteBuffer.wrap(events[i].getBytes(StandardCharsets.US_ASCII));
+            Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_LATEST_EVENTS,
+                    Integer.toString(i % 100));
+            requests[i] = "{ClientInfo{ClientID=" + (i % 8) + "}}," + request;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2000)
+    public void deserializerEvents(Blackhole bh) {
+        for (int i = 0; i < 2000; i++) {
+            String event = events[i % events.length];
+            bh.consume(event.startsWith("Sensor")
+                    ? sensorDeserializer.deserialize(event)
+                    : ActuatorEventDeserializer.deserialize(event));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2000)
+    public void scannerEvents(Blackhole bh) {
+        for (int i = 0; i < 2000; i++) {
+            bh.consume(TextEventScanner.parseEvent(events[i % events.length]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2000)
+    public void scannerEventBytes(Blackhole bh) {
+        for (int i = 0; i < 2000; i++) {
+            bh.consume(TextEventScanner.parseEvent(eventBytes[i % eventBytes.length]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2000)
+    public void deserializerRequests(Blackhole bh) {
+        for (int i = 0; i < 2000; i++) {
+            String frame = requests[i % requests.length];
+            int clientId = Integer.parseInt(frame.split("}},")[0].split("[=}]")[1].trim());
+            bh.consume(clientId);
+            bh.consume(requestDeserializer.deserialize(frame.split("}},")[1]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2000)
+    public void scannerRequests(Blackhole bh) {
+        for (int i = 0; i < 2000; i++) {
+            String frame = requests[i % requests.length];
+            bh.consume(TextEventScanner.parseRequestClientId(frame));
+            bh.consume(TextEventScanner.parseRequest(frame));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compares Filter.satisfies against the predicate returned by Filter.compile()
+ * and the column-wise Filter.select on the events in data/tests/single_client_1000_events_out-of-order.csv.
+ * Run with "gradle jmh" from the project root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"single", "complex"})
+    public String shape;
+
+    private Event[] events;
+    private Filter filter;
+    private Predicate<Event> compiled;
+
+    private double[] timeStamps;
+    private double[] values;
+    private long[] actuators;
+    private long[] booleans;
+    private long[] selection;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get("data/tests/single_client_1000_events_out-of-order.csv"));
+        List<Event> parsed = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            double timeStamp = Double.parseDouble(fields[0]);
+            int clientId = Integer.parseInt(fields[1]);
+            int entityId = Integer.parseInt(fields[2]);
+            if (fields[4].equals("boolean")) {
+                parsed.add(new ActuatorEvent(timeStamp, clientId, entityId, fields[3], Boolean.parseBoolean(fields[5])));
+            } else {
+                parsed.add(new SensorEvent(timeStamp, clientId, entityId, fields[3], Double.parseDouble(fields[5])));
+            }
+        }
+        events = parsed.toArray(new Event[0]);
+
+        int words = (events.length + 63) >>> 6;
+        timeStamps = new double[events.length];
+        values = new double[events.length];
+        actuators = new long[words];
+        booleans = new long[words];
+        selection = new long[words];
+        for (int i = 0; i < events.length; i++) {
+            timeStamps[i] = events[i].getTimeStamp();
+            values[i] = events[i].getValueDouble();
+            if (events[i] instanceof ActuatorEvent) {
+                actuators[i >>> 6] |= 1L << i;
+            }
+            if (events[i].getValueBoolean()) {
+                booleans[i >>> 6] |= 1L << i;
+            }
+        }
+
+        if (shape.equals("single")) {
+            filter = new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23);
+        } else {
+            filter = new Filter(List.of(
+                    new Filter("timestamp", DoubleOperator.GREATER_THAN, 1),
+                    new Filter("value", DoubleOperator.LESS_THAN, 1000),
+                    new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23),
+                    new Filter("timestamp", DoubleOperator.LESS_THAN_OR_EQUALS, 1000)));
+        }
+        compiled = filter.compile();
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int matches = 0;
+        for (Event event : events) {
+            if (filter.satisfies(event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int matches = 0;
+        for (Event event : events) {
+            if (compiled.test(event)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int selected() {
+        filter.select(events.length, timeStamps, values, actuators, booleans, selection);
+        int matches = 0;
+        for (long word : selection) {
+            matches += Long.bitCount(word);
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,58 @@
+package cpen221.mp3.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares predicting from a boxed history, from a double[] history,
+ * and from an OnlinePredictor that was updated as the history arrived.
+ * Run with "gradle jmh" from the project root.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictorBenchmark {
+
+    @Param({"1000", "100000"})
+    public int length;
+
+    private List<Double> boxed;
+    private double[] history;
+    private OnlinePredictor online;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(221);
+        boxed = new ArrayList<>();
+        history = new double[length];
+        online = new OnlinePredictor();
+        for (int i = 0; i < length; i++) {
+            double value = 20 + i * 0.01 + random.nextGaussian();
+            boxed.add(value);
+            history[i] = value;
+            online.add(value);
+        }
+    }
+
+    @Benchmark
+    public List<Double> predictor() {
+        return new Predictor(0, 10, boxed).predict();
+    }
+
+    @Benchmark
+    public double[] array() {
+        return Predictor.extrapolate(history, length, 10);
+    }
+
+    @Benchmark
+    public List<Double> online() {
+        return online.predict(10);
+    }
+}
@@ -1,9 +1,11 @@
 package cpen221.mp3.client;
 
+import cpen221.mp3.codec.BinaryCodec;
 import cpen221.mp3.entity.Entity;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -29,6 +31,7 @@ public class Client {
     // Server IP: serverIP represents the IP address of the server the client is connected to.
     // Server Port: serverPort represents the port number of the server the client is connected to.
     // Entity List: entityList is a list containing entities associated with the client.
+    // Binary Wire Format: binaryWireFormat indicates whether requests are sent as binary records instead of text.
 
     /**
      * Socket for communication with server
@@ -70,6 +73,11 @@ public class Client {
      **/
     private ArrayList<Entity> entityList;
 
+    /**
+     * True if requests are sent in the binary wire format
+     **/
+    private boolean binaryWireFormat = false;
+
 
     public Client(int clientId, String email, String serverIP, int serverPort) {
         this.clientId = clientId;
@@ -119,6 +127,10 @@ public class Client {
      * @param request request to send to server
      */
     public void sendRequest(Request request) {
+        if (this.binaryWireFormat) {
+            sendBinaryRequest(request);
+            return;
+        }
         try {
             this.socket = new Socket(serverIP, serverPort);
             out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
@@ -141,6 +153,36 @@ public class Client {
         }
     }
 
+    /**
+     * Sends a request to the server in the binary wire format and prints the reply
+     * @param request request to send to server
+     */
+    private void sendBinaryRequest(Request request) {
+        String data = request.getRequestData();
+        ByteBuffer record = ByteBuffer.allocate(64 + (data == null ? 0 : 3 * data.length()));
+        BinaryCodec.writePreamble(record);
+        BinaryCodec.encode(request, clientId, record);
+
+        try (Socket binarySocket = new Socket(serverIP, serverPort)) {
+            OutputStream output = binarySocket.getOutputStream();
+            output.write(record.array(), 0, record.position());
+            output.flush();
+
+            in = new BufferedReader(new InputStreamReader(binarySocket.getInputStream()));
+            System.out.println(in.readLine());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets whether requests are sent in the compact binary wire format instead of text
+     * @param binaryWireFormat true to send binary records
+     */
+    public void setBinaryWireFormat(boolean binaryWireFormat) {
+        this.binaryWireFormat = binaryWireFormat;
+    }
+
     public List<String> getData() {
         return new ArrayList<String>();
     }
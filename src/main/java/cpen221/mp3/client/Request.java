@@ -26,7 +26,15 @@ public class Request {
     private final String requestData;
 
     public Request(RequestType requestType, RequestCommand requestCommand, String requestData) {
-        this.timeStamp = System.currentTimeMillis();
+        this(System.currentTimeMillis(), requestType, requestCommand, requestData);
+    }
+
+    /**
+     * Creates a request that was made at the given time, such as one decoded from the wire
+     * @param timeStamp time at which the request was created
+     */
+    public Request(double timeStamp, RequestType requestType, RequestCommand requestCommand, String requestData) {
+        this.timeStamp = timeStamp;
         this.requestType = requestType;
         this.requestCommand = requestCommand;
         this.requestData = requestData;
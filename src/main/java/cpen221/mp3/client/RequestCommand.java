@@ -10,5 +10,16 @@ public enum RequestCommand {
     ANALYSIS_GET_LATEST_EVENTS,
     ANALYSIS_GET_MOST_ACTIVE_ENTITY,
     PREDICT_NEXT_N_TIMESTAMPS,
-    PREDICT_NEXT_N_VALUES
+    PREDICT_NEXT_N_VALUES,
+    ANALYSIS_GET_TOP_K_ACTIVE_ENTITIES,
+    ANALYSIS_REGISTER_WINDOW,
+    ANALYSIS_GET_WINDOW_RESULTS,
+    ANALYSIS_REMOVE_WINDOW,
+    ANALYSIS_GET_QUANTILES,
+    ANALYSIS_GET_DISTINCT_ENTITIES,
+    ANALYSIS_GET_GLOBAL_QUANTILES,
+    ANALYSIS_GET_GLOBAL_DISTINCT_ENTITIES,
+    CONTROL_REMOVE_SET_ACTUATOR_STATE,
+    CONTROL_REMOVE_TOGGLE_ACTUATOR_STATE,
+    ANALYSIS_SUMMARIZE_WINDOW
 }
\ No newline at end of file
@@ -0,0 +1,346 @@
+package cpen221.mp3.codec;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.EntityTypeCodes;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.server.ServerRequest;
+import cpen221.mp3.server.SeverCommandToActuator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary encoding of events and requests.
+ *
+ * A binary connection starts with a 4 byte preamble (0x00 'B' 'W' version). Text frames never start
+ * with a zero byte, so the first byte of a connection tells the receiver which format is used.
+ * After the preamble the connection carries records of the form [int length][byte tag][fields],
+ * where length counts the tag and fields. All multi-byte values are big-endian.
+ *
+ * SensorEvent:   tag, double timestamp, int clientId, int entityId, short type, double value
+ * ActuatorEvent: tag, double timestamp, int clientId, int entityId, short type, byte value
+ * Request:       tag, int clientId, double timestamp, byte type, byte command, int dataLength, data
+ * ServerRequest: tag, int clientId, double timestamp, byte command, byte actuatorState
+ *
+ * Well-known entity types are sent as their EntityTypeCodes code. Other types are sent as
+ * INLINE_TYPE followed by an unsigned byte length and the UTF-8 type name.
+ */
+public class BinaryCodec {
+
+    public static final byte VERSION = 1;
+    public static final int PREAMBLE_LENGTH = 4;
+    public static final int MAX_RECORD_LENGTH = 1 << 16;
+
+    public static final byte SENSOR_EVENT = 1;
+    public static final byte ACTUATOR_EVENT = 2;
+    public static final byte REQUEST = 3;
+    public static final byte SERVER_REQUEST = 4;
+
+    private static final byte[] MAGIC = {0x00, 'B', 'W'};
+    private static final short INLINE_TYPE = -1;
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+
+    private static final RequestType[] REQUEST_TYPES = RequestType.values();
+    private static final RequestCommand[] REQUEST_COMMANDS = RequestCommand.values();
+    private static final SeverCommandToActuator[] ACTUATOR_COMMANDS = SeverCommandToActuator.values();
+
+    private BinaryCodec() { }
+
+    /**
+     * Returns true if the given first byte of a connection starts a binary preamble
+     * @param first first byte received on the connection
+     * @return true if the connection uses the binary format
+     */
+    public static boolean isPreambleStart(byte first) {
+        return first == MAGIC[0];
+    }
+
+    /**
+     * Writes the preamble announcing the current binary format version
+     * @param out buffer to write to
+     */
+    public static void writePreamble(ByteBuffer out) {
+        out.put(MAGIC);
+        out.put(VERSION);
+    }
+
+    /**
+     * Reads and checks the preamble at the position of the buffer
+     * @param in buffer holding at least PREAMBLE_LENGTH bytes
+     * @return version announced by the peer
+     * @throws IllegalArgumentException if the bytes are not a preamble of a supported version
+     */
+    public static int readPreamble(ByteBuffer in) {
+        for (byte b : MAGIC) {
+            if (in.get() != b) {
+                throw new IllegalArgumentException("Not a binary preamble");
+            }
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary version " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Appends an event record to the buffer
+     * @param event sensor or actuator event to encode
+     * @param out buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer has too little space left
+     */
+    public static void encode(Event event, ByteBuffer out) {
+        int start = beginRecord(out);
+        boolean isActuator = event instanceof ActuatorEvent;
+        out.put(isActuator ? ACTUATOR_EVENT : SENSOR_EVENT);
+        out.putDouble(event.getTimeStamp());
+        out.putInt(event.getClientId());
+        out.putInt(event.getEntityId());
+        putType(event.getEntityType(), out);
+        if (isActuator) {
+            out.put((byte) (event.getValueBoolean() ? 1 : 0));
+        } else {
+            out.putDouble(event.getValueDouble());
+        }
+        endRecord(out, start);
+    }
+
+    /**
+     * Appends a client request record to the buffer
+     * @param request request to encode
+     * @param clientId ID of the client sending the request
+     * @param out buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer has too little space left
+     */
+    public static void encode(Request request, int clientId, ByteBuffer out) {
+        int start = beginRecord(out);
+        out.put(REQUEST);
+        out.putInt(clientId);
+        out.putDouble(request.getTimeStamp());
+        out.put((byte) request.getRequestType().ordinal());
+        out.put((byte) request.getRequestCommand().ordinal());
+        String data = request.getRequestData();
+        if (data == null) {
+            out.putInt(-1);
+        } else {
+            byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        endRecord(out, start);
+    }
+
+    /**
+     * Appends a server-to-actuator command record to the buffer
+     * @param request command to encode
+     * @param clientId ID of the client the actuator is registered to
+     * @param out buffer to write to
+     * @throws java.nio.BufferOverflowException if the buffer has too little space left
+     */
+    public static void encode(ServerRequest request, int clientId, ByteBuffer out) {
+        int start = beginRecord(out);
+        out.put(SERVER_REQUEST);
+        out.putInt(clientId);
+        out.putDouble(request.getTimeStamp());
+        out.put((byte) request.getCommand().ordinal());
+        out.put((byte) (request.getActuatorState() ? 1 : 0));
+        endRecord(out, start);
+    }
+
+    /**
+     * Returns the size of the record at the position of the buffer, if it has been received completely
+     * @param in buffer positioned at the start of a record
+     * @return size of the record including its length prefix, or -1 if more bytes are needed
+     * @throws IllegalArgumentException if the record is longer than MAX_RECORD_LENGTH
+     */
+    public static int nextRecordLength(ByteBuffer in) {
+        if (in.remaining() < LENGTH_PREFIX) {
+            return -1;
+        }
+        int length = in.getInt(in.position());
+        if (length <= 0 || length > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Invalid record length " + length);
+        }
+        return in.remaining() < LENGTH_PREFIX + length ? -1 : LENGTH_PREFIX + length;
+    }
+
+    /**
+     * Returns the tag of the complete record at the position of the buffer without consuming it
+     * @param in buffer positioned at the start of a complete record
+     * @return one of SENSOR_EVENT, ACTUATOR_EVENT, REQUEST or SERVER_REQUEST
+     */
+    public static byte tag(ByteBuffer in) {
+        return in.get(in.position() + LENGTH_PREFIX);
+    }
+
+    /**
+     * Returns the client ID of the complete request record at the position of the buffer without consuming it
+     * @param in buffer positioned at the start of a REQUEST or SERVER_REQUEST record
+     * @return ID of the client that sent the request
+     */
+    public static int requestClientId(ByteBuffer in) {
+        return in.getInt(in.position() + LENGTH_PREFIX + 1);
+    }
+
+    /**
+     * Returns the timestamp of the complete event record at the position of the buffer without consuming it
+     * @param in buffer positioned at the start of a SENSOR_EVENT or ACTUATOR_EVENT record
+     * @return timestamp of the event
+     */
+    public static double eventTimeStamp(ByteBuffer in) {
+        return in.getDouble(in.position() + LENGTH_PREFIX + 1);
+    }
+
+    /**
+     * Consumes an event record and appends the text Event.toString() gives for it,
+     * without creating the Event
+     * @param in buffer positioned at the start of a complete SENSOR_EVENT or ACTUATOR_EVENT record
+     * @param out builder to append to
+     * @throws IllegalArgumentException if the record is not an event
+     */
+    public static void appendEventText(ByteBuffer in, StringBuilder out) {
+        int end = in.position() + LENGTH_PREFIX + in.getInt();
+        byte tag = in.get();
+        if (tag != SENSOR_EVENT && tag != ACTUATOR_EVENT) {
+            throw new IllegalArgumentException("Not an event record: " + tag);
+        }
+        out.append(tag == SENSOR_EVENT ? "SensorEvent{" : "ActuatorEvent{");
+        out.append("TimeStamp=").append(in.getDouble());
+        out.append(",ClientId=").append(in.getInt());
+        out.append(",EntityId=").append(in.getInt());
+        out.append(",EntityType=").append(getType(in));
+        out.append(",Value=");
+        if (tag == SENSOR_EVENT) {
+            out.append(in.getDouble());
+        } else {
+            out.append(in.get() != 0);
+        }
+        out.append('}');
+        in.position(end);
+    }
+
+    /**
+     * Consumes an event record
+     * @param in buffer positioned at the start of a complete SENSOR_EVENT or ACTUATOR_EVENT record
+     * @return decoded event
+     * @throws IllegalArgumentException if the record is not an event
+     */
+    public static Event decodeEvent(ByteBuffer in) {
+        int end = in.position() + LENGTH_PREFIX + in.getInt();
+        byte tag = in.get();
+        if (tag != SENSOR_EVENT && tag != ACTUATOR_EVENT) {
+            throw new IllegalArgumentException("Not an event record: " + tag);
+        }
+        double timeStamp = in.getDouble();
+        int clientId = in.getInt();
+        int entityId = in.getInt();
+        String type = getType(in);
+        Event event;
+        if (tag == SENSOR_EVENT) {
+            event = new SensorEvent(timeStamp, clientId, entityId, type, in.getDouble());
+        } else {
+            event = new ActuatorEvent(timeStamp, clientId, entityId, type, in.get() != 0);
+        }
+        in.position(end);
+        return event;
+    }
+
+    /**
+     * Consumes a client request record
+     * @param in buffer positioned at the start of a complete REQUEST record
+     * @return decoded request, carrying the time stamp it was encoded with
+     * @throws IllegalArgumentException if the record is not a request or names an unknown type or command
+     */
+    public static Request decodeRequest(ByteBuffer in) {
+        int end = in.position() + LENGTH_PREFIX + in.getInt();
+        byte tag = in.get();
+        if (tag != REQUEST) {
+            throw new IllegalArgumentException("Not a request record: " + tag);
+        }
+        in.getInt();
+        double timeStamp = in.getDouble();
+        RequestType type = lookup(REQUEST_TYPES, in.get(), "request type");
+        RequestCommand command = lookup(REQUEST_COMMANDS, in.get(), "request command");
+        int dataLength = in.getInt();
+        String data = dataLength < 0 ? null : getString(in, dataLength);
+        in.position(end);
+        return new Request(timeStamp, type, command, data);
+    }
+
+    /**
+     * Consumes a server-to-actuator command record
+     * @param in buffer positioned at the start of a complete SERVER_REQUEST record
+     * @return decoded command, carrying the time stamp it was encoded with
+     * @throws IllegalArgumentException if the record is not a server request or names an unknown command
+     */
+    public static ServerRequest decodeServerRequest(ByteBuffer in) {
+        int end = in.position() + LENGTH_PREFIX + in.getInt();
+        byte tag = in.get();
+        if (tag != SERVER_REQUEST) {
+            throw new IllegalArgumentException("Not a server request record: " + tag);
+        }
+        in.getInt();
+        double timeStamp = in.getDouble();
+        SeverCommandToActuator command = lookup(ACTUATOR_COMMANDS, in.get(), "actuator command");
+        boolean state = in.get() != 0;
+        in.position(end);
+        return new ServerRequest(timeStamp, command, state);
+    }
+
+    private static int beginRecord(ByteBuffer out) {
+        int start = out.position();
+        out.putInt(0);
+        return start;
+    }
+
+    private static void endRecord(ByteBuffer out, int start) {
+        out.putInt(start, out.position() - start - LENGTH_PREFIX);
+    }
+
+    private static void putType(String type, ByteBuffer out) {
+        int code = EntityTypeCodes.codeOf(type);
+        if (EntityTypeCodes.isWellKnown(code)) {
+            out.putShort((short) code);
+        } else {
+            byte[] bytes = type.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFF) {
+                throw new IllegalArgumentException("Entity type name too long: " + type);
+            }
+            out.putShort(INLINE_TYPE);
+            out.put((byte) bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    private static String getType(ByteBuffer in) {
+        short code = in.getShort();
+        if (code != INLINE_TYPE) {
+            return EntityTypeCodes.typeOf(code);
+        }
+        return getString(in, in.get() & 0xFF);
+    }
+
+    private static <T> T lookup(T[] values, byte ordinal, String name) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown " + name + ": " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static String getString(ByteBuffer in, int length) {
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+}
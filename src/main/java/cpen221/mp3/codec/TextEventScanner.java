@@ -0,0 +1,370 @@
+package cpen221.mp3.codec;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.EntityTypeCodes;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass parser for the text wire format, i.e. the output of SensorEvent.toString(),
+ * ActuatorEvent.toString() and the "{ClientInfo{ClientID=n}},Request{...}" frames sent by Client.
+ *
+ * Fields are read in one forward pass in the order toString() writes them. Numbers are parsed in
+ * place without intermediate strings or arrays. Doubles that cannot be converted exactly in place
+ * fall back to Double.parseDouble, so results always match Double.toString round trips.
+ */
+public class TextEventScanner {
+
+    private static final String SENSOR_EVENT = "SensorEvent{";
+    private static final String ACTUATOR_EVENT = "ActuatorEvent{";
+    private static final String CLIENT_INFO = "{ClientInfo{ClientID=";
+    private static final String REQUEST = "}},Request{";
+
+    private static final RequestType[] REQUEST_TYPES = RequestType.values();
+    private static final RequestCommand[] REQUEST_COMMANDS = RequestCommand.values();
+
+    /**
+     * Largest mantissa that is exactly representable as a double
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Powers of ten that are exactly representable as a double
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private TextEventScanner() { }
+
+    /**
+     * Returns true if the frame is a client request rather than an event
+     * @param frame serialized request or event
+     * @return true if the frame starts with client info
+     */
+    public static boolean isRequestFrame(CharSequence frame) {
+        return frame.length() > 0 && frame.charAt(0) == '{';
+    }
+
+    /**
+     * Parses a serialized sensor or actuator event
+     * @param text output of SensorEvent.toString() or ActuatorEvent.toString()
+     * @return parsed event
+     * @throws IllegalArgumentException if the text is not a serialized event
+     */
+    public static Event parseEvent(CharSequence text) {
+        int end = text.length();
+        boolean isActuator;
+        int i;
+        if (startsWith(text, 0, SENSOR_EVENT)) {
+            isActuator = false;
+            i = SENSOR_EVENT.length();
+        } else if (startsWith(text, 0, ACTUATOR_EVENT)) {
+            isActuator = true;
+            i = ACTUATOR_EVENT.length();
+        } else {
+            throw malformed(text);
+        }
+
+        i = expect(text, i, "TimeStamp=");
+        int to = fieldEnd(text, i, end);
+        double timeStamp = parseDouble(text, i, to);
+
+        i = expect(text, to, ",ClientId=");
+        to = fieldEnd(text, i, end);
+        int clientId = parseInt(text, i, to);
+
+        i = expect(text, to, ",EntityId=");
+        to = fieldEnd(text, i, end);
+        int entityId = parseInt(text, i, to);
+
+        i = expect(text, to, ",EntityType=");
+        to = fieldEnd(text, i, end);
+        String entityType = parseEntityType(text, i, to);
+
+        i = expect(text, to, ",Value=");
+        to = fieldEnd(text, i, end);
+        if (to >= end || text.charAt(to) != '}') {
+            throw malformed(text);
+        }
+        if (isActuator) {
+            return new ActuatorEvent(timeStamp, clientId, entityId, entityType, parseBoolean(text, i, to));
+        }
+        return new SensorEvent(timeStamp, clientId, entityId, entityType, parseDouble(text, i, to));
+    }
+
+    /**
+     * Parses a serialized event held as ASCII bytes
+     * @param bytes remaining bytes hold the output of SensorEvent.toString() or ActuatorEvent.toString()
+     * @return parsed event
+     * @throws IllegalArgumentException if the bytes are not a serialized event
+     */
+    public static Event parseEvent(ByteBuffer bytes) {
+        return parseEvent(asCharSequence(bytes));
+    }
+
+    /**
+     * Parses the client ID of a request frame sent by Client.sendRequest
+     * @param frame "{ClientInfo{ClientID=n}},Request{...}"
+     * @return ID of the client that sent the request
+     * @throws IllegalArgumentException if the frame is not a request frame
+     */
+    public static int parseRequestClientId(CharSequence frame) {
+        int i = expect(frame, 0, CLIENT_INFO);
+        return parseInt(frame, i, fieldEnd(frame, i, frame.length()));
+    }
+
+    /**
+     * Parses the request of a request frame sent by Client.sendRequest
+     * @param frame "{ClientInfo{ClientID=n}},Request{...}"
+     * @return parsed request with the frame's time stamp, its data excludes the closing brace of the request
+     * @throws IllegalArgumentException if the frame is not a request frame
+     */
+    public static Request parseRequest(CharSequence frame) {
+        int end = frame.length();
+        int i = expect(frame, 0, CLIENT_INFO);
+        i = expect(frame, fieldEnd(frame, i, end), REQUEST);
+
+        i = expect(frame, i, "TimeStamp=");
+        int to = fieldEnd(frame, i, end);
+        double timeStamp = parseDouble(frame, i, to);
+
+        i = expect(frame, to, ",RequestType=");
+        to = fieldEnd(frame, i, end);
+        RequestType type = matchConstant(REQUEST_TYPES, frame, i, to);
+
+        i = expect(frame, to, ",RequestCommand=");
+        to = fieldEnd(frame, i, end);
+        RequestCommand command = matchConstant(REQUEST_COMMANDS, frame, i, to);
+
+        i = expect(frame, to, ",RequestData=");
+        if (end == i || frame.charAt(end - 1) != '}') {
+            throw malformed(frame);
+        }
+        return new Request(timeStamp, type, command, frame.subSequence(i, end - 1).toString());
+    }
+
+    /**
+     * Returns a character view of the remaining bytes of the buffer without copying them.
+     * Bytes outside the ASCII range are decoded as UTF-8 instead.
+     * The view does not change the position of the buffer.
+     * @param bytes frame bytes
+     * @return characters of the frame
+     */
+    public static CharSequence asCharSequence(ByteBuffer bytes) {
+        int from = bytes.position();
+        int to = bytes.limit();
+        for (int i = from; i < to; i++) {
+            if (bytes.get(i) < 0) {
+                ByteBuffer copy = bytes.duplicate();
+                return StandardCharsets.UTF_8.decode(copy).toString();
+            }
+        }
+        return new AsciiView(bytes, from, to);
+    }
+
+    /**
+     * Parses a double in place.
+     * Uses exact double arithmetic when the mantissa and power of ten are both exactly representable,
+     * which gives the correctly rounded result, and Double.parseDouble otherwise.
+     */
+    static double parseDouble(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean seenDot = false;
+        boolean exact = true;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa > (Long.MAX_VALUE - 9) / 10) {
+                    exact = false;
+                    break;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenDot) {
+                    exponent--;
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (exact && i < to && (s.charAt(i) == 'E' || s.charAt(i) == 'e')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = s.charAt(i) == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            int exponentDigits = 0;
+            for (; i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9' && explicitExponent < 10000; i++) {
+                explicitExponent = explicitExponent * 10 + (s.charAt(i) - '0');
+                exponentDigits++;
+            }
+            exact = exponentDigits > 0;
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (!exact || i != to || digits == 0 || mantissa > MAX_EXACT_MANTISSA
+                || exponent < -22 || exponent > 22) {
+            return Double.parseDouble(s.subSequence(from, to).toString());
+        }
+        double value = (double) mantissa;
+        value = exponent < 0 ? value / EXACT_POWERS_OF_TEN[-exponent] : value * EXACT_POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses an int in place
+     */
+    static int parseInt(CharSequence s, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == to || to - i > 9) {
+            return Integer.parseInt(s.subSequence(from, to).toString());
+        }
+        int value = 0;
+        for (; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("For input string: \"" + s.subSequence(from, to) + "\"");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean parseBoolean(CharSequence s, int from, int to) {
+        return to - from == 4 && startsWithIgnoreCase(s, from, "true");
+    }
+
+    /**
+     * Returns the interned name of a well-known entity type without allocating,
+     * or a new string for any other type
+     */
+    private static String parseEntityType(CharSequence s, int from, int to) {
+        for (int code = 0; EntityTypeCodes.isWellKnown(code); code++) {
+            String type = EntityTypeCodes.typeOf(code);
+            if (type.length() == to - from && startsWith(s, from, type)) {
+                return type;
+            }
+        }
+        return s.subSequence(from, to).toString();
+    }
+
+    private static <E extends Enum<E>> E matchConstant(E[] constants, CharSequence s, int from, int to) {
+        for (E constant : constants) {
+            String name = constant.name();
+            if (name.length() == to - from && startsWith(s, from, name)) {
+                return constant;
+            }
+        }
+        throw malformed(s);
+    }
+
+    /**
+     * @return index after the expected text
+     * @throws IllegalArgumentException if the expected text is not at index i
+     */
+    private static int expect(CharSequence s, int i, String expected) {
+        if (!startsWith(s, i, expected)) {
+            throw malformed(s);
+        }
+        return i + expected.length();
+    }
+
+    /**
+     * @return index of the ',' or '}' that ends the field starting at i, or end if there is none
+     */
+    private static int fieldEnd(CharSequence s, int i, int end) {
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == ',' || c == '}') {
+                return i;
+            }
+            i++;
+        }
+        return end;
+    }
+
+    private static boolean startsWith(CharSequence s, int i, String prefix) {
+        if (i < 0 || i + prefix.length() > s.length()) {
+            return false;
+        }
+        for (int j = 0; j < prefix.length(); j++) {
+            if (s.charAt(i + j) != prefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence s, int i, String prefix) {
+        for (int j = 0; j < prefix.length(); j++) {
+            if (Character.toLowerCase(s.charAt(i + j)) != prefix.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException malformed(CharSequence s) {
+        return new IllegalArgumentException("Malformed frame: " + s);
+    }
+
+    private static class AsciiView implements CharSequence {
+        private final ByteBuffer bytes;
+        private final int from;
+        private final int to;
+
+        private AsciiView(ByteBuffer bytes, int from, int to) {
+            this.bytes = bytes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(from + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiView(bytes, from + start, from + end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[to - from];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cpen221.mp3.entity;
 
 import cpen221.mp3.client.Request;
+import cpen221.mp3.codec.BinaryCodec;
 import cpen221.mp3.event.ActuatorEvent;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.RandomEvent;
@@ -11,6 +12,7 @@ import cpen221.mp3.server.SeverCommandToActuator;
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 
 public class Actuator implements Entity {
@@ -26,6 +28,7 @@ public class Actuator implements Entity {
     // 7. Valid Host IP: The host must represent a valid IP address.
     // 8. Valid Command Port: The port for receiving commands must be within the valid port range (0 to 65535).
     // 9. Server Socket Initialization: The serverSocket must be initialized if serverPort is specified.
+    // 10. Non-null Event Stream: The eventStream must not be null.
 
     // Abstraction function:
     // Maps the internal state of the Actuator class to the abstract representation of an actuator entity.
@@ -37,6 +40,8 @@ public class Actuator implements Entity {
     // Event Generation Frequency: eventGenerationFrequency represents the frequency at which events are generated.
     // Server IP: serverIP represents the IP address to which events are sent.
     // Server Port: serverPort represents the port to which events are sent.
+    // Persistent Connection: persistentConnection indicates whether events are streamed over one long-lived connection.
+    // Event Stream: eventStream represents the long-lived connection to the server.
     // Host: host represents the IP address from which commands can be received.
     // Port: port represents the port from which commands can be received.
     // Server Socket: serverSocket represents the socket used for receiving commands.
@@ -77,6 +82,16 @@ public class Actuator implements Entity {
      * Server port number
      */
     private int serverPort = 0;
+
+    /**
+     * True if events are streamed over one long-lived connection to the server
+     */
+    private boolean persistentConnection = false;
+
+    /**
+     * Long-lived connection events are streamed over
+     */
+    private final EventStream eventStream = new EventStream();
     // the following specifies the http endpoint that the actuator should be able to receive commands on from server
 
     /**
@@ -135,6 +150,7 @@ public class Actuator implements Entity {
         this.state = init_state;
         this.serverIP = serverIP;
         this.serverPort = serverPort;
+        this.eventStream.setEndpoint(serverIP, serverPort);
         try {
             this.serverSocket = new ServerSocket(this.port);
             Thread thread1 = new Thread(() -> this.serve());
@@ -153,6 +169,7 @@ public class Actuator implements Entity {
         this.state = init_state;
         this.serverIP = serverIP;
         this.serverPort = serverPort;
+        this.eventStream.setEndpoint(serverIP, serverPort);
         try {
             this.serverSocket = new ServerSocket(this.port);
             Thread thread1 = new Thread(() -> this.serve());
@@ -181,7 +198,9 @@ public class Actuator implements Entity {
     }
 
     public boolean getState() {
-        return state;
+        synchronized (this) {
+            return state;
+        }
     }
 
     public String getIP() {
@@ -229,9 +248,35 @@ public class Actuator implements Entity {
         synchronized (this) {
             this.serverIP = serverIP;
             this.serverPort = serverPort;
+            this.eventStream.setEndpoint(serverIP, serverPort);
+        }
+    }
+
+    /**
+     * Sets whether events are streamed over one long-lived connection
+     * or sent over a new connection per event, the default
+     *
+     * @param persistentConnection true to keep one connection open to the server
+     */
+    public void setPersistentConnection(boolean persistentConnection) {
+        synchronized (this) {
+            this.persistentConnection = persistentConnection;
+            if (!persistentConnection) {
+                this.eventStream.close();
+            }
         }
     }
 
+    /**
+     * Sets whether events are streamed in the compact binary wire format
+     * instead of text. Only applies to the persistent connection.
+     *
+     * @param binary true to send binary records
+     */
+    public void setBinaryWireFormat(boolean binary) {
+        this.eventStream.setBinary(binary);
+    }
+
     /**
      * Sets the frequency of event generation
      *
@@ -250,6 +295,16 @@ public class Actuator implements Entity {
      * @param event event to send to server
      */
     public void sendEvent(Event event) {
+        if (this.persistentConnection) {
+            try {
+                if (!this.eventStream.send(event)) {
+                    System.err.println("Server unreachable, event dropped: " + event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
         try {
             Socket socket = new Socket(serverIP, serverPort);
 
@@ -269,43 +324,110 @@ public class Actuator implements Entity {
     }
 
     /**
-     * Listens for ServerCommandToActuator
+     * Listens for ServerCommandToActuator connections until the command socket is closed.
+     * Each connection is handled on its own thread and may carry any number of commands.
      */
     public void serve() {
-        Socket incomingSocket = null;
-        try {
-            incomingSocket = serverSocket.accept();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        Socket finalIncomingSocket = incomingSocket;
-        Thread thread = new Thread(new Runnable() {
-            public void run() {
-                handle(finalIncomingSocket);
+        while (!serverSocket.isClosed()) {
+            Socket incomingSocket;
+            try {
+                incomingSocket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
             }
-        });
-        thread.start();
+            Thread thread = new Thread(() -> handle(incomingSocket));
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
     /**
-     * Handles and deserializes ServerCommandToActuator
-     * @param socket socket that the command is received at
+     * Handles and deserializes ServerCommandToActuator until the sender closes the connection.
+     * Commands are newline-delimited, and each one is acknowledged in order with a line
+     * holding the state of the actuator after the command. A malformed command is skipped,
+     * and acknowledged with the unchanged state so that later acknowledgements stay in order.
+     * @param socket socket that the commands are received at
      */
     public void handle(Socket socket) {
-        try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            String requestString = in.readLine();
+        try (socket) {
+            BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+            Writer ack = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            input.mark(1);
+            int first = input.read();
+            input.reset();
+            if (first >= 0 && BinaryCodec.isPreambleStart((byte) first)) {
+                DataInputStream in = new DataInputStream(input);
+                byte[] preamble = new byte[BinaryCodec.PREAMBLE_LENGTH];
+                in.readFully(preamble);
+                BinaryCodec.readPreamble(ByteBuffer.wrap(preamble));
+                while (true) {
+                    ServerRequest command;
+                    try {
+                        command = readBinaryCommand(in);
+                    } catch (EOFException e) {
+                        return;
+                    } catch (IllegalArgumentException e) {
+                        command = null;
+                    }
+                    if (command != null) {
+                        processServerMessage(command);
+                    }
+                    acknowledge(ack, input.available() == 0);
+                }
+            }
 
-            String[] parts = requestString.split("[,=}]");
+            BufferedReader in = new BufferedReader(new InputStreamReader(input));
+            String requestString;
+            while ((requestString = in.readLine()) != null) {
+                if (requestString.isBlank()) {
+                    continue;
+                }
+                String[] parts = requestString.split("[,=}]");
 
-            SeverCommandToActuator command = SeverCommandToActuator.valueOf(parts[3].trim());
-            boolean actuatorState = Boolean.parseBoolean(parts[5].trim());
+                try {
+                    SeverCommandToActuator command = SeverCommandToActuator.valueOf(parts[3].trim());
+                    boolean actuatorState = Boolean.parseBoolean(parts[5].trim());
+                    processServerMessage(new ServerRequest(command, actuatorState));
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    // malformed command, leave the state unchanged
+                }
+                acknowledge(ack, !in.ready());
+            }
+        } catch (IOException | RuntimeException e) {
+            // the sender closed the connection or sent a record that cannot be framed
+        }
+    }
 
-            processServerMessage(new ServerRequest(command, actuatorState));
+    /**
+     * Writes the acknowledgement of a command
+     * @param ack writer on the connection the command came from
+     * @param flush false while further pipelined commands are already waiting to be read,
+     *              so that their acknowledgements are sent together
+     */
+    private void acknowledge(Writer ack, boolean flush) throws IOException {
+        ack.write(Boolean.toString(getState()));
+        ack.write('\n');
+        if (flush) {
+            ack.flush();
+        }
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Reads one ServerCommandToActuator record sent in the binary wire format
+     * @param in stream positioned after the preamble of the connection
+     * @return the command that was sent
+     * @throws IllegalArgumentException if the record was read completely but does not hold a valid command
+     */
+    private ServerRequest readBinaryCommand(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > BinaryCodec.MAX_RECORD_LENGTH) {
+            throw new IOException("Invalid record length " + length);
         }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length);
+        in.readFully(record.array(), Integer.BYTES, length);
+        record.rewind();
+        return BinaryCodec.decodeServerRequest(record);
     }
 
     /**
@@ -313,10 +435,12 @@ public class Actuator implements Entity {
      * @param command
      */
     public void processServerMessage(Request command) {
-        if (command.getCommand().equals(SeverCommandToActuator.TOGGLE_STATE)) {
-            this.state = !(this.state);
-        } else if (command.getCommand().equals(SeverCommandToActuator.SET_STATE)) {
-            this.state = command.getActuatorState();
+        synchronized (this) {
+            if (command.getCommand().equals(SeverCommandToActuator.TOGGLE_STATE)) {
+                this.state = !(this.state);
+            } else if (command.getCommand().equals(SeverCommandToActuator.SET_STATE)) {
+                this.state = command.getActuatorState();
+            }
         }
     }
 
@@ -346,25 +470,35 @@ public class Actuator implements Entity {
                 }
             }
 
-            try {
-                Socket socket = new Socket(serverIP, serverPort);
+            if (this.persistentConnection) {
+                try {
+                    if (!this.eventStream.send(this.generateEvent())) {
+                        failedAttempts++;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                try {
+                    Socket socket = new Socket(serverIP, serverPort);
 
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
 
-                out.print(this.generateEvent().toString());
-                out.flush();
+                    out.print(this.generateEvent().toString());
+                    out.flush();
 
-                int exitCode = in.read();
-                if(!(exitCode == 1)) {
-                    failedAttempts++;
-                }
-                in.close();
-                out.close();
+                    int exitCode = in.read();
+                    if(!(exitCode == 1)) {
+                        failedAttempts++;
+                    }
+                    in.close();
+                    out.close();
 
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                    socket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
 
             if(failedAttempts == 5) {
@@ -0,0 +1,176 @@
+package cpen221.mp3.entity;
+
+import cpen221.mp3.codec.BinaryCodec;
+import cpen221.mp3.event.Event;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class EventStream {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Send Time: maxSendMillis must be positive.
+    // 2. Connected Stream: socket is null if and only if out is null.
+
+    // Abstraction function:
+    // Maps the internal state of the EventStream class to the abstract representation of a long-lived
+    // connection from an entity to the server over which newline-delimited events are streamed.
+    //
+    // Server IP: serverIP represents the IP address events are sent to.
+    // Server Port: serverPort represents the port events are sent to.
+    // Socket: socket represents the open connection, or null if not connected.
+    // Output Stream: out represents the buffered stream events are written to.
+    // Max Send Time: maxSendMillis represents how long send keeps retrying before it drops an event.
+    // Binary: binary indicates whether the connection negotiates the binary wire format instead of text.
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+    private static final long DEFAULT_MAX_SEND_MILLIS = 30000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private String serverIP;
+    private int serverPort;
+    private Socket socket;
+    private OutputStream out;
+    private final long maxSendMillis;
+    private boolean binary = false;
+
+    /**
+     * Buffer events are encoded into when the binary wire format is used
+     */
+    private final ByteBuffer record = ByteBuffer.allocate(512);
+
+    EventStream() {
+        this(DEFAULT_MAX_SEND_MILLIS);
+    }
+
+    /**
+     * Creates an unconnected stream
+     * @param maxSendMillis how long send keeps retrying before it drops an event, must be positive
+     */
+    EventStream(long maxSendMillis) {
+        this.maxSendMillis = maxSendMillis;
+    }
+
+    /**
+     * Sets the endpoint that events are streamed to.
+     * Takes effect on the next attempt of a send that is waiting to retry.
+     * An open connection to a different endpoint is closed.
+     * @param serverIP the IP address of the endpoint
+     * @param serverPort the port number of the endpoint
+     */
+    public synchronized void setEndpoint(String serverIP, int serverPort) {
+        if (!(serverIP != null && serverIP.equals(this.serverIP) && serverPort == this.serverPort)) {
+            close();
+        }
+        this.serverIP = serverIP;
+        this.serverPort = serverPort;
+    }
+
+    /**
+     * Sets the wire format used by the connection.
+     * An open connection using the other format is closed.
+     * @param binary true to send binary records, false to send text lines
+     */
+    public synchronized void setBinary(boolean binary) {
+        if (this.binary != binary) {
+            close();
+        }
+        this.binary = binary;
+    }
+
+    /**
+     * Sends an event as a single line or binary record over the open connection.
+     * If the connection is lost, reconnects with exponential backoff, reading the endpoint again
+     * on every attempt. The stream is not locked while waiting, so setEndpoint and close take effect
+     * right away. Gives up after the stream's maximum send time.
+     * @param event event to send to server
+     * @return true if the event was sent, false if it was dropped because no attempt succeeded in time
+     * @throws InterruptedException if interrupted while waiting to reconnect
+     */
+    public boolean send(Event event) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxSendMillis;
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+        while (!trySend(event)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(backoffMillis, remaining));
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        }
+        return true;
+    }
+
+    /**
+     * Makes one attempt to send an event, connecting to the current endpoint if needed
+     * @return true if the event was written, false if the connection failed and was closed
+     */
+    private synchronized boolean trySend(Event event) {
+        byte[] bytes;
+        int length;
+        if (binary) {
+            record.clear();
+            BinaryCodec.encode(event, record);
+            bytes = record.array();
+            length = record.position();
+        } else {
+            bytes = (event.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+            length = bytes.length;
+        }
+        try {
+            if (socket == null) {
+                connect();
+            }
+            out.write(bytes, 0, length);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the connection, if open. The next send reconnects.
+     */
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // connection is already unusable
+            }
+        }
+        socket = null;
+        out = null;
+    }
+
+    private void connect() throws IOException {
+        if (serverIP == null || serverPort == 0) {
+            throw new IOException("No endpoint configured");
+        }
+        Socket newSocket = new Socket();
+        try {
+            newSocket.connect(new InetSocketAddress(serverIP, serverPort), CONNECT_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            newSocket.close();
+            throw e;
+        }
+        newSocket.setTcpNoDelay(true);
+        newSocket.setKeepAlive(true);
+        this.out = new BufferedOutputStream(newSocket.getOutputStream());
+        this.socket = newSocket;
+        if (binary) {
+            ByteBuffer preamble = ByteBuffer.allocate(BinaryCodec.PREAMBLE_LENGTH);
+            BinaryCodec.writePreamble(preamble);
+            out.write(preamble.array());
+        }
+    }
+}
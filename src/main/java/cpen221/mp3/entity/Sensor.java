@@ -17,6 +17,7 @@ public class Sensor implements Entity {
     // 4. Valid Server IP: The serverIP must represent a valid IP address.
     // 5. Valid Server Port: The serverPort must be within the valid port range (0 to 65535).
     // 6. Valid Event Generation Frequency: The eventGenerationFrequency must be greater than 0.
+    // 7. Non-null Event Stream: The eventStream must not be null.
 
     // Abstraction function:
     // Maps the internal state of the Sensor class to the abstract representation of a sensor entity.
@@ -27,6 +28,8 @@ public class Sensor implements Entity {
     // Server IP: serverIP represents the IP address to which events are sent.
     // Server Port: serverPort represents the port to which events are sent.
     // Event Generation Frequency: eventGenerationFrequency represents the frequency at which events are generated.
+    // Persistent Connection: persistentConnection indicates whether events are streamed over one long-lived connection.
+    // Event Stream: eventStream represents the long-lived connection to the server.
 
     private final int id;
     private int clientId;
@@ -34,6 +37,8 @@ public class Sensor implements Entity {
     private String serverIP = null;
     private int serverPort = 0;
     private double eventGenerationFrequency = 0.2; // default value in Hz (1/s)
+    private boolean persistentConnection = false;
+    private final EventStream eventStream = new EventStream();
 
     public Sensor(int id, String type) {
         this.id = id;
@@ -53,6 +58,7 @@ public class Sensor implements Entity {
         this.type = type;
         this.serverIP = serverIP;
         this.serverPort = serverPort;
+        this.eventStream.setEndpoint(serverIP, serverPort);
     }
 
     public Sensor(int id, int clientId, String type, String serverIP, int serverPort) {
@@ -61,6 +67,7 @@ public class Sensor implements Entity {
         this.type = type;
         this.serverIP = serverIP;
         this.serverPort = serverPort;
+        this.eventStream.setEndpoint(serverIP, serverPort);
     }
 
     public int getId() {
@@ -106,9 +113,35 @@ public class Sensor implements Entity {
         synchronized (this) {
             this.serverIP = serverIP;
             this.serverPort = serverPort;
+            this.eventStream.setEndpoint(serverIP, serverPort);
         }
     }
 
+    /**
+     * Sets whether events are streamed over one long-lived connection
+     * or sent over a new connection per event, the default
+     *
+     * @param persistentConnection true to keep one connection open to the server
+     */
+    public void setPersistentConnection(boolean persistentConnection) {
+        synchronized (this) {
+            this.persistentConnection = persistentConnection;
+            if (!persistentConnection) {
+                this.eventStream.close();
+            }
+        }
+    }
+
+    /**
+     * Sets whether events are streamed in the compact binary wire format
+     * instead of text. Only applies to the persistent connection.
+     *
+     * @param binary true to send binary records
+     */
+    public void setBinaryWireFormat(boolean binary) {
+        this.eventStream.setBinary(binary);
+    }
+
     /**
      * Sets the frequency of event generation
      *
@@ -127,6 +160,16 @@ public class Sensor implements Entity {
      * @param event event to send to server
      */
     public void sendEvent(Event event) {
+        if (this.persistentConnection) {
+            try {
+                if (!this.eventStream.send(event)) {
+                    System.err.println("Server unreachable, event dropped: " + event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
         try {
             Socket socket = new Socket(serverIP, serverPort);
 
@@ -160,25 +203,35 @@ public class Sensor implements Entity {
                 }
             }
 
-            try {
-                Socket socket = new Socket(serverIP, serverPort);
+            if (this.persistentConnection) {
+                try {
+                    if (!this.eventStream.send(this.generateEvent())) {
+                        failedAttempts++;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            } else {
+                try {
+                    Socket socket = new Socket(serverIP, serverPort);
 
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
 
-                out.print(this.generateEvent().toString());
-                out.flush();
+                    out.print(this.generateEvent().toString());
+                    out.flush();
 
-                int exitCode = in.read();
-                if (!(exitCode == 1)) {
-                    failedAttempts++;
-                }
-                in.close();
-                out.close();
+                    int exitCode = in.read();
+                    if (!(exitCode == 1)) {
+                        failedAttempts++;
+                    }
+                    in.close();
+                    out.close();
 
-                socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+                    socket.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
 
             if(failedAttempts == 5) {
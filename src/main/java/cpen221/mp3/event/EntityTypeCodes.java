@@ -0,0 +1,86 @@
+package cpen221.mp3.event;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class EntityTypeCodes {
+
+    // Rep Invariants:
+    //
+    // 1. Bijection: codes maps each interned type to its index in types, and types[i] is non-null for i < count.
+    // 2. Stable Well-Known Codes: the first WELL_KNOWN_TYPES.length codes are assigned in WELL_KNOWN_TYPES order.
+
+    // Abstraction function:
+    // Maps the internal state of the EntityTypeCodes class to a process-wide table of small integer
+    // codes for entity type names, so that types can be stored and sent without their strings.
+    //
+    // Codes: codes maps entity type names to their code.
+    // Types: types[code] is the entity type name of code.
+
+    /**
+     * Entity types whose codes are the same in every process and may be sent over the wire
+     */
+    private static final String[] WELL_KNOWN_TYPES = {"TempSensor", "PressureSensor", "CO2Sensor", "Switch"};
+
+    private static final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private static volatile String[] types = new String[16];
+    private static int count = 0;
+
+    static {
+        for (String type : WELL_KNOWN_TYPES) {
+            codeOf(type);
+        }
+    }
+
+    private EntityTypeCodes() { }
+
+    /**
+     * Returns the code of the given entity type, assigning a new code if the type has not been seen before
+     * @param type entity type name
+     * @return code of the entity type
+     */
+    public static int codeOf(String type) {
+        Integer code = codes.get(type);
+        if (code != null) {
+            return code;
+        }
+        synchronized (EntityTypeCodes.class) {
+            code = codes.get(type);
+            if (code == null) {
+                if (count == types.length) {
+                    types = Arrays.copyOf(types, count * 2);
+                }
+                String[] current = types;
+                current[count] = type;
+                types = current;
+                code = count++;
+                codes.put(type, code);
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Returns the entity type name of the given code
+     * @param code code previously returned by codeOf
+     * @return entity type name
+     * @throws IllegalArgumentException if no type has the given code
+     */
+    public static String typeOf(int code) {
+        String[] current = types;
+        if (code < 0 || code >= current.length || current[code] == null) {
+            throw new IllegalArgumentException("Unknown entity type code " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns true if the code has the same meaning in every process
+     * @param code entity type code
+     * @return true if the code belongs to a well-known entity type
+     */
+    public static boolean isWellKnown(int code) {
+        return code >= 0 && code < WELL_KNOWN_TYPES.length;
+    }
+}
@@ -10,7 +10,7 @@ public class SensorEventDeserializer {
      * @return sensor event after deserialization
      */
     public SensorEvent deserialize(String data) {
-        return new SensorEvent(Integer.parseInt(data.split("[{,=}]")[2].trim()), 
+        return new SensorEvent(Double.parseDouble(data.split("[{,=}]")[2].trim()), 
                                Integer.parseInt(data.split("[{,=}]")[4].trim()), 
                                Integer.parseInt(data.split("[{,=}]")[6].trim()), 
                                String.valueOf(data.split("[{,=}]")[8].trim()), 
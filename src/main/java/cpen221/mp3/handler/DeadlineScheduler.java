@@ -0,0 +1,184 @@
+package cpen221.mp3.handler;
+
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+class DeadlineScheduler implements Runnable {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Handler: The handler must not be null.
+    // 2. Earliest Deadline First: queue is ordered by deadline, then by sequence number.
+    // 3. Bounded Backlog: at most capacity messages wait in queue, which is the number of permits taken from slots.
+    // 4. Bounded Dispatch: at most workers dispatched messages are unfinished, which is the number of permits taken from inFlight.
+    // 5. Violation Counts: violations is the sum of violationsByClient.
+
+    // Abstraction function:
+    // Maps the internal state of the DeadlineScheduler class to an earliest-deadline-first scheduler that
+    // hands messages to the worker pool and keeps track of the requests processed after their deadline.
+    //
+    // Handler: handler represents the message handler whose worker pool runs dispatched messages.
+    // Queue: queue represents the messages waiting for a worker, most urgent first.
+    // Sequence: sequence represents the number of messages submitted so far, used to break deadline ties.
+    // Slots: slots represents the free room in queue.
+    // In Flight: inFlight represents the free workers.
+    // Dispatched: dispatched represents the number of messages handed to a worker.
+    // Violations: violations represents the number of requests that started after their deadline.
+    // Violations By Client: violationsByClient maps client IDs to the number of their requests that started late.
+    // Max Lateness: maxLateness represents the largest time in milliseconds by which a request missed its deadline.
+
+    private final MessageHandler handler;
+    private final PriorityBlockingQueue<Scheduled> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Semaphore slots;
+    private final Semaphore inFlight;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final LongAdder violations = new LongAdder();
+    private final Map<Integer, LongAdder> violationsByClient = new ConcurrentHashMap<>();
+    private final AtomicLong maxLateness = new AtomicLong();
+
+    /**
+     * Creates a scheduler that keeps up to workers messages running and up to capacity messages waiting
+     * @param handler message handler whose worker pool runs dispatched messages
+     * @param workers number of messages dispatched at the same time, must be positive
+     * @param capacity number of messages that may wait before submit blocks, must be positive
+     */
+    DeadlineScheduler(MessageHandler handler, int workers, int capacity) {
+        this.handler = handler;
+        this.inFlight = new Semaphore(workers);
+        this.slots = new Semaphore(capacity);
+    }
+
+    /**
+     * Queues a message by its deadline.
+     * Blocks while the backlog is full, which slows down the connections the message came from.
+     * @param message message to queue
+     * @param socket socket to reply on for requests, may be null for events
+     */
+    void submit(Message message, Socket socket) {
+        slots.acquireUninterruptibly();
+        queue.add(new Scheduled(message, socket, sequence.getAndIncrement()));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                inFlight.acquire();
+                Scheduled next = queue.take();
+                slots.release();
+                dispatch(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch(Scheduled next) {
+        Runnable task = handler.taskFor(next.message, next.socket);
+        Runnable tracked = () -> {
+            try {
+                recordStart(next.message);
+                task.run();
+            } finally {
+                inFlight.release();
+            }
+        };
+
+        boolean accepted;
+        try {
+            accepted = handler.getWorkerPool().submit(tracked);
+        } catch (RejectedExecutionException e) {
+            accepted = false;
+        }
+        if (accepted) {
+            dispatched.incrementAndGet();
+        } else {
+            inFlight.release();
+            handler.reject(next.message, next.socket);
+        }
+    }
+
+    /**
+     * Counts a QoS violation if a worker starts a request after its deadline,
+     * since maxWaitTime bounds the wait before processing, not the processing itself.
+     * Events have no maxWaitTime and are never counted.
+     */
+    private void recordStart(Message message) {
+        if (message.isEvent()) {
+            return;
+        }
+        long late = (long) (System.currentTimeMillis() - message.getDeadline());
+        if (late > 0) {
+            violations.increment();
+            violationsByClient.computeIfAbsent(message.getClientId(), id -> new LongAdder()).increment();
+            maxLateness.accumulateAndGet(late, Math::max);
+        }
+    }
+
+    /**
+     * @return number of messages waiting for a worker
+     */
+    int getQueueLength() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of messages handed to a worker
+     */
+    long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return number of requests that started after their deadline
+     */
+    long getViolations() {
+        return violations.sum();
+    }
+
+    /**
+     * @return map from client ID to the number of that client's requests that started after their deadline
+     */
+    Map<Integer, Long> getViolationsByClient() {
+        Map<Integer, Long> counts = new HashMap<>();
+        violationsByClient.forEach((clientId, count) -> counts.put(clientId, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return largest time in milliseconds by which a request missed its deadline
+     */
+    long getMaxLateness() {
+        return maxLateness.get();
+    }
+
+    private static class Scheduled implements Comparable<Scheduled> {
+        private final Message message;
+        private final Socket socket;
+        private final double deadline;
+        private final long sequence;
+
+        private Scheduled(Message message, Socket socket, long sequence) {
+            this.message = message;
+            this.socket = socket;
+            this.deadline = message.getDeadline();
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Scheduled other) {
+            int byDeadline = Double.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+}
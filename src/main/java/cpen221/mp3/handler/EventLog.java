@@ -1,29 +1,319 @@
 package cpen221.mp3.handler;
 
 import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.EntityTypeCodes;
 import cpen221.mp3.event.Event;
-import org.apache.commons.collections.list.SynchronizedList;
+import cpen221.mp3.event.SensorEvent;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
 
-public class EventLog implements Iterable<Event> {
+public class EventLog implements Iterable<Event>, Closeable {
+
+    // Rep Invariants:
+    //
+    // 1. Write Once: every slot below reserved is written at most once, and never cleared.
+    // 2. Chunked Slots: slot i lives in chunk i >> CHUNK_SHIFT at offset i & CHUNK_MASK.
+    // 3. Copy-on-write Directory: a directory array is never modified after it is published in chunks,
+    //    and a chunk keeps its position in every later directory.
+    // 4. Published Prefix: every slot below published is written, and published <= reserved.
+    // 5. Uniform Chunks: every chunk is a RowChunk if storageMode is ROW and a ColumnChunk if it is COLUMNAR.
+    // 6. Time Index: timeIndex holds one key per written slot at or above firstRetained, with the slot's
+    //    timestamp and index.
+    // 7. Durable Log: if wal is not null, every event of the log has been appended to it,
+    //    and the i-th event appended to wal is in slot i.
+    // 8. Retained Suffix: firstRetained is a multiple of CHUNK_SIZE and at most published, and every chunk
+    //    below firstRetained >> CHUNK_SHIFT is DISCARDED.
+
+    // Abstraction function:
+    // Maps the internal state of the EventLog class to the sequence of events added to the log,
+    // in the order their appends reserved a slot.
+    //
+    // Storage Mode: storageMode represents whether chunks hold Event objects or primitive columns.
+    // Chunks: chunks holds the directory of fixed-size chunks that store the events.
+    // Reserved: reserved represents the number of slots claimed by appends, some of which may still be unwritten.
+    // Published: published represents a prefix of the log known to be completely written.
+    // Time Index: timeIndex represents the slots ordered by timestamp, ties in order of addition.
+    // Write-ahead Log: wal represents the copy of the log on disk, or null if the log is only kept in memory.
+    // First Retained: firstRetained represents the position of the oldest event still kept in memory;
+    //                 older events were dropped by discardBefore.
+    //
+    // The log is the longest prefix of written slots. Appends never wait for each other:
+    // an append claims a slot, writes it and returns. Readers see the prefix written so far,
+    // and an event becomes visible once every append that reserved an earlier slot has finished.
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Placeholder for dropped chunks, every read of it throws IndexOutOfBoundsException
+     */
+    private static final Chunk DISCARDED = new DiscardedChunk();
+
+    private final StorageMode storageMode;
 
     /**
      * Log of events sent by entities
      */
-    private ArrayList<Event> eventLog = new ArrayList<Event>();
+    private final AtomicReference<Chunk[]> chunks = new AtomicReference<>(new Chunk[1]);
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+    private final ConcurrentSkipListSet<TimeKey> timeIndex = new ConcurrentSkipListSet<>();
+    private volatile WriteAheadLog wal;
+    private volatile int firstRetained = 0;
 
-    public EventLog() { }
+    public EventLog() {
+        this(StorageMode.ROW);
+    }
 
     /**
-     * Adds a new event to the log
+     * Creates an empty log
+     * @param storageMode ROW to keep the logged Event objects, COLUMNAR to keep their fields
+     *                    in primitive arrays and create Event objects only when they are read
+     */
+    public EventLog(StorageMode storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /**
+     * Opens a log kept on disk in the given directory.
+     * Events stored there by an earlier run are recovered first, and every event added later
+     * is appended to the write-ahead log before it is added in memory.
+     * @param directory directory holding the write-ahead log segments
+     * @param storageMode storage mode of the in-memory log
+     * @return log holding the recovered events
+     * @throws IOException if the directory cannot be read or written
+     */
+    public static EventLog open(Path directory, StorageMode storageMode) throws IOException {
+        EventLog log = new EventLog(storageMode);
+        log.wal = new WriteAheadLog(directory, log::addEvent);
+        return log;
+    }
+
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * @return write-ahead log behind this log, or null if the log is only kept in memory
+     */
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    /**
+     * Adds a new event to the log.
+     * Safe to call from many threads at once without blocking,
+     * except on the write-ahead log of a log opened on disk.
      * @param e event to add to log
+     * @throws UncheckedIOException if the event cannot be appended to the write-ahead log
      */
     public void addEvent(Event e) {
-        this.eventLog.add(e);
+        if (e == null) {
+            throw new NullPointerException("event");
+        }
+        WriteAheadLog durable = wal;
+        int index;
+        if (durable == null) {
+            index = reserved.getAndIncrement();
+        } else {
+            // reserve the slot together with the append, so positions in memory and on disk agree
+            synchronized (durable) {
+                try {
+                    durable.append(e);
+                } catch (IOException io) {
+                    throw new UncheckedIOException(io);
+                }
+                index = reserved.getAndIncrement();
+            }
+        }
+        if (index < 0) {
+            throw new IllegalStateException("Event log is full");
+        }
+        chunk(index >>> CHUNK_SHIFT).write(index & CHUNK_MASK, e);
+        timeIndex.add(new TimeKey(e.getTimeStamp(), index));
+    }
+
+    /**
+     * Waits until every event added so far is on disk.
+     * Does nothing if the log is only kept in memory.
+     * @throws IOException if the write-ahead log could not be forced to disk
+     */
+    public void sync() throws IOException {
+        WriteAheadLog durable = wal;
+        if (durable != null) {
+            durable.sync();
+        }
+    }
+
+    /**
+     * Forces the write-ahead log to disk and closes it. The in-memory log stays readable,
+     * but no more events may be added to a log opened on disk.
+     * @throws IOException if the write-ahead log could not be forced to disk
+     */
+    @Override
+    public void close() throws IOException {
+        WriteAheadLog durable = wal;
+        if (durable != null) {
+            durable.close();
+        }
+    }
+
+    /**
+     * Returns the number of events visible to readers
+     * @return number of events in the log
+     */
+    public int size() {
+        int size = published.get();
+        int limit = reserved.get();
+        Chunk[] directory = chunks.get();
+        while (size < limit) {
+            int c = size >>> CHUNK_SHIFT;
+            if (c >= directory.length || directory[c] == null || !directory[c].isWritten(size & CHUNK_MASK)) {
+                break;
+            }
+            size++;
+        }
+        published.accumulateAndGet(size, Math::max);
+        return size;
+    }
+
+    /**
+     * Returns the position of the oldest event kept in memory. Positions below it were dropped
+     * by discardBefore and are not valid arguments for get and the field accessors.
+     * @return position of the oldest retained event, 0 if no events were dropped
+     */
+    public int getFirstRetained() {
+        return firstRetained;
+    }
+
+    /**
+     * Drops the events before the given position from memory, a whole chunk of 1024 events at a time,
+     * so position is rounded down to a multiple of 1024. Positions of the remaining events do not change,
+     * and a write-ahead log on disk keeps the dropped events.
+     * Iterators created before the call still return the dropped events, and position iterators skip them.
+     * Reading a dropped position with get or a field accessor throws IndexOutOfBoundsException, so callers
+     * that read positions they obtained earlier should not let a discard run in between.
+     * @param position position of the oldest event to keep, at most size()
+     * @return position of the oldest retained event after the call
+     */
+    public synchronized int discardBefore(int position) {
+        int from = firstRetained;
+        int to = Math.min(position, size()) & ~CHUNK_MASK;
+        if (to <= from) {
+            return from;
+        }
+        for (int i = from; i < to; i++) {
+            timeIndex.remove(new TimeKey(timeStampAt(i), i));
+        }
+        firstRetained = to;
+        while (true) {
+            Chunk[] directory = chunks.get();
+            Chunk[] trimmed = directory.clone();
+            Arrays.fill(trimmed, from >>> CHUNK_SHIFT, to >>> CHUNK_SHIFT, DISCARDED);
+            if (chunks.compareAndSet(directory, trimmed)) {
+                return to;
+            }
+        }
+    }
+
+    /**
+     * Returns true if no events are visible to readers
+     * @return true if the log is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the event at the given position of the log.
+     * In COLUMNAR mode the event is created from the stored fields.
+     * @param index position of the event, in order of addition
+     * @return event at index
+     * @throws IndexOutOfBoundsException if index is not less than size()
+     */
+    public Event get(int index) {
+        if (index < firstRetained || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for log of size " + size());
+        }
+        return chunkAt(index).event(index & CHUNK_MASK);
+    }
+
+    // The field accessors below read a single field without creating an Event in COLUMNAR mode.
+    // For speed they do not check bounds: index must be less than a value previously returned by size().
+    // Reading an event dropped by discardBefore throws IndexOutOfBoundsException.
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return timestamp of the event at index
+     */
+    public double timeStampAt(int index) {
+        return chunkAt(index).timeStamp(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return client ID of the event at index
+     */
+    public int clientIdAt(int index) {
+        return chunkAt(index).clientId(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return entity ID of the event at index
+     */
+    public int entityIdAt(int index) {
+        return chunkAt(index).entityId(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return entity type of the event at index
+     */
+    public String entityTypeAt(int index) {
+        return chunkAt(index).entityType(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return true if the event at index is an ActuatorEvent
+     */
+    public boolean isActuatorAt(int index) {
+        return chunkAt(index).isActuator(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return getValueDouble() of the event at index
+     */
+    public double valueDoubleAt(int index) {
+        return chunkAt(index).valueDouble(index & CHUNK_MASK);
+    }
+
+    /**
+     * @param index position of an event, less than a value previously returned by size()
+     * @return getValueBoolean() of the event at index
+     */
+    public boolean valueBooleanAt(int index) {
+        return chunkAt(index).valueBoolean(index & CHUNK_MASK);
     }
 
     /**
@@ -32,22 +322,466 @@ public class EventLog implements Iterable<Event> {
      * @return
      */
     public Event getEvent() {
-        if (this.eventLog.isEmpty()) {
+        if (this.isEmpty()) {
             return null;
         }
-        return this.eventLog.get(0);
+        return this.get(firstRetained);
     }
 
     /**
-     * Returns the entire event log as list
-     * @return list of events logged in the events log
+     * Returns a snapshot of the entire event log as list
+     * @return list of events logged in the events log and still retained in memory
      */
     public ArrayList<Event> getLog() {
-        return this.eventLog;
+        int size = size();
+        ArrayList<Event> snapshot = new ArrayList<>(Math.max(0, size - firstRetained));
+        Iterator<Event> events = iterator(size);
+        while (events.hasNext()) {
+            snapshot.add(events.next());
+        }
+        return snapshot;
     }
-    
+
+    /**
+     * Returns an iterator over the events logged when the iterator was created.
+     * Events added while iterating are not returned, and adding events never invalidates the iterator.
+     */
     @Override
     public @NotNull Iterator<Event> iterator() {
-        return eventLog.iterator();
+        return iterator(size());
+    }
+
+    private Iterator<Event> iterator(int size) {
+        // read the directory first: discardBefore updates firstRetained before it drops chunks
+        Chunk[] directory = chunks.get();
+        int first = firstRetained;
+        return new Iterator<>() {
+            private int next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Event next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                Event e = directory[next >>> CHUNK_SHIFT].event(next & CHUNK_MASK);
+                next++;
+                return e;
+            }
+        };
+    }
+
+    /**
+     * Returns the positions of the logged events in timestamp order, events with equal timestamps
+     * in order of addition. Like iterator(), only the events logged when this method is called are returned,
+     * and events dropped by discardBefore while iterating are skipped.
+     * Out-of-order arrivals are placed by their timestamp, so the order never needs re-sorting.
+     * @param descending true to start from the latest timestamp
+     * @return iterator over event positions, valid arguments for get and the field accessors
+     */
+    public PrimitiveIterator.OfInt indicesByTime(boolean descending) {
+        return visibleIndices(descending ? timeIndex.descendingSet() : timeIndex);
+    }
+
+    /**
+     * Returns the positions of the logged events with timestamps in [startTime, endTime], in timestamp order.
+     * Like iterator(), only the events logged when this method is called are returned,
+     * and events dropped by discardBefore while iterating are skipped.
+     * Takes O(log n + k) time for k events in the window.
+     * @param startTime earliest timestamp, inclusive
+     * @param endTime latest timestamp, inclusive
+     * @return iterator over event positions, valid arguments for get and the field accessors
+     */
+    public PrimitiveIterator.OfInt indicesInTimeWindow(double startTime, double endTime) {
+        if (!(startTime <= endTime)) {
+            return visibleIndices(new ConcurrentSkipListSet<>());
+        }
+        return visibleIndices(timeIndex.subSet(new TimeKey(startTime, Integer.MIN_VALUE), true,
+                new TimeKey(endTime, Integer.MAX_VALUE), true));
+    }
+
+    /**
+     * Iterates over the indices of the keys that belong to the visible prefix of the log and are still retained.
+     * Slots written ahead of an unfinished earlier append are indexed but not yet visible, and the keys of
+     * dropped slots may still be reached by an iterator over the skip list after discardBefore removed them.
+     */
+    private PrimitiveIterator.OfInt visibleIndices(NavigableSet<TimeKey> keys) {
+        int size = size();
+        Iterator<TimeKey> it = keys.iterator();
+        return new PrimitiveIterator.OfInt() {
+            private int next = advance();
+
+            private int advance() {
+                while (it.hasNext()) {
+                    int index = it.next().index;
+                    if (index < size && index >= firstRetained) {
+                        return index;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                int index = next;
+                next = advance();
+                return index;
+            }
+        };
+    }
+
+    /**
+     * Evaluates a filter on every logged event.
+     * In COLUMNAR mode the filter runs over the columns of each chunk without creating Event objects.
+     * @param filter filter to evaluate
+     * @return bitmap where bit i is set if and only if the event at position i satisfies the filter,
+     *         covering the events logged when this method is called, dropped events are never set
+     */
+    public long[] select(EventSelector filter) {
+        int size = size();
+        return select(filter, size, chunks.get());
+    }
+
+    /**
+     * @param directory directory read after size, whose retained chunks cover the first size slots
+     */
+    private long[] select(EventSelector filter, int size, Chunk[] directory) {
+        // read the directory first: discardBefore updates firstRetained before it drops chunks
+        int first = firstRetained;
+        Predicate<Event> accepts = filter.compile();
+        long[] selection = new long[(size + 63) >>> 6];
+        for (int c = first >>> CHUNK_SHIFT; c << CHUNK_SHIFT < size; c++) {
+            int length = Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT));
+            directory[c].select(filter, accepts, length, selection, c << (CHUNK_SHIFT - 6));
+        }
+        return selection;
+    }
+
+    /**
+     * Returns the logged events that satisfy a filter, in order of addition
+     * @param filter filter to evaluate
+     * @return events satisfying the filter, created only for the matches in COLUMNAR mode
+     */
+    public List<Event> sift(EventSelector filter) {
+        int size = size();
+        Chunk[] directory = chunks.get();
+        long[] selection = select(filter, size, directory);
+        List<Event> matches = new ArrayList<>();
+        for (int w = 0; w < selection.length; w++) {
+            long bits = selection[w];
+            while (bits != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(bits);
+                matches.add(directory[index >>> CHUNK_SHIFT].event(index & CHUNK_MASK));
+                bits &= bits - 1;
+            }
+        }
+        return matches;
+    }
+
+    private Chunk chunkAt(int index) {
+        return chunks.get()[index >>> CHUNK_SHIFT];
+    }
+
+    /**
+     * Returns the chunk with the given number, growing the directory if it does not exist yet.
+     * Competing appends race to install a new directory with a CAS and the losers retry,
+     * so no append ever waits for another.
+     */
+    private Chunk chunk(int c) {
+        while (true) {
+            Chunk[] directory = chunks.get();
+            if (c < directory.length && directory[c] != null) {
+                return directory[c];
+            }
+            Chunk[] grown = Arrays.copyOf(directory,
+                    c < directory.length ? directory.length : Math.max(c + 1, directory.length * 2));
+            for (int i = 0; i <= c; i++) {
+                if (grown[i] == null) {
+                    grown[i] = storageMode == StorageMode.COLUMNAR ? new ColumnChunk() : new RowChunk();
+                }
+            }
+            if (chunks.compareAndSet(directory, grown)) {
+                return grown[c];
+            }
+        }
+    }
+
+    private static final class TimeKey implements Comparable<TimeKey> {
+        private final double timeStamp;
+        private final int index;
+
+        private TimeKey(double timeStamp, int index) {
+            this.timeStamp = timeStamp;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Double.compare(timeStamp, other.timeStamp);
+            return byTime != 0 ? byTime : Integer.compare(index, other.index);
+        }
+    }
+
+    /**
+     * Fixed-size block of write-once slots
+     */
+    private abstract static class Chunk {
+        abstract void write(int offset, Event e);
+
+        abstract boolean isWritten(int offset);
+
+        abstract Event event(int offset);
+
+        abstract double timeStamp(int offset);
+
+        abstract int clientId(int offset);
+
+        abstract int entityId(int offset);
+
+        abstract String entityType(int offset);
+
+        abstract boolean isActuator(int offset);
+
+        abstract double valueDouble(int offset);
+
+        abstract boolean valueBoolean(int offset);
+
+        /**
+         * Writes the selection bitmap of the first length slots to selection, starting at word wordOffset
+         */
+        void select(EventSelector filter, Predicate<Event> accepts, int length, long[] selection, int wordOffset) {
+            for (int offset = 0; offset < length; offset++) {
+                if (accepts.test(event(offset))) {
+                    selection[wordOffset + (offset >>> 6)] |= 1L << offset;
+                }
+            }
+        }
+    }
+
+    private static final class DiscardedChunk extends Chunk {
+        private static IndexOutOfBoundsException discarded() {
+            return new IndexOutOfBoundsException("Event was dropped by discardBefore");
+        }
+
+        @Override
+        void write(int offset, Event e) {
+            throw new IllegalStateException("Discarded chunks are never written");
+        }
+
+        @Override
+        boolean isWritten(int offset) {
+            return true;
+        }
+
+        @Override
+        Event event(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        double timeStamp(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        int clientId(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        int entityId(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        String entityType(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        boolean isActuator(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        double valueDouble(int offset) {
+            throw discarded();
+        }
+
+        @Override
+        boolean valueBoolean(int offset) {
+            throw discarded();
+        }
+    }
+
+    private static final class RowChunk extends Chunk {
+        private final AtomicReferenceArray<Event> events = new AtomicReferenceArray<>(CHUNK_SIZE);
+
+        @Override
+        void write(int offset, Event e) {
+            events.set(offset, e);
+        }
+
+        @Override
+        boolean isWritten(int offset) {
+            return events.get(offset) != null;
+        }
+
+        @Override
+        Event event(int offset) {
+            return events.get(offset);
+        }
+
+        @Override
+        double timeStamp(int offset) {
+            return events.get(offset).getTimeStamp();
+        }
+
+        @Override
+        int clientId(int offset) {
+            return events.get(offset).getClientId();
+        }
+
+        @Override
+        int entityId(int offset) {
+            return events.get(offset).getEntityId();
+        }
+
+        @Override
+        String entityType(int offset) {
+            return events.get(offset).getEntityType();
+        }
+
+        @Override
+        boolean isActuator(int offset) {
+            return events.get(offset) instanceof ActuatorEvent;
+        }
+
+        @Override
+        double valueDouble(int offset) {
+            return events.get(offset).getValueDouble();
+        }
+
+        @Override
+        boolean valueBoolean(int offset) {
+            return events.get(offset).getValueBoolean();
+        }
+    }
+
+    /**
+     * Chunk holding each event field in its own primitive array.
+     * The plain array writes of a slot are published to readers by the CAS that sets its bit in written.
+     */
+    private static final class ColumnChunk extends Chunk {
+        private final double[] timeStamps = new double[CHUNK_SIZE];
+        private final int[] clientIds = new int[CHUNK_SIZE];
+        private final int[] entityIds = new int[CHUNK_SIZE];
+        private final int[] typeCodes = new int[CHUNK_SIZE];
+        private final double[] values = new double[CHUNK_SIZE];
+        private final AtomicLongArray actuators = new AtomicLongArray(CHUNK_SIZE / Long.SIZE);
+        private final AtomicLongArray booleans = new AtomicLongArray(CHUNK_SIZE / Long.SIZE);
+        private final AtomicLongArray written = new AtomicLongArray(CHUNK_SIZE / Long.SIZE);
+
+        @Override
+        void write(int offset, Event e) {
+            timeStamps[offset] = e.getTimeStamp();
+            clientIds[offset] = e.getClientId();
+            entityIds[offset] = e.getEntityId();
+            typeCodes[offset] = EntityTypeCodes.codeOf(e.getEntityType());
+            if (e instanceof ActuatorEvent) {
+                setBit(actuators, offset);
+                if (e.getValueBoolean()) {
+                    setBit(booleans, offset);
+                }
+            } else {
+                values[offset] = e.getValueDouble();
+            }
+            setBit(written, offset);
+        }
+
+        @Override
+        boolean isWritten(int offset) {
+            return getBit(written, offset);
+        }
+
+        @Override
+        Event event(int offset) {
+            if (isActuator(offset)) {
+                return new ActuatorEvent(timeStamps[offset], clientIds[offset], entityIds[offset],
+                        entityType(offset), valueBoolean(offset));
+            }
+            return new SensorEvent(timeStamps[offset], clientIds[offset], entityIds[offset],
+                    entityType(offset), values[offset]);
+        }
+
+        @Override
+        double timeStamp(int offset) {
+            return timeStamps[offset];
+        }
+
+        @Override
+        int clientId(int offset) {
+            return clientIds[offset];
+        }
+
+        @Override
+        int entityId(int offset) {
+            return entityIds[offset];
+        }
+
+        @Override
+        String entityType(int offset) {
+            return EntityTypeCodes.typeOf(typeCodes[offset]);
+        }
+
+        @Override
+        boolean isActuator(int offset) {
+            return getBit(actuators, offset);
+        }
+
+        @Override
+        double valueDouble(int offset) {
+            return isActuator(offset) ? -1 : values[offset];
+        }
+
+        @Override
+        boolean valueBoolean(int offset) {
+            return getBit(booleans, offset);
+        }
+
+        @Override
+        void select(EventSelector filter, Predicate<Event> accepts, int length, long[] selection, int wordOffset) {
+            int words = (length + 63) >>> 6;
+            long[] actuatorWords = new long[words];
+            long[] booleanWords = new long[words];
+            for (int w = 0; w < words; w++) {
+                actuatorWords[w] = actuators.get(w);
+                booleanWords[w] = booleans.get(w);
+            }
+            long[] chunkSelection = new long[words];
+            filter.select(length, timeStamps, values, actuatorWords, booleanWords, chunkSelection);
+            System.arraycopy(chunkSelection, 0, selection, wordOffset, words);
+        }
+
+        private static void setBit(AtomicLongArray bits, int offset) {
+            long mask = 1L << offset;
+            bits.getAndAccumulate(offset >>> 6, mask, (word, bit) -> word | bit);
+        }
+
+        private static boolean getBit(AtomicLongArray bits, int offset) {
+            return (bits.get(offset >>> 6) & (1L << offset)) != 0;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.Event;
+
+import java.util.function.Predicate;
+
+/**
+ * A condition on events that EventLog can evaluate over its stored chunks,
+ * either on Event objects or on the columns of a COLUMNAR log
+ */
+public interface EventSelector {
+
+    /**
+     * @return predicate accepting exactly the events the selector selects
+     */
+    Predicate<Event> compile();
+
+    /**
+     * Evaluates the selector on a block of events stored as columns without allocating.
+     *
+     * @param length     number of events in the block
+     * @param timeStamps timestamps of the events
+     * @param values     getValueDouble() of the events, ignored for actuator events
+     * @param actuators  bitset marking actuator events, or null if all events are sensor events
+     * @param booleans   bitset of getValueBoolean() of the events, or null if all are false
+     * @param selection  receives the selection bitmap, at least (length + 63) / 64 words
+     */
+    void select(int length, double[] timeStamps, double[] values, long[] actuators, long[] booleans,
+                long[] selection);
+}
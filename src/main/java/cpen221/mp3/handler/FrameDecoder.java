@@ -0,0 +1,159 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.codec.BinaryCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+class FrameDecoder {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Pending Buffer: pending must not be null.
+    // 2. Valid Bounds: 0 <= start <= scanned <= length <= pending.length.
+    // 3. Valid Format: format is one of UNKNOWN, TEXT or BINARY and never changes once known.
+
+    // Abstraction function:
+    // Maps the internal state of the FrameDecoder class to the abstract representation of
+    // a stream of newline-delimited text frames or length-prefixed binary records
+    // that have been partially received on a connection.
+    //
+    // Pending Buffer: pending[start..length) holds the bytes received but not yet returned as frames.
+    // Scanned: pending[start..scanned) is known not to contain a newline.
+    // Format: format represents the wire format negotiated by the first bytes of the connection.
+
+    /**
+     * Largest frame accepted before the connection is considered malformed
+     */
+    static final int MAX_FRAME_LENGTH = 1 << 17;
+
+    private static final int UNKNOWN = 0;
+    private static final int TEXT = 1;
+    private static final int BINARY = 2;
+
+    private byte[] pending = new byte[512];
+    private int start = 0;
+    private int scanned = 0;
+    private int length = 0;
+    private int format = UNKNOWN;
+
+    /**
+     * Appends the remaining bytes of the given buffer to the frames being decoded
+     * @param bytes bytes read from the connection, consumed by this call
+     * @throws IllegalStateException if a frame grows beyond MAX_FRAME_LENGTH
+     */
+    void append(ByteBuffer bytes) {
+        int incoming = bytes.remaining();
+        if (length + incoming > pending.length) {
+            compact();
+            if (length + incoming > pending.length) {
+                if (length + incoming > MAX_FRAME_LENGTH) {
+                    throw new IllegalStateException("Frame exceeds " + MAX_FRAME_LENGTH + " bytes");
+                }
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, length + incoming));
+            }
+        }
+        bytes.get(pending, length, incoming);
+        length += incoming;
+    }
+
+    /**
+     * Determines the wire format of the connection from its first bytes.
+     * A connection whose first byte starts a binary preamble carries binary records,
+     * any other connection carries text frames.
+     * @return true once the format is known
+     * @throws IllegalArgumentException if the connection announces an unsupported binary version
+     */
+    boolean negotiate() {
+        if (format != UNKNOWN) {
+            return true;
+        }
+        if (length == start) {
+            return false;
+        }
+        if (!BinaryCodec.isPreambleStart(pending[start])) {
+            format = TEXT;
+            return true;
+        }
+        if (length - start < BinaryCodec.PREAMBLE_LENGTH) {
+            return false;
+        }
+        BinaryCodec.readPreamble(ByteBuffer.wrap(pending, start, BinaryCodec.PREAMBLE_LENGTH));
+        start += BinaryCodec.PREAMBLE_LENGTH;
+        scanned = start;
+        format = BINARY;
+        return true;
+    }
+
+    /**
+     * @return true if the connection negotiated the binary format
+     */
+    boolean isBinary() {
+        return format == BINARY;
+    }
+
+    /**
+     * Returns a view of the next complete binary record without copying it.
+     * The view is only valid until the next call to append.
+     * @return buffer positioned at the start of the record and limited to its end,
+     *         or null if no complete record has been received yet
+     */
+    ByteBuffer nextRecord() {
+        ByteBuffer view = ByteBuffer.wrap(pending, start, length - start);
+        int recordLength = BinaryCodec.nextRecordLength(view);
+        if (recordLength < 0) {
+            return null;
+        }
+        view.limit(start + recordLength);
+        start += recordLength;
+        scanned = start;
+        return view;
+    }
+
+    /**
+     * Returns a view of the next complete newline-terminated text frame without copying it.
+     * The view excludes the line terminator and is only valid until the next call to append.
+     * @return next frame, or null if no complete frame has been received yet
+     */
+    ByteBuffer nextFrame() {
+        for (int i = scanned; i < length; i++) {
+            if (pending[i] == '\n') {
+                int end = (i > start && pending[i - 1] == '\r') ? i - 1 : i;
+                ByteBuffer frame = ByteBuffer.wrap(pending, start, end - start);
+                start = i + 1;
+                scanned = start;
+                return frame;
+            }
+        }
+        scanned = length;
+        return null;
+    }
+
+    /**
+     * Returns a view of the unterminated frame left when the peer closes the connection.
+     * Legacy entities write a single frame without a newline and then close the socket.
+     * @return remaining frame without surrounding whitespace, or null if no bytes are left
+     */
+    ByteBuffer remaining() {
+        int from = start;
+        int to = length;
+        while (from < to && pending[from] <= ' ' && pending[from] >= 0) {
+            from++;
+        }
+        while (to > from && pending[to - 1] <= ' ' && pending[to - 1] >= 0) {
+            to--;
+        }
+        start = length;
+        scanned = length;
+        return from == to ? null : ByteBuffer.wrap(pending, from, to - from);
+    }
+
+    private void compact() {
+        if (start > 0) {
+            System.arraycopy(pending, start, pending, 0, length - start);
+            length -= start;
+            scanned -= start;
+            start = 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Request;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+
+class GlobalRequestHandlerThread implements Runnable {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Request: The request must not be null.
+    // 2. Non-null Handler: The handler must not be null.
+
+    // Abstraction function:
+    // Maps the internal state of the GlobalRequestHandlerThread class to a thread answering a request
+    // about the events of all clients, from the sketches merged by the message handler.
+    //
+    // Request: request represents the request to be handled.
+    // Handler: handler represents the message handler that knows every client's server.
+    // Client Socket: clientSocket represents the socket of the client making the request, or null.
+
+    private final Request request;
+    private final MessageHandler handler;
+    private final Socket clientSocket;
+
+    public GlobalRequestHandlerThread(Request request, MessageHandler handler, Socket clientSocket) {
+        this.request = request;
+        this.handler = handler;
+        this.clientSocket = clientSocket;
+    }
+
+    @Override
+    public void run() {
+        Object reply;
+        switch (request.getRequestCommand()) {
+            case ANALYSIS_GET_GLOBAL_QUANTILES: {
+                // EntityType=<type>,Quantiles=<fraction>;<fraction>...
+                String[] fields = request.getRequestData().split("[,=]");
+                double[] fractions = Arrays.stream(fields[3].split(";")).mapToDouble(Double::parseDouble).toArray();
+                reply = handler.getQuantiles(fields[1].trim(), fractions);
+                break;
+            }
+            case ANALYSIS_GET_GLOBAL_DISTINCT_ENTITIES: {
+                reply = handler.getDistinctEntities();
+                break;
+            }
+            default: {
+                return;
+            }
+        }
+        if (clientSocket != null) {
+            try {
+                PrintWriter out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(reply);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ public class Message {
     // 3. Non-null Event or Request: Either e or r must be non-null.
     // 4. Non-negative Timestamp: The timestamp must be a non-negative value.
     // 5. Non-negative Max Wait Time: The maxWaitTime must be a non-negative value.
+    // 6. Fixed Deadline: deadline is timestamp + maxWaitTime * 1000 and never changes.
 
     // Abstraction function:
     // Maps the internal state of the Message class to the abstract representation of a message.
@@ -24,7 +25,8 @@ public class Message {
     // Request: r represents the request associated with the message.
     // Timestamp: timestamp represents the time at which the message was created.
     // Max Wait Time: maxWaitTime represents the difference between the time the message
-    //                  was received on the server side and the time it was processed.
+    //                  was received on the server side and the time it was processed, in seconds.
+    // Deadline: deadline represents the time in milliseconds by which the message should be processed.
 
     /**
      * Client ID of the client sending the request
@@ -54,6 +56,11 @@ public class Message {
      */
     private double maxWaitTime;
 
+    /**
+     * Time by which message should be processed, snapshotted when the message is received
+     */
+    private final double deadline;
+
     public Message(Event e, double timestamp) {
         this.isEvent = true;
         this.isRequest = false;
@@ -61,6 +68,7 @@ public class Message {
         this.e = e;
         this.timestamp = timestamp;
         this.maxWaitTime = 0;
+        this.deadline = timestamp;
         this.clientId = e.getClientId();
     }
 
@@ -71,21 +79,32 @@ public class Message {
         this.e = null;
         this.timestamp = timestamp;
         this.maxWaitTime = server.getMaxWaitTime();
+        this.deadline = timestamp + this.maxWaitTime * 1000;
         this.clientId = clientId;
     }
 
     /**
      * Returns the time left to process message to avoid a QoS violation
-     * @return the time left before QoS violation
+     * @return the time left in milliseconds before QoS violation, 0 for events
      */
     public double timeLeft() {
         if (this.isEvent) {
             return 0.0;
         } else {
-            return(this.maxWaitTime - this.getElapsed());
+            return this.deadline - System.currentTimeMillis();
         }
     }
 
+    /**
+     * Returns the absolute time by which the message should be processed.
+     * Events are due as soon as they are received, requests are due maxWaitTime
+     * seconds after they are received.
+     * @return deadline in milliseconds since the epoch
+     */
+    public double getDeadline() {
+        return this.deadline;
+    }
+
     public boolean isEvent() {
         return isEvent;
     }
@@ -2,18 +2,30 @@ package cpen221.mp3.handler;
 
 import cpen221.mp3.client.Client;
 import cpen221.mp3.client.Request;
-import cpen221.mp3.client.RequestDeserializer;
-import cpen221.mp3.event.ActuatorEventDeserializer;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.codec.BinaryCodec;
+import cpen221.mp3.codec.TextEventScanner;
 import cpen221.mp3.event.Event;
-import cpen221.mp3.event.SensorEventDeserializer;
+import cpen221.mp3.server.DistinctCounter;
+import cpen221.mp3.server.QuantileSketch;
 import cpen221.mp3.server.Server;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MessageHandler {
 
@@ -21,18 +33,27 @@ public class MessageHandler {
     //
     // 1. Valid Port: The port must be within the valid port range (0 to 65535).
     // 2. Non-null Server Socket: The serverSocket must not be null.
-    // 3. Non-null Incoming Socket List: The incomingSocketList must not be null.
-    // 4. Non-null Event Log: The log must not be null.
-    // 5. Non-null Timestamp Queue: The timeStampQueue must not be null.
+    // 3. Non-null Event Log: The log must not be null.
+    // 4. Non-null Scheduler: The scheduler must not be null once start() has been called.
+    // 5. Non-null Ingest Mode: The ingestMode must not be null.
+    // 6. Positive I/O Threads: The ioThreads must be positive.
+    // 7. Non-null Worker Pool: The workerPool must not be null.
 
     // Abstraction function:
     // Maps the internal state of the MessageHandler class to the abstract representation of a message handler.
     //
     // Port: port represents the port number on which the server is listening.
     // Server Socket: serverSocket represents the server socket used for communication.
-    // Incoming Socket List: incomingSocketList is a map of timestamps to sockets.
     // Event Log: log represents the log where events are stored.
-    // Timestamp Queue: timeStampQueue is a priority queue of messages sorted by increasing timestamps.
+    // Scheduler: scheduler represents the earliest-deadline-first queue of messages waiting for a worker,
+    //            together with the sockets to reply on.
+    // Ingest Mode: ingestMode represents whether connections are multiplexed on selectors or read one at a time.
+    // I/O Threads: ioThreads represents the number of selector threads used in SELECTOR mode.
+    // Worker Pool: workerPool represents the workers that log events and handle requests.
+    // Data Directory: dataDirectory represents where the servers keep their event logs on disk,
+    //                 or null if the logs are only kept in memory.
+    // Opening: opening maps client IDs to the lock held while the client's server is created,
+    //          so that a log is recovered once without blocking other clients.
 
     /**
      * Socket through which server receives requests/events
@@ -45,9 +66,19 @@ public class MessageHandler {
     private int port;
 
     /**
-     * List of all sockets that have connected to server
+     * Mode used to accept and read incoming connections
      */
-    private HashMap<Double, Socket> incomingSocketList = new HashMap<>();
+    private IngestMode ingestMode = IngestMode.SELECTOR;
+
+    /**
+     * Number of selector threads used in SELECTOR mode
+     */
+    private int ioThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * Workers that log events and handle requests
+     */
+    private WorkerPool workerPool = new WorkerPool();
 
     /**
      * Non-server-specific log of events
@@ -55,28 +86,182 @@ public class MessageHandler {
     private EventLog log = new EventLog();
 
     /**
-     * EDF Priority Queue to schedule and process incoming traffic
+     * EDF scheduler that orders incoming traffic by deadline and hands it to the workers
      */
-    PriorityQueue<Message> timeStampQueue = new PriorityQueue<Message>(new MessageComparator());
+    private DeadlineScheduler scheduler;
 
-    static class MessageComparator implements Comparator<Message> {
-        @Override
-        public int compare(Message m1, Message m2) {
-            if(m1.timeLeft() - m2.timeLeft() > 0) {
-                return 1;
-            } else {
-                return -1;
-            }
-        }
-    }
+    /**
+     * Directory holding a write-ahead log per client, null to keep event logs in memory only
+     */
+    private Path dataDirectory;
 
     private Map<Integer, Server> clientList = Collections.synchronizedMap(new HashMap<Integer, Server>());
 
+    private final Map<Integer, Object> opening = new ConcurrentHashMap<>();
+
     public MessageHandler(int port) {
         this.port = port;
     }
 
+    /**
+     * Sets how incoming connections are accepted and read.
+     * Must be called before start().
+     * @param ingestMode SELECTOR to multiplex connections on a few I/O threads,
+     *                   BLOCKING to read one connection at a time
+     */
+    public void setIngestMode(IngestMode ingestMode) {
+        this.ingestMode = ingestMode;
+    }
+
+    /**
+     * Sets the number of I/O threads used in SELECTOR mode.
+     * Must be called before start().
+     * @param ioThreads number of selector threads, must be positive
+     */
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("ioThreads must be positive");
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Keeps the event log of each client in a write-ahead log under the given directory,
+     * in a subdirectory named client-<id>. Events stored by an earlier run are recovered
+     * when the client's server is first needed.
+     * Must be called before start().
+     * @param dataDirectory directory to keep event logs in, or null to keep them in memory only
+     */
+    public void setDataDirectory(Path dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Estimates quantiles of the sensor values of an entity type across all clients,
+     * by merging the sketches every client's server keeps
+     * @param entityType type of the entities
+     * @param fractions ranks between 0 and 1, e.g. 0.5, 0.95 and 0.99
+     * @return estimated value of each rank, NaN if no client has logged sensor events of the type
+     */
+    public List<Double> getQuantiles(String entityType, double... fractions) {
+        QuantileSketch merged = new QuantileSketch();
+        synchronized (clientList) {
+            for (Server server : clientList.values()) {
+                merged.merge(server.getQuantileSketch(entityType));
+            }
+        }
+        List<Double> quantiles = new ArrayList<>();
+        for (double fraction : fractions) {
+            quantiles.add(merged.quantile(fraction));
+        }
+        return quantiles;
+    }
+
+    /**
+     * Estimates the number of distinct entities that have sent events across all clients,
+     * by merging the sketches every client's server keeps
+     * @return estimated number of entities, within a few percent
+     */
+    public long getDistinctEntities() {
+        DistinctCounter merged = new DistinctCounter();
+        synchronized (clientList) {
+            for (Server server : clientList.values()) {
+                merged.merge(server.getDistinctEntitySketch());
+            }
+        }
+        return merged.estimate();
+    }
+
+    /**
+     * Sets the workers that log events and handle requests.
+     * Must be called before start().
+     * @param workerPool pool to dispatch messages to
+     */
+    public void setWorkerPool(WorkerPool workerPool) {
+        this.workerPool = Objects.requireNonNull(workerPool);
+    }
+
+    /**
+     * Returns the workers that log events and handle requests,
+     * e.g. to monitor active workers and queue length
+     * @return pool messages are dispatched to
+     */
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    /**
+     * Returns the number of requests that waited longer than their client's maxWaitTime to be processed
+     * @return number of QoS violations since start()
+     */
+    public long getQosViolations() {
+        return scheduler == null ? 0 : scheduler.getViolations();
+    }
+
+    /**
+     * Returns the number of requests of the given client that waited longer than the client's maxWaitTime
+     * @param clientId ID of the client
+     * @return number of QoS violations of the client since start()
+     */
+    public long getQosViolations(int clientId) {
+        return scheduler == null ? 0 : scheduler.getViolationsByClient().getOrDefault(clientId, 0L);
+    }
+
+    /**
+     * Returns the number of messages waiting for a worker in deadline order
+     * @return length of the scheduler queue
+     */
+    public int getScheduledQueueLength() {
+        return scheduler == null ? 0 : scheduler.getQueueLength();
+    }
+
     public void start() {
+        scheduler = new DeadlineScheduler(this, workerPool.getWorkers(), Math.max(1, workerPool.getQueueCapacity()));
+        Thread schedulerThread = new Thread(scheduler, "deadline-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+
+        if (ingestMode == IngestMode.BLOCKING) {
+            startBlocking();
+        } else {
+            startSelector();
+        }
+    }
+
+    /**
+     * Accepts connections on a non-blocking channel and distributes them across
+     * the selector threads, which read and frame messages incrementally
+     */
+    private void startSelector() {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            System.out.println("Server started on port " + port);
+
+            SelectorIngestThread[] selectorThreads = new SelectorIngestThread[ioThreads];
+            for (int i = 0; i < ioThreads; i++) {
+                selectorThreads[i] = new SelectorIngestThread(this);
+                Thread thread = new Thread(selectorThreads[i], "ingest-selector-" + i);
+                thread.start();
+            }
+
+            int next = 0;
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                selectorThreads[next].register(channel);
+                next = (next + 1) % ioThreads;
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Accepts one connection at a time and reads its first message from it.
+     * Entities that keep their connection open are then read on their own thread.
+     */
+    private void startBlocking() {
         try {
             serverSocket = new ServerSocket(port);
             System.out.println("Server started on port " + port);
@@ -87,65 +272,237 @@ public class MessageHandler {
                 System.out.println("Accepted Request!");
 
                 try {
-                    BufferedReader in = new BufferedReader(new InputStreamReader(incomingSocket.getInputStream()));
-                    String requestString = in.readLine();
+                    BufferedInputStream input = new BufferedInputStream(incomingSocket.getInputStream());
+                    input.mark(1);
+                    int first = input.read();
+                    input.reset();
+                    if (first >= 0 && BinaryCodec.isPreambleStart((byte) first)) {
+                        Thread thread = new Thread(() -> readBinaryStream(input, incomingSocket));
+                        thread.start();
+                        continue;
+                    }
 
-                    if (requestString.contains("Request")) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(input));
+                    String requestString = in.readLine();
+                    if (requestString == null) {
+                        incomingSocket.close();
+                        continue;
+                    }
 
-                        System.out.println(requestString.split("}},")[1]);
-                        RequestDeserializer rd = new RequestDeserializer();
-                        Request r = rd.deserialize(requestString.split("}},")[1]);
-                        int clientId = Integer.parseInt(requestString.split("}},")[0].split("[=}]")[1].trim());
-                        if (!clientList.containsKey(clientId)) {
-                            this.clientList.put(clientId, new Server(new Client(clientId, "", "127.0.0.1", this.port)));
+                    Message message = parseFrame(requestString);
+                    if (message != null) {
+                        schedule(message, incomingSocket);
+                        if (message.isEvent()) {
+                            Thread thread = new Thread(() -> readEventStream(in, incomingSocket));
+                            thread.start();
                         }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
 
-                        double currentTime = System.currentTimeMillis();
-                        timeStampQueue.add(new Message(r, clientList.get(clientId), currentTime, clientId));
-                        incomingSocketList.put(currentTime, incomingSocket);
-
-                    } else if (requestString.contains("Event")) {
-                        Event e;
+    /**
+     * Reads the remaining newline-delimited events of a persistent entity connection
+     * until the entity closes it
+     * @param in reader positioned after the first event of the connection
+     * @param socket connection the events are read from
+     */
+    private void readEventStream(BufferedReader in, Socket socket) {
+        try (socket) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Message message = parseFrame(line);
+                if (message != null && message.isEvent()) {
+                    schedule(message, null);
+                }
+            }
+        } catch (IOException e) {
+            // entity disconnected, it reconnects with a new connection
+        }
+    }
 
-                        if (requestString.contains("Sensor")) {
-                            SensorEventDeserializer sed = new SensorEventDeserializer();
-                            e = sed.deserialize(requestString);
-                        } else {
-                            ActuatorEventDeserializer aed = new ActuatorEventDeserializer();
-                            e = aed.deserialize(requestString);
-                        }
+    /**
+     * Reads binary records from a connection that negotiated the binary format.
+     * Events are read until the connection closes, a request ends the connection's input.
+     * @param input stream positioned at the preamble of the connection
+     * @param socket connection the records are read from, used to reply to requests
+     */
+    private void readBinaryStream(BufferedInputStream input, Socket socket) {
+        DataInputStream in = new DataInputStream(input);
+        byte[] record = new byte[256];
+        try {
+            byte[] preamble = new byte[BinaryCodec.PREAMBLE_LENGTH];
+            in.readFully(preamble);
+            BinaryCodec.readPreamble(ByteBuffer.wrap(preamble));
 
-                        int clientId = e.getClientId();
-                        if (!clientList.containsKey(clientId)) {
-                            this.clientList.put(clientId, new Server(new Client(clientId, "", "127.0.0.1", this.port)));
-                        }
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > BinaryCodec.MAX_RECORD_LENGTH) {
+                    throw new IOException("Invalid record length " + length);
+                }
+                if (record.length < length + Integer.BYTES) {
+                    record = new byte[length + Integer.BYTES];
+                }
+                ByteBuffer view = ByteBuffer.wrap(record, 0, length + Integer.BYTES);
+                view.putInt(0, length);
+                in.readFully(record, Integer.BYTES, length);
 
-                        double currentTime = System.currentTimeMillis();
-                        timeStampQueue.add(new Message(e, currentTime));
-                        incomingSocketList.put(currentTime, incomingSocket);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
+                Message message = parseRecord(view);
+                if (message == null) {
+                    continue;
+                }
+                schedule(message, socket);
+                if (!message.isEvent()) {
+                    return;
                 }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // connection is already unusable
+            }
+        }
+    }
+
+    /**
+     * Decodes a single binary request or event record
+     * @param record buffer positioned at the start of a complete record
+     * @return message to schedule, or null if the record is neither a request nor an event
+     */
+    Message parseRecord(ByteBuffer record) {
+        try {
+            byte tag = BinaryCodec.tag(record);
+            if (tag == BinaryCodec.REQUEST) {
+                int clientId = BinaryCodec.requestClientId(record);
+                Request r = BinaryCodec.decodeRequest(record);
+                return new Message(r, serverFor(clientId), System.currentTimeMillis(), clientId);
+
+            } else if (tag == BinaryCodec.SENSOR_EVENT || tag == BinaryCodec.ACTUATOR_EVENT) {
+                Event e = BinaryCodec.decodeEvent(record);
+                serverFor(e.getClientId());
+                return new Message(e, System.currentTimeMillis());
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not open the event log of a client: " + e.getCause());
+        } catch (RuntimeException e) {
+            System.err.println("Malformed binary record");
+        }
+        return null;
+    }
+
+    /**
+     * Parses a single request or event frame in one pass
+     * @param frame serialized request (prefixed by client info) or event
+     * @return message to schedule, or null if the frame is malformed
+     */
+    Message parseFrame(CharSequence frame) {
+        try {
+            if (TextEventScanner.isRequestFrame(frame)) {
+                int clientId = TextEventScanner.parseRequestClientId(frame);
+                Request r = TextEventScanner.parseRequest(frame);
+                return new Message(r, serverFor(clientId), System.currentTimeMillis(), clientId);
+
+            } else {
+                Event e = TextEventScanner.parseEvent(frame);
+                serverFor(e.getClientId());
+                return new Message(e, System.currentTimeMillis());
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println("Could not open the event log of a client: " + e.getCause());
+        } catch (RuntimeException e) {
+            System.err.println("Malformed message: " + frame);
+        }
+        return null;
+    }
 
-                Message nextMessage = timeStampQueue.remove();
-                Socket nextSocket = incomingSocketList.get(nextMessage.getTimestamp());
+    /**
+     * Queues a message to be processed in order of its deadline
+     * @param message message to queue
+     * @param socket socket to reply on for requests, may be null for events
+     */
+    void schedule(Message message, Socket socket) {
+        scheduler.submit(message, socket);
+    }
 
-                if(nextMessage.isEvent()) {
-                    Thread thread = new Thread(new EventLoggerThread(nextMessage.getEvent(), this.clientList.get(nextMessage.getClientId()), this.log));
-                    thread.start();
-                } else {
-                    Thread thread = new Thread(new RequestHandlerThread(nextMessage.getRequest(), this.clientList.get(nextMessage.getClientId()), nextSocket));
-                    thread.start();
+    /**
+     * Creates the task that processes a scheduled message.
+     * Requests about all clients are answered here, every other request by the client's server.
+     * @param message message to process
+     * @param socket socket to reply on for requests, may be null for events
+     * @return task logging the event or handling the request
+     */
+    Runnable taskFor(Message message, Socket socket) {
+        Server server = this.clientList.get(message.getClientId());
+        if (message.isEvent()) {
+            return new EventLoggerThread(message.getEvent(), server, this.log);
+        }
+        RequestCommand command = message.getRequest().getRequestCommand();
+        if (command == RequestCommand.ANALYSIS_GET_GLOBAL_QUANTILES
+                || command == RequestCommand.ANALYSIS_GET_GLOBAL_DISTINCT_ENTITIES) {
+            return new GlobalRequestHandlerThread(message.getRequest(), this, socket);
+        }
+        return new RequestHandlerThread(message.getRequest(), server, socket);
+    }
+
+    /**
+     * Gives up on a message the worker pool did not accept.
+     * The client of a rejected request sees its connection closed without a reply.
+     * @param message rejected message
+     * @param socket socket to reply on for requests, may be null for events
+     */
+    void reject(Message message, Socket socket) {
+        System.err.println("Worker pool full, message rejected");
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the client sees the dropped request as a closed connection either way
+            }
+        }
+    }
+
+    /**
+     * Returns the server of a client, creating it on first use.
+     * Recovering a client's log from disk only holds up messages of the same client.
+     * @throws UncheckedIOException if the client's log cannot be opened
+     */
+    private Server serverFor(int clientId) {
+        Server server = clientList.get(clientId);
+        if (server != null) {
+            return server;
+        }
+        synchronized (opening.computeIfAbsent(clientId, id -> new Object())) {
+            server = clientList.get(clientId);
+            if (server != null) {
+                return server;
+            }
+            Client client = new Client(clientId, "", "127.0.0.1", this.port);
+            if (dataDirectory == null) {
+                server = new Server(client);
+            } else {
+                try {
+                    server = new Server(client,
+                            EventLog.open(dataDirectory.resolve("client-" + clientId), StorageMode.COLUMNAR));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error: " + e.getMessage());
+            clientList.putIfAbsent(clientId, server);
+            return server;
         }
     }
 
     public static void main(String[] args) {
         MessageHandler messageHandler = new MessageHandler(4578);
+        if (args.length > 0) {
+            messageHandler.setIngestMode(IngestMode.valueOf(args[0].toUpperCase()));
+        }
         messageHandler.start();
     }
 }
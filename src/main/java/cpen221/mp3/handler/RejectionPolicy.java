@@ -0,0 +1,8 @@
+package cpen221.mp3.handler;
+
+public enum RejectionPolicy {
+    CALLER_RUNS,
+    BLOCK,
+    DROP,
+    ABORT
+}
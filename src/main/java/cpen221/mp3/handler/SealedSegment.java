@@ -0,0 +1,181 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.codec.BinaryCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a write-ahead log segment that no longer receives appends.
+ * The file is memory-mapped, so records are read from the page cache rather than copied onto the heap.
+ */
+public class SealedSegment {
+
+    // Rep Invariants:
+    //
+    // 1. Blocks: block b holds records b * BLOCK_RECORDS up to (b + 1) * BLOCK_RECORDS - 1, and
+    //    blockPositions[b] is the position of its first record in mapped.
+    // 2. Zone Maps: blockMin[b] and blockMax[b] are the smallest and largest timestamps in block b.
+    // 3. Monotone Bounds: prefixMax[b] is the largest of blockMax[0..b] and suffixMin[b] the smallest of
+    //    blockMin[b..blocks), so both arrays are sorted ascending.
+
+    // Abstraction function:
+    // Maps the internal state of the SealedSegment class to the sequence of events stored in one segment file,
+    // the first of which is the firstIndex-th event of the log.
+    //
+    // Mapped: mapped represents the segment file, starting with the preamble.
+    // First Index: firstIndex represents the position in the log of the first event of the segment.
+    // Size: size represents the number of events in the segment.
+    // Block Positions, Block Min, Block Max: form a sparse timestamp index with one entry per BLOCK_RECORDS events.
+    // Prefix Max, Suffix Min: prefixMax and suffixMin bound the timestamps before and after each block,
+    //                         so the blocks a time window can touch are found by binary search.
+
+    private static final int BLOCK_RECORDS = 64;
+    private static final int FRAME_TRAILER = Integer.BYTES;
+
+    private final MappedByteBuffer mapped;
+    private final long firstIndex;
+    private final int size;
+    private final int[] blockPositions;
+    private final double[] blockMin;
+    private final double[] blockMax;
+    private final double[] prefixMax;
+    private final double[] suffixMin;
+
+    /**
+     * Maps a sealed segment and builds its timestamp index
+     * @param file segment file written by WriteAheadLog, holding only complete frames
+     * @param firstIndex position in the log of the first event of the segment
+     * @throws IOException if the file cannot be mapped
+     */
+    public SealedSegment(Path file, long firstIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.firstIndex = firstIndex;
+
+        ByteBuffer in = mapped.duplicate();
+        BinaryCodec.readPreamble(in);
+        int[] positions = new int[16];
+        double[] min = new double[16];
+        double[] max = new double[16];
+        int count = 0;
+        while (in.remaining() >= Integer.BYTES) {
+            int position = in.position();
+            int block = count / BLOCK_RECORDS;
+            if (block == positions.length) {
+                positions = Arrays.copyOf(positions, block * 2);
+                min = Arrays.copyOf(min, block * 2);
+                max = Arrays.copyOf(max, block * 2);
+            }
+            double timeStamp = BinaryCodec.eventTimeStamp(in);
+            if (count % BLOCK_RECORDS == 0) {
+                positions[block] = position;
+                min[block] = timeStamp;
+                max[block] = timeStamp;
+            } else {
+                min[block] = Math.min(min[block], timeStamp);
+                max[block] = Math.max(max[block], timeStamp);
+            }
+            count++;
+            in.position(position + Integer.BYTES + in.getInt(position) + FRAME_TRAILER);
+        }
+
+        int blocks = (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        this.size = count;
+        this.blockPositions = Arrays.copyOf(positions, blocks);
+        this.blockMin = Arrays.copyOf(min, blocks);
+        this.blockMax = Arrays.copyOf(max, blocks);
+        this.prefixMax = new double[blocks];
+        this.suffixMin = new double[blocks];
+        for (int b = 0; b < blocks; b++) {
+            prefixMax[b] = b == 0 ? blockMax[b] : Math.max(prefixMax[b - 1], blockMax[b]);
+        }
+        for (int b = blocks - 1; b >= 0; b--) {
+            suffixMin[b] = b == blocks - 1 ? blockMin[b] : Math.min(suffixMin[b + 1], blockMin[b]);
+        }
+    }
+
+    /**
+     * Calls visitor with every event of the segment whose timestamp is in [startTime, endTime],
+     * in the order the events were appended. Only the blocks whose timestamp range overlaps
+     * the window are read.
+     * @param startTime start of the window, inclusive
+     * @param endTime end of the window, inclusive
+     * @param visitor receives the timestamp, log position and record position of each event
+     */
+    public void forEachInWindow(double startTime, double endTime, RecordVisitor visitor) {
+        // blocks before first only hold timestamps below startTime, blocks after last only above endTime
+        int first = firstAtLeast(prefixMax, startTime);
+        int last = firstAtLeast(suffixMin, Math.nextUp(endTime)) - 1;
+        ByteBuffer in = mapped.duplicate();
+        for (int b = first; b <= last; b++) {
+            if (blockMax[b] < startTime || blockMin[b] > endTime) {
+                continue;
+            }
+            in.position(blockPositions[b]);
+            int end = Math.min(size, (b + 1) * BLOCK_RECORDS);
+            for (int i = b * BLOCK_RECORDS; i < end; i++) {
+                int position = in.position();
+                double timeStamp = BinaryCodec.eventTimeStamp(in);
+                if (timeStamp >= startTime && timeStamp <= endTime) {
+                    visitor.visit(timeStamp, firstIndex + i, position);
+                }
+                in.position(position + Integer.BYTES + in.getInt(position) + FRAME_TRAILER);
+            }
+        }
+    }
+
+    /**
+     * Appends the text Event.toString() gives for the event at a record position
+     * @param position record position passed to a RecordVisitor
+     * @param out builder to append to
+     */
+    public void appendEventText(int position, StringBuilder out) {
+        BinaryCodec.appendEventText(mapped.duplicate().position(position), out);
+    }
+
+    /**
+     * @return position in the log of the first event of the segment
+     */
+    public long getFirstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * @return number of events in the segment
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return index of the first value in sorted that is at least x, sorted.length if there is none
+     */
+    private static int firstAtLeast(double[] sorted, double x) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Receives the events found by forEachInWindow
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(double timeStamp, long index, int position);
+    }
+}
@@ -0,0 +1,196 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.codec.TextEventScanner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class SelectorIngestThread implements Runnable {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Handler: The handler must not be null.
+    // 2. Non-null Selector: The selector must not be null and must be open while the thread runs.
+    // 3. Every key registered with selector has a FrameDecoder attachment.
+
+    // Abstraction function:
+    // Maps the internal state of the SelectorIngestThread class to the abstract representation of an
+    // I/O thread that multiplexes many non-blocking connections and forwards complete messages.
+    //
+    // Handler: handler represents the message handler that parses and schedules complete frames.
+    // Selector: selector represents the set of connections this thread reads from.
+    // Pending Channels: pendingChannels holds accepted connections waiting to be registered with selector.
+
+    private final MessageHandler handler;
+    private final Selector selector;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Read buffer shared by all connections of this thread
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+
+    public SelectorIngestThread(MessageHandler handler) throws IOException {
+        this.handler = handler;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Hands a newly accepted connection to this thread
+     * @param channel accepted connection, must be in non-blocking mode
+     */
+    void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select();
+                registerPending();
+
+                List<PendingReply> replies = new ArrayList<>();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        read(key, replies);
+                    }
+                }
+
+                if (!replies.isEmpty()) {
+                    // cancelled keys are only deregistered by the next selection operation
+                    selector.selectNow();
+                    for (PendingReply reply : replies) {
+                        try {
+                            reply.channel.configureBlocking(true);
+                            handler.schedule(reply.message, reply.channel.socket());
+                        } catch (IOException e) {
+                            close(reply.channel);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+
+    private void registerPending() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new FrameDecoder());
+            } catch (IOException e) {
+                close(channel);
+            }
+        }
+    }
+
+    /**
+     * Reads everything available on the connection of the given key and forwards complete frames.
+     * A connection that delivers a request is removed from the selector and handed to the
+     * request handler in blocking mode so that the reply can be written on the same socket.
+     * The reply closes the connection, so nothing is read from it after the hand-off.
+     */
+    private void read(SelectionKey key, List<PendingReply> replies) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        FrameDecoder decoder = (FrameDecoder) key.attachment();
+        try {
+            int read;
+            while ((read = channel.read(readBuffer)) > 0) {
+                readBuffer.flip();
+                decoder.append(readBuffer);
+                readBuffer.clear();
+                if (forwardFrames(key, decoder, replies)) {
+                    return;
+                }
+            }
+            if (read < 0) {
+                ByteBuffer frame = decoder.isBinary() ? null : decoder.remaining();
+                if (frame != null
+                        && forward(key, handler.parseFrame(TextEventScanner.asCharSequence(frame)), replies, false)) {
+                    return;
+                }
+                key.cancel();
+                close(channel);
+            }
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            key.cancel();
+            close(channel);
+        }
+    }
+
+    /**
+     * Forwards every complete frame the decoder holds, including the frames that arrived
+     * in the same read after a request. Only the first request is answered on the connection,
+     * later requests are still processed but get no reply.
+     * @return true if the connection was handed off for a reply
+     */
+    private boolean forwardFrames(SelectionKey key, FrameDecoder decoder, List<PendingReply> replies) {
+        if (!decoder.negotiate()) {
+            return false;
+        }
+        boolean handedOff = false;
+        if (decoder.isBinary()) {
+            ByteBuffer record;
+            while ((record = decoder.nextRecord()) != null) {
+                handedOff = forward(key, handler.parseRecord(record), replies, handedOff);
+            }
+        } else {
+            ByteBuffer frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                Message message = handler.parseFrame(TextEventScanner.asCharSequence(frame));
+                handedOff = forward(key, message, replies, handedOff);
+            }
+        }
+        return handedOff;
+    }
+
+    /**
+     * @param handedOff true if the connection was already handed off for an earlier request
+     * @return true if the connection was handed off for a reply
+     */
+    private boolean forward(SelectionKey key, Message message, List<PendingReply> replies, boolean handedOff) {
+        if (message == null) {
+            return handedOff;
+        }
+        if (message.isEvent() || handedOff) {
+            handler.schedule(message, null);
+            return handedOff;
+        }
+        key.cancel();
+        replies.add(new PendingReply(message, (SocketChannel) key.channel()));
+        return true;
+    }
+
+    private static void close(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // connection is already unusable
+        }
+    }
+
+    private static class PendingReply {
+        private final Message message;
+        private final SocketChannel channel;
+
+        private PendingReply(Message message, SocketChannel channel) {
+            this.message = message;
+            this.channel = channel;
+        }
+    }
+}
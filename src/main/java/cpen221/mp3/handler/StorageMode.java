@@ -0,0 +1,6 @@
+package cpen221.mp3.handler;
+
+public enum StorageMode {
+    ROW,
+    COLUMNAR
+}
@@ -0,0 +1,265 @@
+package cpen221.mp3.handler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class WorkerPool {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Workers: workers must be positive.
+    // 2. Non-negative Queue Capacity: queueCapacity must be non-negative.
+    // 3. Bounded Admission: at most workers + queueCapacity tasks are admitted and not yet finished,
+    //    which is the number of permits taken from admitted.
+    // 4. Non-negative Metrics: active, completed, rejected and callerRuns are never negative,
+    //    and active is at most the number of admitted tasks.
+
+    // Abstraction function:
+    // Maps the internal state of the WorkerPool class to a bounded set of workers that run
+    // event logging and request handling tasks.
+    //
+    // Kind: kind represents whether tasks run on pooled platform threads or on virtual threads.
+    // Workers: workers represents the number of tasks that may run at the same time.
+    // Queue Capacity: queueCapacity represents the number of tasks that may wait for a worker.
+    // Rejection Policy: policy represents what happens to a task submitted while the pool is full.
+    // Executor: executor represents the threads that run admitted tasks.
+    // Admitted: admitted represents the free slots for running and waiting tasks.
+    // Active: active represents the number of tasks currently running.
+    // Completed: completed represents the number of tasks that finished on a worker.
+    // Rejected: rejected represents the number of tasks dropped or aborted because the pool was full.
+    // Caller Runs: callerRuns represents the number of tasks run by the submitting thread because the pool was full.
+
+    private final WorkerKind kind;
+    private final int workers;
+    private final int queueCapacity;
+    private final RejectionPolicy policy;
+    private final ExecutorService executor;
+    private final Semaphore admitted;
+    private final Semaphore running;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    /**
+     * Creates a pool of workers.
+     * Virtual threads are only used if the running JVM supports them,
+     * otherwise the pool falls back to platform threads.
+     * @param kind PLATFORM to run tasks on a fixed set of pooled threads, VIRTUAL to run each task on a virtual thread
+     * @param workers maximum number of tasks running at the same time, must be positive
+     * @param queueCapacity maximum number of tasks waiting for a worker, must be non-negative
+     * @param policy what to do with a task submitted while all workers are busy and the queue is full
+     */
+    public WorkerPool(WorkerKind kind, int workers, int queueCapacity, RejectionPolicy policy) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be positive");
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity must be non-negative");
+        }
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.admitted = new Semaphore(workers + queueCapacity);
+
+        ExecutorService virtual = kind == WorkerKind.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.kind = WorkerKind.VIRTUAL;
+            this.executor = virtual;
+            this.running = new Semaphore(workers);
+        } else {
+            this.kind = WorkerKind.PLATFORM;
+            this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory());
+            this.running = null;
+        }
+    }
+
+    /**
+     * Creates a pool of platform workers sized for the available processors,
+     * with a queue of 1024 tasks and caller-runs backpressure
+     */
+    public WorkerPool() {
+        this(WorkerKind.PLATFORM, Math.max(2, Runtime.getRuntime().availableProcessors() * 2), 1024,
+                RejectionPolicy.CALLER_RUNS);
+    }
+
+    /**
+     * Submits a task to the pool. If all workers are busy and the queue is full, the task is handled
+     * according to the rejection policy: CALLER_RUNS runs it on the calling thread, BLOCK waits for space,
+     * DROP discards it and ABORT throws.
+     * @param task task to run
+     * @return true if the task was run or will run, false if it was dropped
+     * @throws RejectedExecutionException if the pool is full and the policy is ABORT, or the pool is shut down
+     */
+    public boolean submit(Runnable task) {
+        if (!admitted.tryAcquire()) {
+            switch (policy) {
+                case CALLER_RUNS:
+                    callerRuns.incrementAndGet();
+                    task.run();
+                    return true;
+                case BLOCK:
+                    try {
+                        admitted.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        rejected.incrementAndGet();
+                        return false;
+                    }
+                    break;
+                case DROP:
+                    rejected.incrementAndGet();
+                    return false;
+                default:
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("Worker pool is full");
+            }
+        }
+
+        try {
+            executor.execute(() -> runAdmitted(task));
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            rejected.incrementAndGet();
+            throw e;
+        }
+        return true;
+    }
+
+    private void runAdmitted(Runnable task) {
+        boolean holdsWorker = false;
+        try {
+            if (running != null) {
+                running.acquire();
+                holdsWorker = true;
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            if (holdsWorker) {
+                running.release();
+            }
+            admitted.release();
+        }
+    }
+
+    /**
+     * Stops accepting tasks and lets queued tasks finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for queued and running tasks to finish after shutdown()
+     * @param timeout maximum time to wait
+     * @param unit unit of timeout
+     * @return true if all tasks finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return kind of threads the pool actually runs tasks on
+     */
+    public WorkerKind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return maximum number of tasks running at the same time
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return maximum number of tasks waiting for a worker
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return number of tasks currently running on a worker
+     */
+    public int getActiveWorkers() {
+        return active.get();
+    }
+
+    /**
+     * @return number of admitted tasks waiting for a worker
+     */
+    public int getQueueLength() {
+        int pending = workers + queueCapacity - admitted.availablePermits() - active.get();
+        return Math.max(0, pending);
+    }
+
+    /**
+     * @return number of tasks that finished on a worker
+     */
+    public long getCompletedTasks() {
+        return completed.get();
+    }
+
+    /**
+     * @return number of tasks dropped or aborted because the pool was full
+     */
+    public long getRejectedTasks() {
+        return rejected.get();
+    }
+
+    /**
+     * @return number of tasks run by the submitting thread because the pool was full
+     */
+    public long getCallerRunsTasks() {
+        return callerRuns.get();
+    }
+
+    /**
+     * Returns Executors.newVirtualThreadPerTaskExecutor() if the running JVM provides it
+     * @return executor starting a virtual thread per task, or null if virtual threads are unavailable
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object executor = java.util.concurrent.Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger();
+        private final int pool = poolNumber.getAndIncrement();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "message-worker-" + pool + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
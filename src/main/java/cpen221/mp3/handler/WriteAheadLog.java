@@ -0,0 +1,414 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.codec.BinaryCodec;
+import cpen221.mp3.event.Event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Segmented, append-only log of events on disk.
+ *
+ * Each segment file is named after the sequence number of its first event and starts with the
+ * BinaryCodec preamble. It holds frames of the form [BinaryCodec event record][int CRC32 of the record].
+ * Appends are buffered and handed to the file channel in batches, and a commit thread forces
+ * the channel to disk at most every commitInterval milliseconds, so that all appends waiting
+ * for durability share one fsync.
+ */
+public class WriteAheadLog implements Closeable {
+
+    // Rep Invariants:
+    //
+    // 1. Sequence Order: durable <= written <= appended.
+    // 2. Current Segment: channel is open on the last segment in segments unless closed,
+    //    and segmentSize is its length including the bytes still in buffer.
+    // 3. Valid Frames: every segment holds the preamble followed by complete, checksummed frames.
+    // 4. Sealed Prefix: sealed.get(i) is a view of segments.get(i), and sealed.size() < segments.size().
+
+    // Abstraction function:
+    // Maps the internal state of the WriteAheadLog class to the sequence of events appended to it,
+    // the first durable of which are guaranteed to survive a crash.
+    //
+    // Directory: directory represents where the segment files are stored.
+    // Segments: segments represents the segment files, oldest first.
+    // Sealed: sealed represents read-only views of the segments that no longer receive appends, opened on demand.
+    // Buffer: buffer represents frames appended but not yet handed to channel.
+    // Appended: appended represents the number of events appended, including recovered ones.
+    // Written: written represents the number of events handed to the file channel.
+    // Durable: durable represents the number of events forced to disk.
+    // Failure: failure represents the error that stopped the commit thread, or null.
+
+    private static final String SUFFIX = ".wal";
+    private static final int FRAME_TRAILER = Integer.BYTES;
+    private static final int MAX_EVENT_FRAME = 512;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final long commitInterval;
+    private final List<Path> segments = new ArrayList<>();
+    private final List<SealedSegment> sealed = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private long segmentSize;
+    private long appended = 0;
+    private long written = 0;
+    private long durable = 0;
+    private boolean syncRequested = false;
+    private boolean closed = false;
+    private IOException failure = null;
+
+    /**
+     * Opens the log in the given directory with 64 MB segments and a 5 ms commit interval,
+     * replaying the events already stored there
+     * @param directory directory holding the segment files, created if it does not exist
+     * @param recovered called with each stored event, in the order the events were appended
+     * @throws IOException if the directory cannot be read or written
+     */
+    public WriteAheadLog(Path directory, Consumer<Event> recovered) throws IOException {
+        this(directory, 64L << 20, 5, recovered);
+    }
+
+    /**
+     * Opens the log in the given directory, replaying the events already stored there.
+     * A torn or corrupt frame ends recovery: the segment is truncated before it,
+     * and later segments are removed.
+     * @param directory directory holding the segment files, created if it does not exist
+     * @param segmentBytes size in bytes after which a new segment is started, at least 1024
+     * @param commitInterval longest time in milliseconds between fsyncs of appended events, must be positive
+     * @param recovered called with each stored event, in the order the events were appended
+     * @throws IOException if the directory cannot be read or written
+     */
+    public WriteAheadLog(Path directory, long segmentBytes, long commitInterval, Consumer<Event> recovered)
+            throws IOException {
+        if (segmentBytes < 1024 || commitInterval <= 0) {
+            throw new IllegalArgumentException("segmentBytes must be at least 1024 and commitInterval positive");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.commitInterval = commitInterval;
+        Files.createDirectories(directory);
+        recover(recovered);
+
+        Thread committer = new Thread(this::commitLoop, "wal-commit-" + directory.getFileName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Replays the stored segments by memory-mapping them, and reopens the last one for appending
+     */
+    private void recover(Consumer<Event> recovered) throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).sorted().forEach(found::add);
+        }
+
+        long validEnd = -1;
+        for (int s = 0; s < found.size(); s++) {
+            Path segment = found.get(s);
+            long size = Files.size(segment);
+            long end;
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                end = replay(mapped, recovered);
+            }
+            segments.add(segment);
+            validEnd = end;
+            if (end < size) {
+                System.err.println("Write-ahead log " + segment + " is torn at byte " + end + ", truncating");
+                for (Path later : found.subList(s + 1, found.size())) {
+                    Files.delete(later);
+                }
+                break;
+            }
+        }
+
+        if (segments.isEmpty() || validEnd < BinaryCodec.PREAMBLE_LENGTH) {
+            if (!segments.isEmpty()) {
+                Files.delete(segments.remove(segments.size() - 1));
+            }
+            openSegment();
+        } else {
+            channel = FileChannel.open(segments.get(segments.size() - 1), StandardOpenOption.WRITE);
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+            segmentSize = validEnd;
+        }
+        written = appended;
+        durable = appended;
+    }
+
+    /**
+     * Replays the valid frames of one segment
+     * @return position after the last valid frame, 0 if the preamble is invalid
+     */
+    private long replay(ByteBuffer segment, Consumer<Event> recovered) {
+        try {
+            BinaryCodec.readPreamble(segment);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+        while (segment.remaining() >= Integer.BYTES) {
+            int start = segment.position();
+            int length = segment.getInt(start);
+            if (length <= 0 || length > BinaryCodec.MAX_RECORD_LENGTH
+                    || segment.remaining() < Integer.BYTES + length + FRAME_TRAILER) {
+                break;
+            }
+            int recordEnd = start + Integer.BYTES + length;
+            crc.reset();
+            crc.update(segment.duplicate().position(start).limit(recordEnd));
+            if ((int) crc.getValue() != segment.getInt(recordEnd)) {
+                break;
+            }
+            Event event;
+            try {
+                event = BinaryCodec.decodeEvent(segment.duplicate().position(start));
+            } catch (RuntimeException e) {
+                break;
+            }
+            recovered.accept(event);
+            appended++;
+            segment.position(recordEnd + FRAME_TRAILER);
+        }
+        return segment.position();
+    }
+
+    /**
+     * Appends an event. The event is on disk once awaitDurable returns for the returned sequence number.
+     * @param event event to append
+     * @return sequence number of the event, the number of events appended so far
+     * @throws IOException if the event cannot be written
+     */
+    public synchronized long append(Event event) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (segmentSize + buffer.position() + MAX_EVENT_FRAME > segmentBytes
+                && segmentSize + buffer.position() > BinaryCodec.PREAMBLE_LENGTH) {
+            roll();
+        }
+        if (buffer.remaining() < MAX_EVENT_FRAME) {
+            writeBuffer();
+        }
+        int start = buffer.position();
+        try {
+            BinaryCodec.encode(event, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            throw new IOException("Event too large for the write-ahead log", e);
+        }
+        crc.reset();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        buffer.putInt((int) crc.getValue());
+        return ++appended;
+    }
+
+    /**
+     * Waits until the first sequence events appended are on disk.
+     * Callers waiting at the same time share one fsync.
+     * @param sequence sequence number returned by append
+     * @throws IOException if the log was closed or could not be forced to disk
+     */
+    public synchronized void awaitDurable(long sequence) throws IOException {
+        while (durable < sequence) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            syncRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the write-ahead log", e);
+            }
+        }
+    }
+
+    /**
+     * Waits until every event appended so far is on disk
+     * @throws IOException if the log was closed or could not be forced to disk
+     */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+    }
+
+    private void commitLoop() {
+        while (true) {
+            FileChannel target;
+            long upTo;
+            synchronized (this) {
+                if (!syncRequested && !closed) {
+                    try {
+                        wait(commitInterval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                syncRequested = false;
+                if (durable == appended) {
+                    continue;
+                }
+                try {
+                    writeBuffer();
+                } catch (IOException e) {
+                    failure = e;
+                    notifyAll();
+                    return;
+                }
+                target = channel;
+                upTo = written;
+            }
+            try {
+                target.force(false);
+            } catch (ClosedChannelException e) {
+                // the segment was rolled or the log closed, both force the channel first
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                durable = Math.max(durable, upTo);
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Hands the buffered frames to the file channel
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentSize += channel.write(buffer);
+        }
+        buffer.clear();
+        written = appended;
+    }
+
+    /**
+     * Seals the current segment and starts a new one
+     */
+    private void roll() throws IOException {
+        writeBuffer();
+        channel.force(false);
+        channel.close();
+        durable = written;
+        notifyAll();
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        Path segment = directory.resolve(String.format("%020d", appended) + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer preamble = ByteBuffer.allocate(BinaryCodec.PREAMBLE_LENGTH);
+        BinaryCodec.writePreamble(preamble);
+        preamble.flip();
+        while (preamble.hasRemaining()) {
+            channel.write(preamble);
+        }
+        segmentSize = BinaryCodec.PREAMBLE_LENGTH;
+        segments.add(segment);
+    }
+
+    /**
+     * Returns read-only views of all segments except the one receiving appends.
+     * Their events are the first events of the log, in the order they were appended.
+     * @return sealed segments, oldest first
+     * @throws IOException if a segment cannot be mapped
+     */
+    public synchronized List<SealedSegment> getSealedSegments() throws IOException {
+        for (int s = sealed.size(); s < segments.size() - 1; s++) {
+            Path segment = segments.get(s);
+            sealed.add(new SealedSegment(segment, firstIndex(segment)));
+        }
+        return new ArrayList<>(sealed);
+    }
+
+    /**
+     * Returns the number of events in sealed segments. The later events are only in the segment
+     * receiving appends, which cannot be read from disk until it is sealed.
+     * @return number of events in the segments returned by getSealedSegments
+     */
+    public synchronized long getSealedEvents() {
+        return segments.isEmpty() ? 0 : firstIndex(segments.get(segments.size() - 1));
+    }
+
+    /**
+     * @return index of the first event of a segment, which the segment file is named after
+     */
+    private static long firstIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * @return the segment files, oldest first
+     */
+    public synchronized List<Path> getSegments() {
+        return new ArrayList<>(segments);
+    }
+
+    /**
+     * @return number of events appended, including recovered events
+     */
+    public synchronized long getAppended() {
+        return appended;
+    }
+
+    /**
+     * @return number of events known to be on disk
+     */
+    public synchronized long getDurable() {
+        return durable;
+    }
+
+    /**
+     * Forces every appended event to disk and closes the log
+     * @throws IOException if the remaining events cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writeBuffer();
+            channel.force(false);
+            durable = written;
+        } finally {
+            closed = true;
+            channel.close();
+            notifyAll();
+        }
+    }
+}
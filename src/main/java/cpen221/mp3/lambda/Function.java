@@ -9,7 +9,10 @@ import cpen221.mp3.server.Predictor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,15 +33,18 @@ public class Function implements RequestHandler<APIGatewayProxyRequestEvent, API
                 .withHeaders(headers);
 
         try {
-            // Extract parameters from the input
+            // Extract parameters from the input, long requests send them as a form-encoded POST body
             Map<String, String> queryParams = input.getQueryStringParameters();
+            if (queryParams == null || !queryParams.containsKey("param3")) {
+                queryParams = parseForm(input);
+            }
             int entityId = Integer.parseInt(queryParams.get("param1"));
             int n = Integer.parseInt(queryParams.get("param2"));
             String param3 = queryParams.get("param3");
             List<Double> startingValues = new ArrayList<>();
-            for(String s : param3.substring(1, param3.length() - 1).split(", ")) {
-                if(!(s.equals(""))) {
-                    startingValues.add(Double.parseDouble(s));
+            for(String s : param3.substring(1, param3.length() - 1).split(",")) {
+                if(!(s.isBlank())) {
+                    startingValues.add(Double.parseDouble(s.trim()));
                 }
             }
 
@@ -58,4 +64,28 @@ public class Function implements RequestHandler<APIGatewayProxyRequestEvent, API
                     .withStatusCode(500);
         }
     }
+
+    /**
+     * Parses the form-encoded body of a POST request
+     * @param input request event
+     * @return map from parameter name to decoded value
+     */
+    private static Map<String, String> parseForm(APIGatewayProxyRequestEvent input) {
+        Map<String, String> params = new HashMap<>();
+        String body = input.getBody();
+        if (body == null) {
+            return params;
+        }
+        if (Boolean.TRUE.equals(input.getIsBase64Encoded())) {
+            body = new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+        }
+        for (String pair : body.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
 }
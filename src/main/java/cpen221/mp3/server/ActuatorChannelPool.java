@@ -0,0 +1,263 @@
+package cpen221.mp3.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ActuatorChannelPool {
+
+    // Rep Invariants:
+    //
+    // 1. One Channel Per Endpoint: channels holds at most one connection, connecting, open or closed,
+    //    for each host:port.
+    //    A closed connection is replaced by the next command, except during the back-off after a failed connect.
+    // 2. Positive Connect Timeout: connectTimeout must be positive.
+    // 3. Positive Queue Capacity: queueCapacity must be positive.
+    // 4. Ordered Acks: in every channel, awaiting holds one future per command queued and not yet acknowledged,
+    //    in the order the commands were queued, which is the order they are written.
+
+    // Abstraction function:
+    // Maps the internal state of the ActuatorChannelPool class to a set of long-lived connections to actuators,
+    // one per actuator endpoint, on which commands are pipelined and acknowledged in order.
+    //
+    // Channels: channels maps "host:port" to the connection to that endpoint.
+    // Connect Timeout: connectTimeout represents the time in milliseconds to wait for a new connection,
+    //                  and to wait before connecting again to an endpoint that could not be reached.
+    // Queue Capacity: queueCapacity represents the number of commands that may wait to be written to one endpoint.
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final int connectTimeout;
+    private final int queueCapacity;
+
+    public ActuatorChannelPool() {
+        this(1000);
+    }
+
+    /**
+     * Creates an empty pool
+     * @param connectTimeout time in milliseconds to wait when connecting to an actuator, must be positive
+     */
+    public ActuatorChannelPool(int connectTimeout) {
+        this(connectTimeout, 1024);
+    }
+
+    /**
+     * Creates an empty pool
+     * @param connectTimeout time in milliseconds to wait when connecting to an actuator, must be positive
+     * @param queueCapacity number of commands that may wait to be written to one actuator, must be positive
+     */
+    public ActuatorChannelPool(int connectTimeout, int queueCapacity) {
+        if (connectTimeout <= 0) {
+            throw new IllegalArgumentException("connectTimeout must be positive");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.connectTimeout = connectTimeout;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sends a command to the actuator listening on the given endpoint, reusing the open connection to it.
+     * Never blocks: the command is queued and written by the connection's own thread, which also connects,
+     * without waiting for the acknowledgements of earlier commands.
+     * @param host IP address of the actuator
+     * @param port command port of the actuator
+     * @param clientId ID of the client the command is sent for
+     * @param command command to send
+     * @return future completed with the state the actuator reports after the command,
+     *         or completed exceptionally if the actuator cannot be reached, disconnects first,
+     *         or has queueCapacity commands waiting to be written
+     */
+    public CompletableFuture<Boolean> send(String host, int port, int clientId, ServerRequest command) {
+        String line = clientId + "{" + command.toString() + "}\n";
+        String endpoint = host + ":" + port;
+        CompletableFuture<Boolean> ack = channelFor(endpoint, host, port).enqueue(line);
+        if (ack == null) {
+            // the cached connection was closed by the actuator, reconnect once
+            ack = channelFor(endpoint, host, port).enqueue(line);
+        }
+        if (ack == null) {
+            return CompletableFuture.failedFuture(
+                    new IOException("Actuator at " + endpoint + " closed the connection"));
+        }
+        return ack;
+    }
+
+    /**
+     * @return number of open actuator connections
+     */
+    public int size() {
+        int open = 0;
+        for (Channel channel : channels.values()) {
+            if (channel.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Closes all connections, including ones still connecting.
+     * Commands waiting to be written or acknowledged complete exceptionally.
+     */
+    public void close() {
+        for (Channel channel : channels.values()) {
+            channel.close(new IOException("Actuator channel pool closed"));
+        }
+    }
+
+    /**
+     * Returns the connection to an endpoint, starting a new one if there is none or the last one closed.
+     * A connection that could not be established is kept for connectTimeout milliseconds,
+     * so commands to an unreachable actuator fail at once instead of reconnecting for every command.
+     */
+    private Channel channelFor(String endpoint, String host, int port) {
+        return channels.compute(endpoint, (key, channel) -> {
+            if (channel != null && !channel.isReplaceable()) {
+                return channel;
+            }
+            Channel created = new Channel(endpoint, host, port);
+            created.start();
+            return created;
+        });
+    }
+
+    /**
+     * One connection to an actuator. Commands are queued by callers and written in order by the
+     * channel's writer thread, which first connects, and acknowledgements are read in order by its reader thread.
+     */
+    private final class Channel {
+        private final String endpoint;
+        private final String host;
+        private final int port;
+        private final Socket socket = new Socket();
+        private final BlockingQueue<String> outbound = new ArrayBlockingQueue<>(queueCapacity);
+        private final Queue<CompletableFuture<Boolean>> awaiting = new ArrayDeque<>();
+        private final Thread writer;
+        private boolean connected = false;
+        private boolean closed = false;
+        private IOException failure;
+        private long retryAt;
+
+        private Channel(String endpoint, String host, int port) {
+            this.endpoint = endpoint;
+            this.host = host;
+            this.port = port;
+            this.writer = new Thread(this::writeCommands, "actuator-writer-" + endpoint);
+            this.writer.setDaemon(true);
+        }
+
+        private void start() {
+            writer.start();
+        }
+
+        /**
+         * @return future of the command's acknowledgement, failed if the queue is full or the actuator
+         *         could not be reached recently, or null if an open connection was closed
+         */
+        private synchronized CompletableFuture<Boolean> enqueue(String line) {
+            if (closed) {
+                return connected ? null : CompletableFuture.failedFuture(failure);
+            }
+            if (!outbound.offer(line)) {
+                return CompletableFuture.failedFuture(
+                        new IOException(queueCapacity + " commands already waiting for actuator at " + endpoint));
+            }
+            CompletableFuture<Boolean> ack = new CompletableFuture<>();
+            awaiting.add(ack);
+            return ack;
+        }
+
+        private synchronized boolean isOpen() {
+            return connected && !closed;
+        }
+
+        private synchronized boolean isReplaceable() {
+            return closed && (connected || System.currentTimeMillis() >= retryAt);
+        }
+
+        private void writeCommands() {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port), connectTimeout);
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    connected = true;
+                }
+                Thread reader = new Thread(this::readAcks, "actuator-channel-" + endpoint);
+                reader.setDaemon(true);
+                reader.start();
+
+                while (true) {
+                    out.write(outbound.take());
+                    if (outbound.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                close(e);
+            } catch (InterruptedException e) {
+                close(new IOException("Actuator channel to " + endpoint + " closed"));
+            }
+        }
+
+        private void readAcks() {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    CompletableFuture<Boolean> ack;
+                    synchronized (this) {
+                        ack = awaiting.poll();
+                    }
+                    if (ack != null) {
+                        ack.complete(Boolean.parseBoolean(line.trim()));
+                    }
+                }
+            } catch (IOException e) {
+                // the actuator disconnected
+            }
+            close(new IOException("Actuator at " + endpoint + " closed the connection"));
+        }
+
+        private void close(IOException cause) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                failure = cause;
+                retryAt = System.currentTimeMillis() + connectTimeout;
+                for (CompletableFuture<Boolean> ack : awaiting) {
+                    ack.completeExceptionally(cause);
+                }
+                awaiting.clear();
+                outbound.clear();
+            }
+            writer.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the connection is gone either way
+            }
+        }
+    }
+}
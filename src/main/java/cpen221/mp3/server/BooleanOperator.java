@@ -0,0 +1,6 @@
+package cpen221.mp3.server;
+
+enum BooleanOperator {
+    EQUALS,
+    NOT_EQUALS
+}
@@ -0,0 +1,37 @@
+package cpen221.mp3.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread shared by all servers to compact their event logs, so that compaction
+ * never runs on the threads that log events
+ */
+final class CompactionScheduler {
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "log-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private CompactionScheduler() { }
+
+    /**
+     * Runs a compaction task periodically until it is cancelled
+     * @param task compaction pass to run
+     * @param periodMillis time in milliseconds between the end of one pass and the start of the next
+     * @return handle to cancel the task
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long periodMillis) {
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+}
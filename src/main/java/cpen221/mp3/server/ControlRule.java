@@ -0,0 +1,77 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.entity.Actuator;
+
+import java.util.Objects;
+
+public class ControlRule {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Filter: The filter must not be null.
+    // 2. Non-null Actuator: The actuator must not be null.
+    // 3. Non-null Command: The command must not be null.
+
+    // Abstraction function:
+    // Maps the internal state of the ControlRule class to a standing rule that sends a command to an actuator
+    // whenever the latest event of the client satisfies a filter.
+    //
+    // Filter: filter represents the filter the latest event must satisfy.
+    // Actuator: actuator represents the actuator the command is sent to.
+    // Command: command represents SET_STATE (to true) or TOGGLE_STATE.
+
+    private final Filter filter;
+    private final Actuator actuator;
+    private final SeverCommandToActuator command;
+
+    public ControlRule(Filter filter, Actuator actuator, SeverCommandToActuator command) {
+        this.filter = filter;
+        this.actuator = actuator;
+        this.command = command;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    public Actuator getActuator() {
+        return actuator;
+    }
+
+    public SeverCommandToActuator getCommand() {
+        return command;
+    }
+
+    /**
+     * Two rules are equal if they send the same command to the same actuator of the same client
+     * under filters with the same description
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ControlRule)) {
+            return false;
+        }
+        ControlRule other = (ControlRule) o;
+        return command == other.command
+                && actuator.getId() == other.actuator.getId()
+                && actuator.getClientId() == other.actuator.getClientId()
+                && filter.toString().equals(other.filter.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(command, actuator.getId(), actuator.getClientId(), filter.toString());
+    }
+
+    @Override
+    public String toString() {
+        return "ControlRule{" +
+                "Command=" + getCommand() +
+                ",Actuator=" + getActuator() +
+                ",Filter=" + getFilter() +
+                '}';
+    }
+}
@@ -0,0 +1,200 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ControlRuleEngine {
+
+    // Rep Invariants:
+    //
+    // 1. Latest Event: latestEvent is null or has the largest timestamp of all events observed.
+    // 2. Seen Entities: seen holds exactly the entity IDs of the events observed.
+    // 3. Non-negative Metrics: all counters and times are non-negative, and every max is at most the matching total.
+    // 4. Unique Rules: registered maps every rule in rules to itself, and rules holds no two equal rules.
+
+    // Abstraction function:
+    // Maps the internal state of the ControlRuleEngine class to the standing actuator control rules of a client,
+    // which are checked once against each event that becomes the client's latest event.
+    //
+    // Client ID: clientId represents the client whose actuators the rules may control.
+    // Rules: rules represents the registered rules, indexed by their filters.
+    // Registered: registered represents the same rules, looked up by value to skip duplicates and find removed rules.
+    // Latest Event: latestEvent represents the event with the latest timestamp observed so far.
+    // Seen: seen represents the entities that have sent at least one event.
+    // Evaluations: evaluations represents the number of events checked against the rules,
+    //              and evaluationNanos the total time spent checking them.
+    // Triggers: triggers represents the number of commands acknowledged by actuators,
+    //           and triggerLatencyNanos the total time from the triggering event's arrival to the acknowledgement.
+
+    private final int clientId;
+    private final FilterIndex<ControlRule> rules = new FilterIndex<>();
+    private final Map<ControlRule, ControlRule> registered = new HashMap<>();
+    private final Set<Integer> seen = ConcurrentHashMap.newKeySet();
+    private Event latestEvent = null;
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+    private final AtomicLong maxEvaluationNanos = new AtomicLong();
+    private final LongAdder triggers = new LongAdder();
+    private final LongAdder triggerLatencyNanos = new LongAdder();
+    private final AtomicLong maxTriggerLatencyNanos = new AtomicLong();
+
+    /**
+     * Creates an engine with no rules
+     * @param clientId ID of the client whose actuators the rules may control
+     */
+    public ControlRuleEngine(int clientId) {
+        this.clientId = clientId;
+    }
+
+    /**
+     * Registers a standing rule and checks it against the current latest event,
+     * so that it does not wait for the next one.
+     * Registering a rule equal to a registered rule does nothing.
+     * @param rule rule to check against the latest event and every later event that becomes the latest event
+     * @return the rule if it is new and fires on the current latest event, otherwise an empty list
+     */
+    public synchronized List<ControlRule> register(ControlRule rule) {
+        List<ControlRule> fired = new ArrayList<>();
+        if (registered.putIfAbsent(rule, rule) != null) {
+            return fired;
+        }
+        rules.add(rule.getFilter(), rule);
+        if (latestEvent != null && mayFire(rule) && rule.getFilter().satisfies(latestEvent)) {
+            fired.add(rule);
+        }
+        return fired;
+    }
+
+    /**
+     * Removes a standing rule
+     * @param rule rule equal to a registered rule
+     * @return true if the rule was registered
+     */
+    public synchronized boolean remove(ControlRule rule) {
+        ControlRule stored = registered.remove(rule);
+        return stored != null && rules.remove(stored.getFilter(), stored);
+    }
+
+    /**
+     * Observes an incoming event. If it is the latest event so far,
+     * the rules it satisfies fire.
+     * @param event incoming event of the client
+     * @return the rules that fire, in no particular order
+     */
+    public synchronized List<ControlRule> observe(Event event) {
+        seen.add(event.getEntityId());
+        if (latestEvent != null && event.getTimeStamp() < latestEvent.getTimeStamp()) {
+            return new ArrayList<>();
+        }
+        latestEvent = event;
+
+        long start = System.nanoTime();
+        List<ControlRule> fired = new ArrayList<>();
+        rules.forEachMatch(event, rule -> {
+            if (mayFire(rule)) {
+                fired.add(rule);
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+        evaluations.increment();
+        evaluationNanos.add(elapsed);
+        maxEvaluationNanos.accumulateAndGet(elapsed, Math::max);
+        return fired;
+    }
+
+    /**
+     * A rule only controls actuators registered for the client,
+     * and a toggle only controls actuators that have sent an event
+     */
+    private boolean mayFire(ControlRule rule) {
+        if (rule.getActuator().getClientId() != clientId) {
+            return false;
+        }
+        return rule.getCommand() != SeverCommandToActuator.TOGGLE_STATE || seen.contains(rule.getActuator().getId());
+    }
+
+    /**
+     * Records that an actuator acknowledged a command
+     * @param latencyNanos time from the arrival of the triggering event to the acknowledgement
+     */
+    public void recordTrigger(long latencyNanos) {
+        triggers.increment();
+        triggerLatencyNanos.add(latencyNanos);
+        maxTriggerLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    /**
+     * @param entityId ID of an entity
+     * @return true if the entity has sent at least one event
+     */
+    public boolean hasSeen(int entityId) {
+        return seen.contains(entityId);
+    }
+
+    /**
+     * @return the event with the latest timestamp observed so far, or null if there is none
+     */
+    public synchronized Event getLatestEvent() {
+        return latestEvent;
+    }
+
+    /**
+     * @return number of registered rules
+     */
+    public int getRuleCount() {
+        return rules.size();
+    }
+
+    /**
+     * @return number of events checked against the rules
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return average time in nanoseconds spent checking an event against the rules
+     */
+    public double getAverageEvaluationNanos() {
+        long count = evaluations.sum();
+        return count == 0 ? 0 : (double) evaluationNanos.sum() / count;
+    }
+
+    /**
+     * @return longest time in nanoseconds spent checking an event against the rules
+     */
+    public long getMaxEvaluationNanos() {
+        return maxEvaluationNanos.get();
+    }
+
+    /**
+     * @return number of commands acknowledged by actuators
+     */
+    public long getTriggers() {
+        return triggers.sum();
+    }
+
+    /**
+     * @return average time in nanoseconds from a triggering event's arrival to the actuator's acknowledgement
+     */
+    public double getAverageTriggerLatencyNanos() {
+        long count = triggers.sum();
+        return count == 0 ? 0 : (double) triggerLatencyNanos.sum() / count;
+    }
+
+    /**
+     * @return longest time in nanoseconds from a triggering event's arrival to the actuator's acknowledgement
+     */
+    public long getMaxTriggerLatencyNanos() {
+        return maxTriggerLatencyNanos.get();
+    }
+}
@@ -0,0 +1,102 @@
+package cpen221.mp3.server;
+
+public class DistinctCounter {
+
+    // Rep Invariants:
+    //
+    // 1. Register Count: registers.length == 1 << PRECISION.
+    // 2. Register Range: every register is between 0 and 64 - PRECISION + 1.
+
+    // Abstraction function:
+    // Maps the internal state of the DistinctCounter class to an estimate of the number of distinct keys added
+    // (a HyperLogLog sketch), with a standard error of about 1.6% in 4 KB however many keys are added.
+    //
+    // Registers: registers[i] represents the largest position of the first 1 bit, after the index bits,
+    //            among the hashes of the added keys whose first PRECISION bits are i.
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    public DistinctCounter() { }
+
+    /**
+     * Adds a key. Adding the same key again does not change the estimate.
+     * @param key key to add
+     */
+    public synchronized void add(long key) {
+        long hash = mix(key);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // the marker bit bounds the rank when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Adds every key counted by another counter, as if they had been added to this one
+     * @param other counter to merge, not modified
+     */
+    public void merge(DistinctCounter other) {
+        byte[] theirs = other.copy().registers;
+        synchronized (this) {
+            for (int i = 0; i < REGISTERS; i++) {
+                if (theirs[i] > registers[i]) {
+                    registers[i] = theirs[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return estimated number of distinct keys added
+     */
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // linear counting is more accurate while many registers are still empty
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return independent copy of this counter
+     */
+    public synchronized DistinctCounter copy() {
+        DistinctCounter copy = new DistinctCounter();
+        System.arraycopy(registers, 0, copy.registers, 0, REGISTERS);
+        return copy;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads consecutive keys over all bits
+     */
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctCounter{" +
+                "Estimate=" + estimate() +
+                '}';
+    }
+}
@@ -0,0 +1,9 @@
+package cpen221.mp3.server;
+
+enum DoubleOperator {
+    EQUALS,
+    GREATER_THAN,
+    LESS_THAN,
+    GREATER_THAN_OR_EQUALS,
+    LESS_THAN_OR_EQUALS
+}
@@ -0,0 +1,209 @@
+package cpen221.mp3.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EntityActivityCounter {
+
+    // Rep Invariants:
+    //
+    // 1. Open Addressing: keys[h] is the entity ID stored in hash slot h if used[h], and every used
+    //    slot is reachable from the home slot of its key by linear probing without crossing an unused slot.
+    // 2. Dense Entities: entityIds[e] and counts[e] hold the ID and event count of the e-th entity seen,
+    //    for e < size, and slots[h] == e for the hash slot h holding entityIds[e].
+    // 3. Heap Order: heap[0..size) holds every entity number once, and no entity ranks above its parent,
+    //    where a higher count ranks higher and equal counts rank the larger ID higher.
+    // 4. Heap Positions: heapPosition[heap[i]] == i for all i < size.
+    // 5. Load Factor: size <= keys.length * 3 / 4, and keys.length is a power of two.
+
+    // Abstraction function:
+    // Maps the internal state of the EntityActivityCounter class to a multiset of entity IDs,
+    // with one occurrence per event logged for the entity.
+    //
+    // Keys, Used, Slots: keys, used and slots form an open-addressing hash table from entity IDs to entity numbers.
+    // Entity IDs: entityIds represents the entities in the order they were first counted.
+    // Counts: counts represents the number of events of each entity.
+    // Heap: heap represents the entities ordered by activity, most active first.
+    // Heap Position: heapPosition represents where each entity is in heap.
+    // Size: size represents the number of distinct entities.
+
+    private int[] keys = new int[16];
+    private boolean[] used = new boolean[16];
+    private int[] slots = new int[16];
+
+    private int[] entityIds = new int[8];
+    private int[] counts = new int[8];
+    private int[] heap = new int[8];
+    private int[] heapPosition = new int[8];
+    private int size = 0;
+
+    public EntityActivityCounter() { }
+
+    /**
+     * Counts one more event of the given entity
+     * @param entityId ID of the entity that sent the event
+     */
+    public synchronized void increment(int entityId) {
+        int h = find(entityId);
+        int entity;
+        if (used[h]) {
+            entity = slots[h];
+        } else {
+            entity = add(h, entityId);
+        }
+        counts[entity]++;
+        siftUp(heapPosition[entity]);
+    }
+
+    /**
+     * Returns the ID of the entity with the most events, the largest ID if there is a tie
+     * @return most active entity ID, or 0 if no events have been counted
+     */
+    public synchronized int mostActive() {
+        return size == 0 ? 0 : entityIds[heap[0]];
+    }
+
+    /**
+     * Returns the IDs of the k most active entities, most active first.
+     * Entities with the same number of events are ordered by decreasing ID.
+     * @param k maximum number of entities to return
+     * @return up to k entity IDs
+     */
+    public synchronized List<Integer> topK(int k) {
+        List<Integer> top = new ArrayList<>();
+        if (k <= 0 || size == 0) {
+            return top;
+        }
+        // best-first walk over the heap, the frontier holds heap positions
+        int[] frontier = new int[Math.min(k, size) + 1];
+        int frontierSize = 0;
+        frontier[frontierSize++] = 0;
+        while (frontierSize > 0 && top.size() < k) {
+            int best = 0;
+            for (int i = 1; i < frontierSize; i++) {
+                if (ranksAbove(heap[frontier[i]], heap[frontier[best]])) {
+                    best = i;
+                }
+            }
+            int position = frontier[best];
+            frontier[best] = frontier[--frontierSize];
+            top.add(entityIds[heap[position]]);
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < size; child++) {
+                if (frontierSize == frontier.length) {
+                    frontier = Arrays.copyOf(frontier, frontier.length * 2);
+                }
+                frontier[frontierSize++] = child;
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Returns the IDs of all counted entities in the order they were first counted
+     * @return list of entity IDs
+     */
+    public synchronized List<Integer> entities() {
+        List<Integer> ids = new ArrayList<>(size);
+        for (int e = 0; e < size; e++) {
+            ids.add(entityIds[e]);
+        }
+        return ids;
+    }
+
+    /**
+     * @param entityId ID of an entity
+     * @return number of events counted for the entity
+     */
+    public synchronized int count(int entityId) {
+        int h = find(entityId);
+        return used[h] ? counts[slots[h]] : 0;
+    }
+
+    /**
+     * @param entityId ID of an entity
+     * @return true if at least one event of the entity has been counted
+     */
+    public synchronized boolean contains(int entityId) {
+        return used[find(entityId)];
+    }
+
+    /**
+     * @return number of distinct entities counted
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return hash slot holding entityId, or the unused slot where it would be inserted
+     */
+    private int find(int entityId) {
+        int mask = keys.length - 1;
+        int h = mix(entityId) & mask;
+        while (used[h] && keys[h] != entityId) {
+            h = (h + 1) & mask;
+        }
+        return h;
+    }
+
+    private int add(int h, int entityId) {
+        if (size == entityIds.length) {
+            int capacity = size * 2;
+            entityIds = Arrays.copyOf(entityIds, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapPosition = Arrays.copyOf(heapPosition, capacity);
+        }
+        int entity = size++;
+        entityIds[entity] = entityId;
+        heap[entity] = entity;
+        heapPosition[entity] = entity;
+
+        keys[h] = entityId;
+        used[h] = true;
+        slots[h] = entity;
+        if (size > keys.length * 3 / 4) {
+            rehash();
+        }
+        siftUp(entity);
+        return entity;
+    }
+
+    private void rehash() {
+        int capacity = keys.length * 2;
+        keys = new int[capacity];
+        used = new boolean[capacity];
+        slots = new int[capacity];
+        for (int e = 0; e < size; e++) {
+            int h = find(entityIds[e]);
+            keys[h] = entityIds[e];
+            used[h] = true;
+            slots[h] = e;
+        }
+    }
+
+    private void siftUp(int position) {
+        int entity = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!ranksAbove(entity, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPosition[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = entity;
+        heapPosition[entity] = position;
+    }
+
+    private boolean ranksAbove(int a, int b) {
+        return counts[a] > counts[b] || (counts[a] == counts[b] && entityIds[a] > entityIds[b]);
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,62 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+
+import java.util.List;
+
+public class EntityPrediction {
+
+    // Rep Invariants:
+    //
+    // 1. Same Length: timeStamps and values have been given the same number of values.
+
+    // Abstraction function:
+    // Maps the internal state of the EntityPrediction class to the prediction state of one entity,
+    // built from its logged events in the order they were logged.
+    //
+    // Time Stamps: timeStamps represents the sequence of the entity's event timestamps.
+    // Values: values represents the sequence of the entity's event values, where an actuator's
+    //         boolean value counts as 1.0 for true and 0.0 for false.
+
+    private final OnlinePredictor timeStamps = new OnlinePredictor();
+    private final OnlinePredictor values = new OnlinePredictor();
+
+    public EntityPrediction() { }
+
+    /**
+     * Adds the next logged event of the entity
+     * @param event event of the entity
+     */
+    public synchronized void add(Event event) {
+        timeStamps.add(event.getTimeStamp());
+        values.add(valueOf(event));
+    }
+
+    /**
+     * @param n number of timestamps to predict
+     * @return the next n timestamps predicted like Predictor.predict
+     */
+    public synchronized List<Double> predictTimeStamps(int n) {
+        return timeStamps.predict(n);
+    }
+
+    /**
+     * @param n number of values to predict
+     * @return the next n values predicted like Predictor.predict
+     */
+    public synchronized List<Double> predictValues(int n) {
+        return values.predict(n);
+    }
+
+    /**
+     * @param event an event
+     * @return value of the event used for prediction
+     */
+    public static double valueOf(Event event) {
+        if (event.getClass() == ActuatorEvent.class) {
+            return event.getValueBoolean() ? 1.0 : 0.0;
+        }
+        return event.getValueDouble();
+    }
+}
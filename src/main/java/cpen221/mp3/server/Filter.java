@@ -3,27 +3,15 @@ package cpen221.mp3.server;
 import cpen221.mp3.event.ActuatorEvent;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.handler.EventSelector;
 
-import static cpen221.mp3.server.BooleanOperator.valueOf;
-
-
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.function.Predicate;
 
-enum DoubleOperator {
-    EQUALS,
-    GREATER_THAN,
-    LESS_THAN,
-    GREATER_THAN_OR_EQUALS,
-    LESS_THAN_OR_EQUALS
-}
-
-enum BooleanOperator {
-    EQUALS,
-    NOT_EQUALS
-}
-
-public class Filter {
+public class Filter implements EventSelector {
 
     // Rep Invariants:
     //
@@ -116,6 +104,16 @@ public class Filter {
 
     private Filter filter;
 
+    /**
+     * Flat predicate equivalent to satisfies, built on first use by compile()
+     */
+    private volatile Predicate<Event> compiled;
+
+    /**
+     * Distinct comparisons whose conjunction this filter is, built on first use
+     */
+    private volatile Filter[] leaves;
+
     public Filter(List<Filter> filters) {
         if (filters.size() == 1) {
             complexFilter = filters.get(0);
@@ -180,6 +178,154 @@ public class Filter {
         }
     }
 
+    /**
+     * Returns a predicate that accepts exactly the events that satisfy this filter.
+     * The filter tree is resolved once: every comparison becomes a lambda specialised for its
+     * field and operator, and a complex filter becomes a flat conjunction of its distinct
+     * comparisons, so testing an event does not walk the tree or branch on the filter kind.
+     *
+     * @return predicate equivalent to satisfies(Event)
+     */
+    @Override
+    public Predicate<Event> compile() {
+        Predicate<Event> predicate = compiled;
+        if (predicate == null) {
+            List<Predicate<Event>> parts = new ArrayList<>();
+            for (Filter leaf : leaves()) {
+                parts.add(leaf.compileLeaf());
+            }
+            predicate = conjunction(parts);
+            compiled = predicate;
+        }
+        return predicate;
+    }
+
+    /**
+     * Returns the distinct comparisons of this filter, in the order they appear in the filter.
+     * An event satisfies the filter if and only if it satisfies all of them.
+     */
+    Filter[] leaves() {
+        Filter[] distinct = leaves;
+        if (distinct == null) {
+            Set<Filter> collected = new LinkedHashSet<>();
+            collectLeaves(collected);
+            distinct = collected.toArray(new Filter[0]);
+            leaves = distinct;
+        }
+        return distinct;
+    }
+
+    private void collectLeaves(Set<Filter> leaves) {
+        if (this.isComplexFilter) {
+            this.complexFilter.collectLeaves(leaves);
+            this.filter.collectLeaves(leaves);
+        } else {
+            leaves.add(this);
+        }
+    }
+
+    private Predicate<Event> compileLeaf() {
+        if (this.field == null) {
+            if (this.operator1 == null) {
+                return event -> false;
+            }
+            boolean expected = this.boolValue;
+            if (this.operator1.equals(BooleanOperator.EQUALS)) {
+                return event -> event.getValueBoolean() == expected;
+            }
+            return event -> event.getValueBoolean() != expected;
+        }
+
+        double threshold = this.doubleValue;
+        if (this.field.equals("value")) {
+            switch (operator2) {
+                case EQUALS:
+                    return event -> event.getClass() != ActuatorEvent.class && event.getValueDouble() == threshold;
+                case GREATER_THAN:
+                    return event -> event.getClass() != ActuatorEvent.class && event.getValueDouble() > threshold;
+                case GREATER_THAN_OR_EQUALS:
+                    return event -> event.getClass() != ActuatorEvent.class && event.getValueDouble() >= threshold;
+                case LESS_THAN:
+                    return event -> event.getClass() != ActuatorEvent.class && event.getValueDouble() < threshold;
+                case LESS_THAN_OR_EQUALS:
+                    return event -> event.getClass() != ActuatorEvent.class && event.getValueDouble() <= threshold;
+                default:
+                    return event -> false;
+            }
+        }
+        switch (operator2) {
+            case EQUALS:
+                return event -> event.getTimeStamp() == threshold;
+            case GREATER_THAN:
+                return event -> event.getTimeStamp() > threshold;
+            case GREATER_THAN_OR_EQUALS:
+                return event -> event.getTimeStamp() >= threshold;
+            case LESS_THAN:
+                return event -> event.getTimeStamp() < threshold;
+            case LESS_THAN_OR_EQUALS:
+                return event -> event.getTimeStamp() <= threshold;
+            default:
+                return event -> false;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate<Event> conjunction(List<Predicate<Event>> parts) {
+        switch (parts.size()) {
+            case 1:
+                return parts.get(0);
+            case 2: {
+                Predicate<Event> first = parts.get(0);
+                Predicate<Event> second = parts.get(1);
+                return event -> first.test(event) && second.test(event);
+            }
+            case 3: {
+                Predicate<Event> first = parts.get(0);
+                Predicate<Event> second = parts.get(1);
+                Predicate<Event> third = parts.get(2);
+                return event -> first.test(event) && second.test(event) && third.test(event);
+            }
+            default: {
+                Predicate<Event>[] all = parts.toArray(new Predicate[0]);
+                return event -> {
+                    for (Predicate<Event> part : all) {
+                        if (!part.test(event)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+            }
+        }
+    }
+
+    boolean isComplex() {
+        return this.isComplexFilter;
+    }
+
+    /**
+     * @return "value" or "timestamp" for a double comparison, null for a boolean comparison or a complex filter
+     */
+    String getField() {
+        return this.field;
+    }
+
+    DoubleOperator getDoubleOperator() {
+        return this.operator2;
+    }
+
+    double getDoubleValue() {
+        return this.doubleValue;
+    }
+
+    BooleanOperator getBooleanOperator() {
+        return this.operator1;
+    }
+
+    boolean getBooleanValue() {
+        return this.boolValue;
+    }
+
     /**
      * Returns true if the given list of events satisfies the filter criteria.
      *
@@ -222,15 +368,120 @@ public class Filter {
      *        or an empty list if no events in the given list satisfy the filter criteria
      */
     public List<Event> sift(List<Event> events) {
+        Predicate<Event> accepts = compile();
         List<Event> siftedList = new ArrayList<>();
         for (Event event : events) {
-            if (sift(event) != null) {
+            if (accepts.test(event)) {
                 siftedList.add(event);
             }
         }
         return siftedList;
     }
 
+    /**
+     * Evaluates the filter on a block of events stored as columns.
+     * Bit i of the result is set if and only if event i satisfies the filter.
+     *
+     * @param length     number of events in the block
+     * @param timeStamps timestamps of the events
+     * @param values     getValueDouble() of the events, ignored for actuator events
+     * @param actuators  bitset marking actuator events, or null if all events are sensor events
+     * @param booleans   bitset of getValueBoolean() of the events, or null if all are false
+     * @return selection bitmap of (length + 63) / 64 words
+     */
+    public long[] select(int length, double[] timeStamps, double[] values, long[] actuators, long[] booleans) {
+        long[] selection = new long[(length + 63) >>> 6];
+        select(length, timeStamps, values, actuators, booleans, selection);
+        return selection;
+    }
+
+    /**
+     * Evaluates the filter on a block of events stored as columns without allocating.
+     * Works one 64-event word at a time with a branch-free comparison loop per distinct comparison
+     * of the filter, skipping words that an earlier comparison already rejected entirely.
+     *
+     * @param length     number of events in the block
+     * @param timeStamps timestamps of the events
+     * @param values     getValueDouble() of the events, ignored for actuator events
+     * @param actuators  bitset marking actuator events, or null if all events are sensor events
+     * @param booleans   bitset of getValueBoolean() of the events, or null if all are false
+     * @param selection  receives the selection bitmap, at least (length + 63) / 64 words
+     */
+    @Override
+    public void select(int length, double[] timeStamps, double[] values, long[] actuators, long[] booleans,
+                       long[] selection) {
+        int words = (length + 63) >>> 6;
+        boolean first = true;
+        for (Filter leaf : leaves()) {
+            for (int w = 0; w < words; w++) {
+                if (!first && selection[w] == 0) {
+                    continue;
+                }
+                int base = w << 6;
+                int count = Math.min(64, length - base);
+                long bits = leaf.selectWord(base, count, timeStamps, values, actuators, booleans);
+                selection[w] = first ? bits : selection[w] & bits;
+            }
+            first = false;
+        }
+    }
+
+    /**
+     * @return bits of the count events starting at base that satisfy this comparison
+     */
+    private long selectWord(int base, int count, double[] timeStamps, double[] values,
+                            long[] actuators, long[] booleans) {
+        int w = base >>> 6;
+        long valid = count == 64 ? -1L : (1L << count) - 1;
+        if (this.field == null) {
+            if (this.operator1 == null) {
+                return 0;
+            }
+            long trueBits = booleans == null ? 0 : booleans[w];
+            boolean wantTrue = this.operator1.equals(BooleanOperator.EQUALS) == this.boolValue;
+            return (wantTrue ? trueBits : ~trueBits) & valid;
+        }
+        if (this.field.equals("value")) {
+            long sensors = actuators == null ? -1L : ~actuators[w];
+            return compareWord(values, base, count, this.operator2, this.doubleValue) & sensors & valid;
+        }
+        return compareWord(timeStamps, base, count, this.operator2, this.doubleValue) & valid;
+    }
+
+    private static long compareWord(double[] column, int base, int count, DoubleOperator operator, double threshold) {
+        long bits = 0;
+        switch (operator) {
+            case EQUALS:
+                for (int j = 0; j < count; j++) {
+                    bits |= (column[base + j] == threshold ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN:
+                for (int j = 0; j < count; j++) {
+                    bits |= (column[base + j] > threshold ? 1L : 0L) << j;
+                }
+                break;
+            case GREATER_THAN_OR_EQUALS:
+                for (int j = 0; j < count; j++) {
+                    bits |= (column[base + j] >= threshold ? 1L : 0L) << j;
+                }
+                break;
+            case LESS_THAN:
+                for (int j = 0; j < count; j++) {
+                    bits |= (column[base + j] < threshold ? 1L : 0L) << j;
+                }
+                break;
+            case LESS_THAN_OR_EQUALS:
+                for (int j = 0; j < count; j++) {
+                    bits |= (column[base + j] <= threshold ? 1L : 0L) << j;
+                }
+                break;
+            default:
+                break;
+        }
+        return bits;
+    }
+
     @Override
     public String toString() {
         if(complexFilter == null) {
@@ -0,0 +1,293 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class FilterIndex<T> {
+
+    // Rep Invariants:
+    //
+    // 1. Complete Index: every rule in rules appears exactly once in snapshot, under its first comparison.
+    // 2. Sorted Thresholds: in every ThresholdGroup, thresholds is sorted ascending and rules[i] has threshold thresholds[i].
+    // 3. Immutable Snapshot: a Snapshot is never modified after it is assigned to snapshot.
+
+    // Abstraction function:
+    // Maps the internal state of the FilterIndex class to a set of (filter, target) rules, where an event
+    // matches the targets of all rules whose filter it satisfies.
+    //
+    // Rules: rules represents the registered rules, in order of registration.
+    // Snapshot: snapshot represents the rules grouped by their first comparison:
+    //           threshold comparisons by field and operator in sorted arrays, EQUALS comparisons in hash maps,
+    //           and boolean comparisons in one bucket for true values and one for false values.
+    //
+    // A rule is found through its first comparison, and a complex filter is then checked in full,
+    // so an event costs O(log R + candidates) instead of evaluating all R rules.
+
+    private final List<Rule<T>> rules = new ArrayList<>();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new ArrayList<>());
+
+    public FilterIndex() { }
+
+    /**
+     * Registers a rule
+     * @param filter filter an event must satisfy to match the rule
+     * @param target value reported for events matching the rule
+     */
+    public synchronized void add(Filter filter, T target) {
+        rules.add(new Rule<>(filter, target));
+        snapshot = new Snapshot<>(rules);
+    }
+
+    /**
+     * Removes a rule previously registered with the same filter and target
+     * @param filter filter of the rule
+     * @param target target of the rule
+     * @return true if a rule was removed
+     */
+    public synchronized boolean remove(Filter filter, T target) {
+        for (int i = 0; i < rules.size(); i++) {
+            Rule<T> rule = rules.get(i);
+            if (rule.filter == filter && rule.target.equals(target)) {
+                rules.remove(i);
+                snapshot = new Snapshot<>(rules);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of registered rules
+     */
+    public int size() {
+        return snapshot.size;
+    }
+
+    /**
+     * Returns the targets of all rules whose filter the event satisfies
+     * @param event event to match
+     * @return matching targets, in no particular order
+     */
+    public List<T> matches(Event event) {
+        List<T> matches = new ArrayList<>();
+        forEachMatch(event, matches::add);
+        return matches;
+    }
+
+    /**
+     * Calls action with the target of every rule whose filter the event satisfies
+     * @param event event to match
+     * @param action action to run for each matching target, in no particular order
+     */
+    public void forEachMatch(Event event, Consumer<? super T> action) {
+        Snapshot<T> current = snapshot;
+
+        Rule<T>[] booleans = event.getValueBoolean() ? current.trueRules : current.falseRules;
+        for (Rule<T> rule : booleans) {
+            rule.accept(event, action);
+        }
+
+        current.timeStamp.forEachMatch(event.getTimeStamp(), event, action);
+        if (event.getClass() != ActuatorEvent.class) {
+            current.value.forEachMatch(event.getValueDouble(), event, action);
+        }
+    }
+
+    private static final class Rule<T> {
+        private final Filter filter;
+        private final T target;
+        private final Filter first;
+
+        /**
+         * Check of the full filter, null if the first comparison is the whole filter
+         */
+        private final Predicate<Event> verify;
+
+        private Rule(Filter filter, T target) {
+            Filter[] leaves = filter.leaves();
+            this.filter = filter;
+            this.target = target;
+            this.first = leaves[0];
+            this.verify = leaves.length == 1 ? null : filter.compile();
+        }
+
+        private void accept(Event event, Consumer<? super T> action) {
+            if (verify == null || verify.test(event)) {
+                action.accept(target);
+            }
+        }
+    }
+
+    private static final class Snapshot<T> {
+        private final int size;
+        private final Rule<T>[] trueRules;
+        private final Rule<T>[] falseRules;
+        private final FieldIndex<T> timeStamp;
+        private final FieldIndex<T> value;
+
+        private Snapshot(List<Rule<T>> rules) {
+            List<Rule<T>> trueList = new ArrayList<>();
+            List<Rule<T>> falseList = new ArrayList<>();
+            List<Rule<T>> timeStampList = new ArrayList<>();
+            List<Rule<T>> valueList = new ArrayList<>();
+            for (Rule<T> rule : rules) {
+                Filter first = rule.first;
+                if (first.getField() == null) {
+                    if (first.getBooleanOperator() == null) {
+                        continue;
+                    }
+                    boolean matchesTrue = first.getBooleanOperator() == BooleanOperator.EQUALS
+                            ? first.getBooleanValue() : !first.getBooleanValue();
+                    (matchesTrue ? trueList : falseList).add(rule);
+                } else if (first.getField().equals("value")) {
+                    valueList.add(rule);
+                } else {
+                    timeStampList.add(rule);
+                }
+            }
+            this.size = rules.size();
+            this.trueRules = toArray(trueList);
+            this.falseRules = toArray(falseList);
+            this.timeStamp = new FieldIndex<>(timeStampList);
+            this.value = new FieldIndex<>(valueList);
+        }
+    }
+
+    /**
+     * Double comparisons on one field, grouped by operator
+     */
+    private static final class FieldIndex<T> {
+        private final Map<Double, Rule<T>[]> equals;
+        private final Map<DoubleOperator, ThresholdGroup<T>> thresholds = new EnumMap<>(DoubleOperator.class);
+
+        private FieldIndex(List<Rule<T>> rules) {
+            Map<Double, List<Rule<T>>> equalsLists = new HashMap<>();
+            Map<DoubleOperator, List<Rule<T>>> byOperator = new EnumMap<>(DoubleOperator.class);
+            for (Rule<T> rule : rules) {
+                DoubleOperator operator = rule.first.getDoubleOperator();
+                if (operator == DoubleOperator.EQUALS) {
+                    double threshold = rule.first.getDoubleValue();
+                    if (threshold == threshold) {
+                        equalsLists.computeIfAbsent(key(threshold), k -> new ArrayList<>()).add(rule);
+                    }
+                } else {
+                    byOperator.computeIfAbsent(operator, k -> new ArrayList<>()).add(rule);
+                }
+            }
+            this.equals = new HashMap<>();
+            equalsLists.forEach((threshold, list) -> equals.put(threshold, toArray(list)));
+            byOperator.forEach((operator, list) -> thresholds.put(operator, new ThresholdGroup<>(operator, list)));
+        }
+
+        private void forEachMatch(double x, Event event, Consumer<? super T> action) {
+            if (x != x) {
+                return;
+            }
+            if (!equals.isEmpty()) {
+                Rule<T>[] exact = equals.get(key(x));
+                if (exact != null) {
+                    for (Rule<T> rule : exact) {
+                        rule.accept(event, action);
+                    }
+                }
+            }
+            for (ThresholdGroup<T> group : thresholds.values()) {
+                group.forEachMatch(x, event, action);
+            }
+        }
+
+        /**
+         * Maps -0.0 to 0.0 so that hash lookups agree with ==
+         */
+        private static Double key(double x) {
+            return x == 0.0 ? 0.0 : x;
+        }
+    }
+
+    /**
+     * Rules with the same ordering operator, sorted by threshold.
+     * The rules an event matches form a prefix (GREATER_THAN, GREATER_THAN_OR_EQUALS)
+     * or a suffix (LESS_THAN, LESS_THAN_OR_EQUALS) of the sorted rules.
+     */
+    private static final class ThresholdGroup<T> {
+        private final DoubleOperator operator;
+        private final double[] thresholds;
+        private final Rule<T>[] rules;
+
+        private ThresholdGroup(DoubleOperator operator, List<Rule<T>> list) {
+            List<Rule<T>> sorted = new ArrayList<>();
+            for (Rule<T> rule : list) {
+                if (rule.first.getDoubleValue() == rule.first.getDoubleValue()) {
+                    sorted.add(rule);
+                }
+            }
+            sorted.sort(Comparator.comparingDouble(rule -> rule.first.getDoubleValue()));
+            this.operator = operator;
+            this.rules = toArray(sorted);
+            this.thresholds = new double[rules.length];
+            for (int i = 0; i < rules.length; i++) {
+                thresholds[i] = rules[i].first.getDoubleValue();
+            }
+        }
+
+        private void forEachMatch(double x, Event event, Consumer<? super T> action) {
+            switch (operator) {
+                case GREATER_THAN:
+                    // x > threshold
+                    visit(0, countBelow(x, false), event, action);
+                    break;
+                case GREATER_THAN_OR_EQUALS:
+                    // x >= threshold
+                    visit(0, countBelow(x, true), event, action);
+                    break;
+                case LESS_THAN:
+                    // x < threshold
+                    visit(countBelow(x, true), rules.length, event, action);
+                    break;
+                case LESS_THAN_OR_EQUALS:
+                    // x <= threshold
+                    visit(countBelow(x, false), rules.length, event, action);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void visit(int from, int to, Event event, Consumer<? super T> action) {
+            for (int i = from; i < to; i++) {
+                rules[i].accept(event, action);
+            }
+        }
+
+        /**
+         * @return number of thresholds t with t < x, or t <= x if inclusive
+         */
+        private int countBelow(double x, boolean inclusive) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid] < x || (inclusive && thresholds[mid] == x)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Rule<T>[] toArray(List<Rule<T>> list) {
+        return list.toArray(new Rule[0]);
+    }
+}
@@ -0,0 +1,20 @@
+package cpen221.mp3.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs Predictor in the server process, without a network round trip
+ */
+public class LocalPredictionBackend implements PredictionBackend {
+
+    public LocalPredictionBackend() { }
+
+    @Override
+    public List<Double> predict(int entityId, int n, List<Double> startingValues) {
+        if (startingValues.isEmpty() || n <= 0) {
+            return new ArrayList<>();
+        }
+        return new Predictor(entityId, n, startingValues).predict();
+    }
+}
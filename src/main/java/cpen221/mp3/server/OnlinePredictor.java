@@ -0,0 +1,134 @@
+package cpen221.mp3.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OnlinePredictor {
+
+    // Rep Invariants:
+    //
+    // 1. Non-negative Count: count must be non-negative.
+    // 2. Recent Values: recent[(count - 1 - k) & 3] is the k-th most recent value for k < min(count, 4),
+    //    and first and second are the first two values added.
+    // 3. Consistent Sums: points == max(0, count - 1), and sumX, sumY, sumXY and sumXX are the sums of
+    //    x, y, x * y and x * x over the points (x, y) of the regression, accumulated in order of x.
+
+    // Abstraction function:
+    // Maps the internal state of the OnlinePredictor class to the sequence of values added so far,
+    // together with the least-squares line Predictor.extrapolate fits to it.
+    //
+    // Count: count represents the number of values added.
+    // Recent: recent represents the last four values added, used to detect alternating patterns.
+    // First, Second: first and second represent the first two values added.
+    // Previous Forecast: previousForecast represents the forecast of the last value added:
+    //                    the first value itself, or the average of the last two values.
+    // Points, Sums: points and the sums represent the regression over the center moving averages
+    //               of the forecasts, the i-th average having x = i.
+
+    private long count = 0;
+    private final double[] recent = new double[4];
+    private double first;
+    private double second;
+    private double previousForecast;
+
+    private long points = 0;
+    private double sumX = 0.0;
+    private double sumY = 0.0;
+    private double sumXY = 0.0;
+    private double sumXX = 0.0;
+
+    public OnlinePredictor() { }
+
+    /**
+     * Adds the next value of the sequence in O(1)
+     * @param value next value
+     */
+    public void add(double value) {
+        double forecast;
+        if (count == 0) {
+            forecast = value;
+            first = value;
+        } else {
+            forecast = (recent[(int) ((count - 1) & 3)] + value) / 2.0;
+            if (count == 1) {
+                second = value;
+            }
+            double x = points;
+            double y = (previousForecast + forecast) / 2.0;
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+            points++;
+        }
+        recent[(int) (count & 3)] = value;
+        previousForecast = forecast;
+        count++;
+    }
+
+    /**
+     * @return number of values added
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Predicts the next n values like Predictor.extrapolate on the values added so far
+     * @param n number of values to predict
+     * @return predicted values, NaN if fewer than three values were added
+     */
+    public double[] extrapolate(int n) {
+        double[] predicted = new double[Math.max(0, n)];
+        double slope = ((points * sumXY) - (sumX * sumY)) / ((points * sumXX) - (sumX * sumX));
+        double yInt = (sumY - slope * sumX) / points;
+        for (int i = 1; i <= n; i++) {
+            predicted[i - 1] = slope * (points + i) + yInt;
+        }
+        return predicted;
+    }
+
+    /**
+     * Predicts the next n values like Predictor.predict on the values added so far
+     * @param n number of values to predict
+     * @return predicted values, empty if no values were added
+     */
+    public List<Double> predict(int n) {
+        List<Double> prediction = new ArrayList<>(Math.max(0, n));
+        if (count == 0) {
+            return prediction;
+        }
+        if (count <= 2) {
+            for (int i = 0; i < n; i++) {
+                prediction.add(count == 1 || i % 2 == 0 ? first : second);
+            }
+            return prediction;
+        }
+        if (count >= 4) {
+            double a = recent[(int) (count & 3)];
+            double b = recent[(int) ((count + 1) & 3)];
+            double c = recent[(int) ((count + 2) & 3)];
+            double d = recent[(int) ((count + 3) & 3)];
+            if (same(a, c) && same(b, d) && !same(a, b)) {
+                // like Predictor.alternatePrediction, which compares the last value to the first with ==
+                double even = d == a ? b : a;
+                double odd = d == a ? a : b;
+                for (int i = 0; i < n; i++) {
+                    prediction.add(i % 2 == 0 ? even : odd);
+                }
+                return prediction;
+            }
+        }
+        for (double value : extrapolate(n)) {
+            prediction.add(value);
+        }
+        return prediction;
+    }
+
+    /**
+     * Compares like Double.equals
+     */
+    private static boolean same(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+}
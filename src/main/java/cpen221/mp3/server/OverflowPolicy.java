@@ -0,0 +1,7 @@
+package cpen221.mp3.server;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    DROP_NEWEST,
+    COALESCE
+}
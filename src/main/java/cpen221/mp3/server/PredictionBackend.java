@@ -0,0 +1,20 @@
+package cpen221.mp3.server;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs prediction services for the server
+ */
+public interface PredictionBackend {
+
+    /**
+     * Predicts the next n values of an entity
+     * @param entityId entity ID of the entity to run predictions on
+     * @param n number of values to predict
+     * @param startingValues values to base the prediction on, oldest first
+     * @return predicted values, empty if there are no starting values
+     * @throws IOException if the prediction service cannot be reached
+     */
+    List<Double> predict(int entityId, int n, List<Double> startingValues) throws IOException;
+}
@@ -45,82 +45,31 @@ public class Predictor {
      * @return predicted values
      */
     public static List<Double> extrapolate(List<Double> actualValues, double n) {
-        ArrayList<Double> predictedValues = new ArrayList<Double>();
-
-        List<Double> forecasts = new ArrayList<Double>();
-        List<Double> centerMovingAverages = new ArrayList<Double>();
-        List<Double> predictions = new ArrayList<Double>();
-
-        List<Integer> xvals = new ArrayList<Integer>();
-        List<Double> yvals = new ArrayList<Double>();
-
-        forecasts.add(actualValues.get(0));
-
-        for (int i = 1; i < actualValues.size(); i++) {
-            forecasts.add(getAverage(actualValues.get(i), actualValues.get(i - 1)));
-        }
-
-        for (int i = 0; i < forecasts.size() - 1; i++) {
-            centerMovingAverages.add(getAverage(forecasts.get(i), forecasts.get(i + 1)));
-            xvals.add(i);
-            yvals.add(getAverage(forecasts.get(i), forecasts.get(i + 1)));
+        double[] values = new double[actualValues.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = actualValues.get(i);
         }
-
-        double slope = getSlope(centerMovingAverages.size(), xvals, yvals);
-        double yInt = getB(slope, centerMovingAverages.size(), xvals, yvals);
-        double prediction = actualValues.get(0);
-
-        for (int x = centerMovingAverages.size(); x < centerMovingAverages.size() + n + 10; x++) {
-            predictions.add(slope*x + yInt);
-        }
-
-        for (int i = 1; i <= n; i++) {
-            predictedValues.add(predictions.get(i));
+        ArrayList<Double> predictedValues = new ArrayList<Double>();
+        for (double value : extrapolate(values, values.length, (int) n)) {
+            predictedValues.add(value);
         }
-
         return predictedValues;
     }
 
-    private static double getAverage(double ... values) {
-        double sum = 0.0;
-        double total = 0.0;
-        for (double d : values) {
-            sum += d;
-            total++;
-        }
-        return sum/total;
-    }
-
-    private static double getSlope(int n, List<Integer> xVals, List<Double> yVals) {
-        double xSummation = 0.0;
-        double ySummation = 0.0;
-        double xySummation = 0.0;
-        double xSqSummation = 0.0;
-
-        double slope;
-
-        for (int i = 0; i < xVals.size(); i++) {
-            xSummation += xVals.get(i);
-            ySummation += yVals.get(i);
-            xySummation += xVals.get(i) * yVals.get(i);
-            xSqSummation += Math.pow(xVals.get(i), 2);
-        }
-
-        slope = ((n * xySummation) - (xSummation * ySummation))/ ((n * xSqSummation) - Math.pow(xSummation, 2));
-
-        return slope;
-    }
-
-    private static double getB(double m, int n, List<Integer> xVals, List<Double> yVals) {
-        double xSummation = 0.0;
-        double ySummation = 0.0;
-
-        for (int i = 0; i < xVals.size(); i++) {
-            xSummation += xVals.get(i);
-            ySummation += yVals.get(i);
+    /**
+     * Predicts patterns in non-alternating sequences without boxing.
+     * Fits a least-squares line to the center moving averages of the values in one pass.
+     * @param actualValues array holding the values to base predictions on
+     * @param length number of values in actualValues to use, starting at index 0
+     * @param n number of values to predict
+     * @return predicted values
+     */
+    public static double[] extrapolate(double[] actualValues, int length, int n) {
+        OnlinePredictor regression = new OnlinePredictor();
+        for (int i = 0; i < length; i++) {
+            regression.add(actualValues[i]);
         }
-
-        return (ySummation - m * xSummation)/ n;
+        return regression.extrapolate(n);
     }
 
     public static List<Double> alternatePrediction(List<Double> startingValues, int n) {
@@ -0,0 +1,243 @@
+package cpen221.mp3.server;
+
+import java.util.Arrays;
+
+public class QuantileSketch {
+
+    // Rep Invariants:
+    //
+    // 1. Levels: levels[h][0..sizes[h]) holds the items of level h, each standing for 2^h added values.
+    // 2. Exact Weight: count is the sum over all levels of sizes[h] * 2^h.
+    // 3. Bounded Size: after every update or merge, the total number of items is at most the sum
+    //    of capacity(h) over all levels.
+    // 4. Extremes: min and max are the smallest and largest values added, NaN-free, and infinite if count is 0.
+
+    // Abstraction function:
+    // Maps the internal state of the QuantileSketch class to an approximation of the multiset of values added
+    // (a KLL sketch), from which the value of any rank can be estimated with an error of about 1.7 / k
+    // of the count, using O(k) memory however many values are added.
+    //
+    // K: k represents the accuracy parameter, the capacity of the top level.
+    // Levels, Sizes: levels and sizes represent compactors. When a level is full its items are sorted and
+    //                every other one, starting at a random offset, moves up a level with twice the weight.
+    // Count: count represents the number of values added.
+    // Min, Max: min and max represent the exact smallest and largest value added.
+    // Coin: coin represents the state of the generator that picks compaction offsets.
+
+    private static final int DEFAULT_K = 200;
+
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long coin = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Creates an empty sketch with k = 200, about 1% rank error
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty sketch
+     * @param k accuracy parameter, at least 8. Memory grows linearly with k and the error shrinks as 1 / k
+     */
+    public QuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8");
+        }
+        this.k = k;
+        this.levels[0] = new double[k];
+    }
+
+    /**
+     * Adds a value. NaN values are ignored.
+     * @param value value to add
+     */
+    public synchronized void update(double value) {
+        if (value != value) {
+            return;
+        }
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        compress();
+    }
+
+    /**
+     * Adds every value summarized by another sketch, as if they had been added to this one
+     * @param other sketch to merge, not modified
+     */
+    public void merge(QuantileSketch other) {
+        QuantileSketch copy = other.copy();
+        synchronized (this) {
+            for (int h = 0; h < copy.sizes.length; h++) {
+                for (int i = 0; i < copy.sizes[h]; i++) {
+                    append(h, copy.levels[h][i]);
+                }
+            }
+            count += copy.count;
+            min = Math.min(min, copy.min);
+            max = Math.max(max, copy.max);
+            compress();
+        }
+    }
+
+    /**
+     * Estimates the value of the given rank
+     * @param fraction rank as a fraction of the count, between 0 and 1
+     * @return estimated nearest-rank value, the exact min for 0 and max for 1, NaN if the sketch is empty
+     */
+    public synchronized double quantile(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (fraction == 0) {
+            return min;
+        }
+        if (fraction == 1) {
+            return max;
+        }
+        int retained = getRetained();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int n = 0;
+        for (int h = 0; h < sizes.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i : order) {
+            seen += weights[i];
+            if (seen >= rank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return number of values added
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of values stored, bounded by about 3k
+     */
+    public synchronized int getRetained() {
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        return retained;
+    }
+
+    /**
+     * @return independent copy of this sketch
+     */
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(k);
+        copy.levels = new double[levels.length][];
+        for (int h = 0; h < levels.length; h++) {
+            copy.levels[h] = levels[h].clone();
+        }
+        copy.sizes = sizes.clone();
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        copy.coin = coin;
+        return copy;
+    }
+
+    /**
+     * @return number of items level h holds before it is compacted, smaller for lower levels
+     */
+    private int capacity(int h) {
+        int depth = sizes.length - 1 - h;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private void append(int h, double value) {
+        if (h >= sizes.length) {
+            levels = Arrays.copyOf(levels, h + 1);
+            sizes = Arrays.copyOf(sizes, h + 1);
+            for (int l = 0; l <= h; l++) {
+                if (levels[l] == null) {
+                    levels[l] = new double[capacity(l)];
+                }
+            }
+        }
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(2, levels[h].length * 2));
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    /**
+     * Compacts the lowest full level until the sketch is within its total capacity
+     */
+    private void compress() {
+        while (true) {
+            int retained = 0;
+            int capacity = 0;
+            for (int h = 0; h < sizes.length; h++) {
+                retained += sizes[h];
+                capacity += capacity(h);
+            }
+            if (retained <= capacity) {
+                return;
+            }
+            for (int h = 0; h < sizes.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts level h and moves every other item, from a random offset, to level h + 1.
+     * An odd item out stays on level h, so the total weight does not change.
+     */
+    private void compact(int h) {
+        double[] level = levels[h];
+        int size = sizes[h];
+        Arrays.sort(level, 0, size);
+        int keep = size % 2;
+        coin ^= coin << 13;
+        coin ^= coin >>> 7;
+        coin ^= coin << 17;
+        int offset = (int) (coin & 1);
+        for (int i = keep + offset; i < size; i += 2) {
+            append(h + 1, level[i]);
+        }
+        sizes[h] = keep;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QuantileSketch{" +
+                "Count=" + count +
+                ",Retained=" + getRetained() +
+                ",Min=" + min +
+                ",Max=" + max +
+                '}';
+    }
+}
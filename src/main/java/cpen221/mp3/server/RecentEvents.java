@@ -0,0 +1,140 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecentEvents {
+
+    // Rep Invariants:
+    //
+    // 1. Bounded: 0 <= size <= ring.length, and 0 <= head < ring.length.
+    // 2. Sorted: the events at logical positions 0..size-1 have strictly increasing timestamps,
+    //    where logical position i is stored at ring[(head + i) % ring.length].
+    // 3. Latest Distinct Timestamps: the stored timestamps are the size largest distinct timestamps added,
+    //    and if fewer than ring.length are stored, they are all the distinct timestamps added.
+    // 4. Largest Entity: each stored event has the largest entity ID among the added events with its timestamp,
+    //    the first one added if several share that entity ID.
+
+    // Abstraction function:
+    // Maps the internal state of the RecentEvents class to the latest events added, by timestamp,
+    // keeping one event per timestamp: the one with the largest entity ID.
+    //
+    // Ring: ring represents a circular buffer holding the events, oldest timestamp first.
+    // Head: head represents where in ring the event with the oldest timestamp is stored.
+    // Size: size represents the number of events stored.
+
+    private final Event[] ring;
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * Creates an empty buffer
+     * @param capacity number of distinct timestamps kept, must be positive
+     */
+    public RecentEvents(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new Event[capacity];
+    }
+
+    /**
+     * Adds an event. Events arriving in timestamp order are added in O(1),
+     * late events in O(capacity) at worst.
+     * @param event event to add
+     */
+    public synchronized void add(Event event) {
+        double timeStamp = event.getTimeStamp();
+        int position;
+        if (size == 0 || Double.compare(at(size - 1).getTimeStamp(), timeStamp) < 0) {
+            position = size;
+        } else {
+            position = countBefore(timeStamp);
+            if (position < size && Double.compare(at(position).getTimeStamp(), timeStamp) == 0) {
+                if (event.getEntityId() > at(position).getEntityId()) {
+                    set(position, event);
+                }
+                return;
+            }
+        }
+
+        if (size == ring.length) {
+            if (position == 0) {
+                // older than every timestamp kept, so never among the latest
+                return;
+            }
+            head = (head + 1) % ring.length;
+            size--;
+            position--;
+        }
+        for (int i = size; i > position; i--) {
+            set(i, at(i - 1));
+        }
+        set(position, event);
+        size++;
+    }
+
+    /**
+     * Returns the latest n events, one per timestamp, in O(n)
+     * @param n max number of events to return
+     * @return up to n events in increasing order of timestamp
+     */
+    public synchronized List<Event> latest(int n) {
+        int count = Math.max(0, Math.min(n, size));
+        List<Event> events = new ArrayList<>(count);
+        for (int i = size - count; i < size; i++) {
+            events.add(at(i));
+        }
+        return events;
+    }
+
+    /**
+     * Returns whether latest(n) holds the same events as a scan of every event added
+     * @param n max number of events to return
+     * @return true if n events are stored, or no timestamp has been dropped yet
+     */
+    public synchronized boolean covers(int n) {
+        return n <= size || size < ring.length;
+    }
+
+    /**
+     * @return number of events stored
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct timestamps kept
+     */
+    public int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return number of stored events with a timestamp less than timeStamp
+     */
+    private int countBefore(double timeStamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Double.compare(at(mid).getTimeStamp(), timeStamp) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Event at(int i) {
+        return ring[(head + i) % ring.length];
+    }
+
+    private void set(int i, Event event) {
+        ring[(head + i) % ring.length] = event;
+    }
+}
@@ -0,0 +1,117 @@
+package cpen221.mp3.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RemotePredictionBackend implements PredictionBackend {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Endpoint: The endpoint must not be null.
+    // 2. Positive Limits: maxUrlLength and timeout must be positive.
+
+    // Abstraction function:
+    // Maps the internal state of the RemotePredictionBackend class to an HTTP prediction service,
+    // such as the lambda function in cpen221.mp3.lambda.Function.
+    //
+    // Endpoint: endpoint represents the URL of the prediction service.
+    // Max URL Length: maxUrlLength represents the longest GET URL sent, longer requests are sent as a POST body.
+    // Timeout: timeout represents the time in milliseconds to wait to connect and for the response.
+
+    private final String endpoint;
+    private final int maxUrlLength;
+    private final int timeout;
+
+    /**
+     * Creates a backend calling the given prediction service
+     * @param endpoint URL of the prediction service
+     */
+    public RemotePredictionBackend(String endpoint) {
+        this(endpoint, 2048, 10000);
+    }
+
+    /**
+     * Creates a backend calling the given prediction service
+     * @param endpoint URL of the prediction service
+     * @param maxUrlLength longest GET URL to send, longer requests are sent as a form-encoded POST body
+     * @param timeout time in milliseconds to wait to connect and for the response
+     */
+    public RemotePredictionBackend(String endpoint, int maxUrlLength, int timeout) {
+        if (maxUrlLength <= 0 || timeout <= 0) {
+            throw new IllegalArgumentException("maxUrlLength and timeout must be positive");
+        }
+        this.endpoint = endpoint;
+        this.maxUrlLength = maxUrlLength;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public List<Double> predict(int entityId, int n, List<Double> startingValues) throws IOException {
+        String query = "param1=" + entityId
+                + "&param2=" + n
+                + "&param3=" + URLEncoder.encode(startingValues.toString(), StandardCharsets.UTF_8);
+
+        HttpURLConnection connection;
+        if (endpoint.length() + 1 + query.length() <= maxUrlLength) {
+            connection = (HttpURLConnection) new URL(endpoint + "?" + query).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod("GET");
+        } else {
+            connection = (HttpURLConnection) new URL(endpoint).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(query.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Prediction service returned " + responseCode);
+            }
+            StringBuilder response = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    response.append(line);
+                }
+            }
+            return parseValues(response.toString());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Parses a list of doubles in the format of List.toString()
+     * @param values serialized list, e.g. "[1.0, 2.5]"
+     * @return parsed values
+     */
+    public static List<Double> parseValues(String values) {
+        List<Double> parsed = new ArrayList<>();
+        String trimmed = values.trim();
+        if (trimmed.length() < 2) {
+            return parsed;
+        }
+        for (String s : trimmed.substring(1, trimmed.length() - 1).split(",")) {
+            if (!s.isBlank()) {
+                parsed.add(Double.parseDouble(s.trim()));
+            }
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,111 @@
+package cpen221.mp3.server;
+
+import java.util.Arrays;
+
+public class RetentionPolicy {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Hot Window: hotWindow is positive.
+    // 2. Sorted Resolutions: resolutions is non-empty, positive and strictly ascending.
+    // 3. Tier Retentions: rollupRetentions has one positive value per resolution.
+
+    // Abstraction function:
+    // Maps the internal state of the RetentionPolicy class to a rule for how long a client's raw events
+    // are kept in memory, and at which resolutions they are summarized.
+    //
+    // Hot Window: hotWindow represents how far behind the latest timestamp a raw event is kept,
+    //             in timestamp units (milliseconds for events sent by entities).
+    //             The event log only drops its oldest events, so the window is the same for every entity type.
+    // Resolutions: resolutions represents the bucket widths of the rollup tiers, finest first.
+    // Rollup Retentions: rollupRetentions[t] represents how far behind the latest timestamp
+    //                    the buckets of tier t are kept.
+
+    /**
+     * Bucket widths of 1 second, 1 minute and 1 hour, in milliseconds
+     */
+    public static final double[] DEFAULT_RESOLUTIONS = {1000, 60000, 3600000};
+
+    /**
+     * Number of buckets per entity a rollup tier keeps when no retention is given for it
+     */
+    public static final int DEFAULT_ROLLUP_BUCKETS = 1440;
+
+    private final double hotWindow;
+    private final double[] resolutions;
+    private final double[] rollupRetentions;
+
+    /**
+     * Creates a policy with the default rollup tiers,
+     * each keeping its latest DEFAULT_ROLLUP_BUCKETS buckets per entity
+     * @param hotWindow how far behind the latest timestamp raw events are kept, must be positive
+     */
+    public RetentionPolicy(double hotWindow) {
+        this(hotWindow, DEFAULT_RESOLUTIONS, null);
+    }
+
+    /**
+     * Creates a policy
+     * @param hotWindow how far behind the latest timestamp raw events are kept, must be positive
+     * @param resolutions bucket widths of the rollup tiers, non-empty, positive and strictly ascending
+     * @param rollupRetentions how far behind the latest timestamp the buckets of each tier are kept,
+     *                         one positive value per resolution, or null to keep DEFAULT_ROLLUP_BUCKETS
+     *                         buckets per entity in every tier
+     */
+    public RetentionPolicy(double hotWindow, double[] resolutions, double[] rollupRetentions) {
+        if (!(hotWindow > 0)) {
+            throw new IllegalArgumentException("hotWindow must be positive");
+        }
+        if (resolutions.length == 0 || !(resolutions[0] > 0)) {
+            throw new IllegalArgumentException("resolutions must be positive");
+        }
+        for (int i = 1; i < resolutions.length; i++) {
+            if (!(resolutions[i] > resolutions[i - 1])) {
+                throw new IllegalArgumentException("resolutions must be strictly ascending");
+            }
+        }
+        if (rollupRetentions == null) {
+            rollupRetentions = new double[resolutions.length];
+            for (int i = 0; i < resolutions.length; i++) {
+                rollupRetentions[i] = resolutions[i] * DEFAULT_ROLLUP_BUCKETS;
+            }
+        }
+        if (rollupRetentions.length != resolutions.length
+                || Arrays.stream(rollupRetentions).anyMatch(retention -> !(retention > 0))) {
+            throw new IllegalArgumentException("every rollup tier needs a positive retention");
+        }
+        this.hotWindow = hotWindow;
+        this.resolutions = resolutions.clone();
+        this.rollupRetentions = rollupRetentions.clone();
+    }
+
+    /**
+     * @return how far behind the latest timestamp raw events are kept
+     */
+    public double getHotWindow() {
+        return hotWindow;
+    }
+
+    /**
+     * @return bucket widths of the rollup tiers, finest first
+     */
+    public double[] getResolutions() {
+        return resolutions.clone();
+    }
+
+    /**
+     * @return how far behind the latest timestamp the buckets of each rollup tier are kept, finest tier first
+     */
+    public double[] getRollupRetentions() {
+        return rollupRetentions.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy{" +
+                "HotWindow=" + hotWindow +
+                ",Resolutions=" + Arrays.toString(resolutions) +
+                ",RollupRetentions=" + Arrays.toString(rollupRetentions) +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+package cpen221.mp3.server;
+
+public class RollupBucket {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Resolution: resolution must be positive.
+    // 2. Non-empty: count must be positive and min <= sum / count <= max.
+
+    // Abstraction function:
+    // Maps the internal state of the RollupBucket class to a summary of the events an entity sent
+    // with timestamps in [startTime, startTime + resolution).
+    //
+    // Entity ID, Entity Type: entityId and entityType represent the entity that sent the events.
+    // Start Time, Resolution: startTime and resolution represent the time range of the bucket.
+    // Count: count represents the number of events in the bucket.
+    // Min, Max, Sum: min, max and sum represent the smallest, largest and total value of the events,
+    //                actuator events counting as 1 when on and 0 when off.
+
+    private final int entityId;
+    private final String entityType;
+    private final double startTime;
+    private final double resolution;
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double sum;
+
+    public RollupBucket(int entityId, String entityType, double startTime, double resolution,
+                        long count, double min, double max, double sum) {
+        this.entityId = entityId;
+        this.entityType = entityType;
+        this.startTime = startTime;
+        this.resolution = resolution;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public double getStartTime() {
+        return startTime;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "RollupBucket{" +
+                "EntityId=" + getEntityId() +
+                ",EntityType=" + getEntityType() +
+                ",StartTime=" + getStartTime() +
+                ",Resolution=" + getResolution() +
+                ",Count=" + getCount() +
+                ",Min=" + getMin() +
+                ",Max=" + getMax() +
+                ",Mean=" + getMean() +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+package cpen221.mp3.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RollupTier {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Resolution: resolution must be positive.
+    // 2. Aligned Buckets: every key of a bucket map is a multiple of resolution, the start of its bucket.
+    // 3. Non-empty Buckets: every bucket has a positive count.
+
+    // Abstraction function:
+    // Maps the internal state of the RollupTier class to min/max/mean/count summaries of events,
+    // per entity and per time bucket of width resolution.
+    //
+    // Resolution: resolution represents the width of the time buckets, in timestamp units.
+    // Buckets: buckets maps entity IDs to their buckets, ordered by start time.
+
+    private final double resolution;
+    private final Map<Integer, TreeMap<Double, Accumulator>> buckets = new TreeMap<>();
+
+    /**
+     * Creates an empty tier
+     * @param resolution width of the time buckets, must be positive
+     */
+    public RollupTier(double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        this.resolution = resolution;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Adds an event to the bucket holding its timestamp
+     * @param entityId ID of the entity that sent the event
+     * @param entityType type of the entity that sent the event
+     * @param timeStamp timestamp of the event
+     * @param value value of the event, 1 or 0 for actuator events
+     */
+    public synchronized void add(int entityId, String entityType, double timeStamp, double value) {
+        accumulator(entityId, entityType, timeStamp).add(1, value, value, value);
+    }
+
+    /**
+     * Adds the events summarized by a bucket of the same or a finer resolution
+     * to the bucket holding its start time
+     * @param bucket bucket to merge, its resolution must divide the resolution of this tier
+     */
+    public synchronized void merge(RollupBucket bucket) {
+        accumulator(bucket.getEntityId(), bucket.getEntityType(), bucket.getStartTime())
+                .add(bucket.getCount(), bucket.getMin(), bucket.getMax(), bucket.getSum());
+    }
+
+    /**
+     * Returns the buckets that overlap [startTime, endTime], ordered by entity ID and then by start time
+     * @param startTime start of the window, inclusive
+     * @param endTime end of the window, inclusive
+     * @return summaries of the events in the buckets
+     */
+    public synchronized List<RollupBucket> buckets(double startTime, double endTime) {
+        List<RollupBucket> result = new ArrayList<>();
+        if (!(startTime <= endTime)) {
+            return result;
+        }
+        double first = bucketStart(startTime);
+        buckets.forEach((entityId, byTime) -> byTime.subMap(first, true, endTime, true).forEach(
+                (start, bucket) -> result.add(new RollupBucket(entityId, bucket.entityType, start, resolution,
+                        bucket.count, bucket.min, bucket.max, bucket.sum))));
+        return result;
+    }
+
+    /**
+     * Drops the buckets that end at or before the given time
+     * @param time time before which summaries are no longer needed
+     * @return number of buckets dropped
+     */
+    public synchronized int pruneBefore(double time) {
+        int pruned = 0;
+        for (Iterator<TreeMap<Double, Accumulator>> it = buckets.values().iterator(); it.hasNext(); ) {
+            TreeMap<Double, Accumulator> byTime = it.next();
+            Map<Double, Accumulator> ended = byTime.headMap(time - resolution, true);
+            pruned += ended.size();
+            ended.clear();
+            if (byTime.isEmpty()) {
+                it.remove();
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * @return number of buckets in the tier
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (TreeMap<Double, Accumulator> byTime : buckets.values()) {
+            size += byTime.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return start of the bucket holding timeStamp
+     */
+    private double bucketStart(double timeStamp) {
+        return Math.floor(timeStamp / resolution) * resolution;
+    }
+
+    private Accumulator accumulator(int entityId, String entityType, double timeStamp) {
+        return buckets.computeIfAbsent(entityId, id -> new TreeMap<>())
+                .computeIfAbsent(bucketStart(timeStamp), start -> new Accumulator(entityType));
+    }
+
+    private static final class Accumulator {
+        private final String entityType;
+        private long count = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum = 0;
+
+        private Accumulator(String entityType) {
+            this.entityType = entityType;
+        }
+
+        private void add(long count, double min, double max, double sum) {
+            this.count += count;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.sum += sum;
+        }
+    }
+}
@@ -9,14 +9,24 @@ import cpen221.mp3.client.Request;
 import cpen221.mp3.client.RequestCommand;
 import cpen221.mp3.client.RequestType;
 import cpen221.mp3.handler.EventLog;
+import cpen221.mp3.handler.SealedSegment;
+import cpen221.mp3.handler.StorageMode;
+import cpen221.mp3.handler.WriteAheadLog;
 
 import cpen221.mp3.handler.RequestHandlerThread;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 import javax.swing.text.html.parser.Entity;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
@@ -32,6 +42,19 @@ public class Server {
     // 4. Non-null Filter: The filter must not be null.
     // 5. Non-null Output Stream Writer: The out must not be null.
     // 6. Non-null Client Socket: The clientSocket must not be null.
+    // 7. Consistent Activity: activityCounter counts exactly the entity IDs of the events logged,
+    //    including events serverEventLog has since dropped.
+    // 8. Open Subscriptions: subscriptions holds exactly the subscriptions that are not closed, keyed by their filter.
+    // 9. Recent Events: recentEvents holds the latest distinct timestamps of the events in serverEventLog,
+    //    each with the event of largest entity ID.
+    // 10. Consistent Predictions: predictions holds, for each entity with logged events,
+    //    the state built from exactly those events in the order they were logged.
+    // 11. Compacted Prefix: the first compacted events of serverEventLog are in every tier of rollups
+    //    whose retention still covers their bucket, and serverEventLog only drops events below compacted.
+    //    serverEventLog only drops events while retained is write-locked.
+    // 12. Registered Windows: every key of windows is less than windowIds.
+    // 13. Consistent Sketches: quantilesByEntity and quantilesByType summarize exactly the values of the logged
+    //    sensor events of each entity and entity type, and distinctEntities every logged (client, entity) pair.
 
     // Abstraction function:
     // Maps the internal state of the Server class to the abstract representation of a server.
@@ -40,19 +63,231 @@ public class Server {
     // Max Wait Time: maxWaitTime represents the difference between the time the message was received
     //                  on the server side and the time it was processed.
     // Server Event Log: serverEventLog represents the log where events are stored.
+    // Activity Counter: activityCounter represents the number of logged events of each entity.
+    // Recent Events: recentEvents represents the latest logged events, one per timestamp, used by lastNEvents.
     // Filter: filter represents the filter applied by the server.
+    // Compiled Filter: compiledFilter represents filter compiled into a flat predicate, or null if there is no filter.
+    // Subscriptions: subscriptions represents the subscribers registered by notifyIf, indexed by their filters.
+    // Actuator Channels: actuatorChannels represents the open command connections to the client's actuators.
+    // Predictions: predictions maps entity IDs to the prediction state built from their logged events.
+    // Quantiles By Entity, Quantiles By Type: map entities and entity types to sketches of their sensor values.
+    // Distinct Entities: distinctEntities represents a sketch of the entities that sent events.
+    // Prediction Backend: predictionBackend represents the service that runs predictions for the client,
+    //                     or null if predictions are read from predictions.
+    // Control Rules: controlRules represents the standing actuator rules registered by setActuatorStateIf
+    //                and toggleActuatorStateIf, and the entities that have sent events.
+    // Retention Policy: retentionPolicy represents how long raw events are kept, or null to keep them all.
+    // Rollups: rollups represents the summaries of the logged events at the policy's resolutions, finest first.
+    // Compacted: compacted represents the number of events of serverEventLog added to rollups.
+    // Retained: retained is read-locked by queries that read log positions, so that compaction
+    //           does not drop the events they are reading.
+    // Latest Time Stamp: latestTimeStamp represents the largest timestamp among the compacted events.
+    // Compaction: compaction represents the background task that compacts the log, or null if there is none.
+    // Windows: windows maps window IDs to the aggregations registered by the client,
+    //          updated with every logged event.
+    // Window IDs: windowIds represents the ID the next registered window gets.
     // Output Stream Writer: out represents the output stream writer for communication with the client.
     // Client Socket: clientSocket represents the socket of the connected client.
 
+    /**
+     * Number of distinct timestamps kept to answer lastNEvents without walking the log
+     */
+    private static final int RECENT_EVENTS = 1024;
+
+    /**
+     * Time in milliseconds between background compaction passes
+     */
+    private static final long COMPACTION_PERIOD = 1000;
+
     private Client client;
     private double maxWaitTime = 2; // in seconds
-    private EventLog serverEventLog = new EventLog();
+    private EventLog serverEventLog;
+    private final EntityActivityCounter activityCounter = new EntityActivityCounter();
+    private final RecentEvents recentEvents = new RecentEvents(RECENT_EVENTS);
     private Filter filter;
+    private volatile Predicate<Event> compiledFilter;
+    private final FilterIndex<Subscription> subscriptions = new FilterIndex<>();
+    private final ActuatorChannelPool actuatorChannels = new ActuatorChannelPool();
+    private final ControlRuleEngine controlRules;
+    private final Map<Integer, EntityPrediction> predictions = new ConcurrentHashMap<>();
+    private final Map<Integer, QuantileSketch> quantilesByEntity = new ConcurrentHashMap<>();
+    private final Map<String, QuantileSketch> quantilesByType = new ConcurrentHashMap<>();
+    private final DistinctCounter distinctEntities = new DistinctCounter();
+    private volatile PredictionBackend predictionBackend = null;
+    private final Object compactionLock = new Object();
+    private final ReadWriteLock retained = new ReentrantReadWriteLock();
+    private RetentionPolicy retentionPolicy = null;
+    private RollupTier[] rollups = new RollupTier[0];
+    private int compacted = 0;
+    private double latestTimeStamp = Double.NEGATIVE_INFINITY;
+    private ScheduledFuture<?> compaction = null;
+    private final Map<Integer, WindowAggregator> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger windowIds = new AtomicInteger();
     private PrintWriter out;
     private Socket clientSocket;
 
     public Server(Client client) {
+        this(client, StorageMode.COLUMNAR);
+    }
+
+    /**
+     * Creates a server for the given client
+     * @param client client whose events and requests the server handles
+     * @param storageMode how the server's event log stores events, COLUMNAR favours analytics scans
+     */
+    public Server(Client client, StorageMode storageMode) {
+        this(client, new EventLog(storageMode));
+    }
+
+    /**
+     * Creates a server for the given client around an existing event log,
+     * e.g. one recovered from disk with EventLog.open
+     * @param client client whose events and requests the server handles
+     * @param eventLog log to store the client's events in, events already in it are treated as logged
+     */
+    public Server(Client client, EventLog eventLog) {
         this.client = client;
+        this.serverEventLog = eventLog;
+        this.controlRules = new ControlRuleEngine(client.getClientId());
+        for (Event e : eventLog) {
+            index(e);
+        }
+    }
+
+    /**
+     * Sets the service that runs predictions.
+     * By default predictions are read from per-entity state updated as events are logged.
+     * A backend is only given the raw events still in memory, so once a retention policy drops events
+     * its predictions are based on a shorter history than the per-entity state, which covers every event.
+     * @param predictionBackend backend to run PREDICT_NEXT_N_* requests on,
+     *                          or null to use the per-entity state
+     */
+    public void setPredictionBackend(PredictionBackend predictionBackend) {
+        this.predictionBackend = predictionBackend;
+    }
+
+    /**
+     * Sets how long the client's raw events are kept in memory. A background task then rolls logged events
+     * up into the policy's tiers and drops raw events once they fall out of the hot window;
+     * ingest never waits for it. Rollup tiers are rebuilt from the events still in memory.
+     * @param retentionPolicy policy to apply, or null to keep every raw event and stop compacting
+     */
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        synchronized (compactionLock) {
+            this.retentionPolicy = retentionPolicy;
+            this.compacted = serverEventLog.getFirstRetained();
+            this.latestTimeStamp = Double.NEGATIVE_INFINITY;
+            if (retentionPolicy == null) {
+                this.rollups = new RollupTier[0];
+                if (compaction != null) {
+                    compaction.cancel(false);
+                    compaction = null;
+                }
+                return;
+            }
+            double[] resolutions = retentionPolicy.getResolutions();
+            this.rollups = new RollupTier[resolutions.length];
+            for (int t = 0; t < resolutions.length; t++) {
+                rollups[t] = new RollupTier(resolutions[t]);
+            }
+            if (compaction == null) {
+                compaction = CompactionScheduler.schedule(this::compact, COMPACTION_PERIOD);
+            }
+        }
+    }
+
+    /**
+     * Runs one compaction pass: adds the events logged since the last pass to the rollup tiers,
+     * drops the buckets of each tier that are older than the tier's retention, then drops the oldest
+     * raw events up to the first one still in the hot window. An out-of-order event inside the window
+     * keeps the older events logged after it. With a write-ahead log, only events already in its
+     * sealed segments are dropped.
+     * Normally run in the background after setRetentionPolicy.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            if (retentionPolicy == null) {
+                return;
+            }
+            int size = serverEventLog.size();
+            for (int i = compacted; i < size; i++) {
+                double timeStamp = serverEventLog.timeStampAt(i);
+                String entityType = serverEventLog.entityTypeAt(i);
+                int entityId = serverEventLog.entityIdAt(i);
+                double value = valueAt(i);
+                for (RollupTier tier : rollups) {
+                    tier.add(entityId, entityType, timeStamp, value);
+                }
+                latestTimeStamp = Math.max(latestTimeStamp, timeStamp);
+            }
+            compacted = Math.max(compacted, size);
+            double[] rollupRetentions = retentionPolicy.getRollupRetentions();
+            for (int t = 0; t < rollups.length; t++) {
+                rollups[t].pruneBefore(latestTimeStamp - rollupRetentions[t]);
+            }
+
+            // events still only in the active segment of a write-ahead log cannot be read back from disk
+            WriteAheadLog wal = serverEventLog.getWriteAheadLog();
+            long limit = wal == null ? compacted : Math.min(compacted, wal.getSealedEvents());
+            double cutoff = latestTimeStamp - retentionPolicy.getHotWindow();
+            int keep = serverEventLog.getFirstRetained();
+            while (keep < limit && serverEventLog.timeStampAt(keep) < cutoff) {
+                keep++;
+            }
+            retained.writeLock().lock();
+            try {
+                serverEventLog.discardBefore(keep);
+            } finally {
+                retained.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Summarizes the events of the client per entity in time buckets of at most the given width.
+     * The coarsest rollup tier whose resolution is at most the requested one is used; raw events
+     * are only read for the events not compacted yet, or when no tier is fine enough.
+     * Raw events dropped by the retention policy, and buckets older than the retention of the tier used,
+     * are then missing from the summary.
+     *
+     * @param timeWindow the time window of events, inclusive of the start and end times
+     * @param resolution largest acceptable bucket width, must be positive
+     * @return every bucket overlapping the window, ordered by entity ID and then by start time
+     */
+    public List<RollupBucket> summarizeTimeWindow(TimeWindow timeWindow, double resolution) {
+        if (!(resolution > 0)) {
+            throw new IllegalArgumentException("resolution must be positive");
+        }
+        synchronized (compactionLock) {
+            RollupTier tier = null;
+            for (RollupTier candidate : rollups) {
+                if (candidate.getResolution() <= resolution) {
+                    tier = candidate;
+                }
+            }
+            double width = tier == null ? resolution : tier.getResolution();
+            RollupTier summary = new RollupTier(width);
+            int rawFrom = 0;
+            if (tier != null) {
+                for (RollupBucket bucket : tier.buckets(timeWindow.startTime, timeWindow.endTime)) {
+                    summary.merge(bucket);
+                }
+                rawFrom = compacted;
+            }
+
+            // raw events of the buckets at both ends of the window count in full, as they do in the tiers
+            double first = Math.floor(timeWindow.startTime / width) * width;
+            double last = Math.nextDown(Math.floor(timeWindow.endTime / width) * width + width);
+            PrimitiveIterator.OfInt inWindow = serverEventLog.indicesInTimeWindow(first, last);
+            while (inWindow.hasNext()) {
+                int i = inWindow.nextInt();
+                if (i >= rawFrom) {
+                    summary.add(serverEventLog.entityIdAt(i), serverEventLog.entityTypeAt(i),
+                            serverEventLog.timeStampAt(i), valueAt(i));
+                }
+            }
+            return summary.buckets(timeWindow.startTime, timeWindow.endTime);
+        }
     }
 
     public double getMaxWaitTime(){
@@ -60,10 +295,33 @@ public class Server {
     }
 
     public void logEvent(Event e) {
-        if(filter == null){
-            this.serverEventLog.addEvent(e);
-        } else if(this.filter.satisfies(e)) {
+        Predicate<Event> accepts = this.compiledFilter;
+        if(accepts == null || accepts.test(e)){
             this.serverEventLog.addEvent(e);
+            index(e);
+        }
+        if(subscriptions.size() > 0) {
+            subscriptions.forEachMatch(e, subscription -> subscription.offer(e));
+        }
+    }
+
+    /**
+     * Updates the state derived from the logged events with one more event
+     */
+    private void index(Event e) {
+        this.activityCounter.increment(e.getEntityId());
+        this.recentEvents.add(e);
+        this.predictions.computeIfAbsent(e.getEntityId(), id -> new EntityPrediction()).add(e);
+        this.distinctEntities.add(((long) e.getClientId() << 32) | (e.getEntityId() & 0xFFFFFFFFL));
+        if(!(e instanceof ActuatorEvent)) {
+            double value = e.getValueDouble();
+            this.quantilesByEntity.computeIfAbsent(e.getEntityId(), id -> new QuantileSketch()).update(value);
+            this.quantilesByType.computeIfAbsent(e.getEntityType(), type -> new QuantileSketch()).update(value);
+        }
+        if(!windows.isEmpty()) {
+            for (WindowAggregator window : windows.values()) {
+                window.add(e);
+            }
         }
     }
 
@@ -89,6 +347,8 @@ public class Server {
      * Set the actuator state if the given filter is satisfied by the latest event.
      * Here the latest event is the event with the latest timestamp not the event 
      * that was received by the server the latest.
+     * The rule stays registered and is checked against every event received from now on
+     * that becomes the latest event. Registering the same rule again does nothing.
      *
      * If the actuator is not registered for the client, then this method should do nothing.
      *
@@ -96,28 +356,7 @@ public class Server {
      * @param actuator the actuator to set the state of as true
      */
     public void setActuatorStateIf(Filter filter, Actuator actuator) {
-        // implement this method and send the appropriate SeverCommandToActuator as a Request to the actuator
-
-        Event event = serverEventLog.getEvent();
-        if(actuator.getClientId() == this.client.getClientId()) {
-            if(filter.satisfies(event)){
-                actuator.updateState(true);
-
-                ServerRequest toSend = new ServerRequest(SeverCommandToActuator.SET_STATE, true);
-
-                try {
-                    Socket socket = new Socket(actuator.getIP(), actuator.getPort());
-                    out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
-                    out.print(client.getClientId() + "{"+ toSend.toString() +"}");
-                    out.flush();
-                    out.close();
-
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-
-            }
-        }
+        fire(controlRules.register(new ControlRule(filter, actuator, SeverCommandToActuator.SET_STATE)), System.nanoTime());
     }
 
     /**
@@ -125,6 +364,9 @@ public class Server {
      * Here the latest event is the event with the latest timestamp not the event 
      * that was received by the server the latest.
      *
+     * The rule stays registered and is checked against every event received from now on
+     * that becomes the latest event. Registering the same rule again does nothing.
+     *
      * If the actuator has never sent an event to the server, then this method should do nothing.
      * If the actuator is not registered for the client, then this method should do nothing.
      *
@@ -132,39 +374,61 @@ public class Server {
      * @param actuator the actuator to toggle the state of (true -> false, false -> true)
      */
     public void toggleActuatorStateIf(Filter filter, Actuator actuator) {
-        // implement this method and send the appropriate SeverCommandToActuator as a Request to the actuator
-        Event event = serverEventLog.getEvent();
+        fire(controlRules.register(new ControlRule(filter, actuator, SeverCommandToActuator.TOGGLE_STATE)), System.nanoTime());
+    }
 
-        ArrayList<Event> log = serverEventLog.getLog();
+    /**
+     * Stops setting the actuator state when the given filter is satisfied
+     * @param filter filter of a rule registered with setActuatorStateIf
+     * @param actuator actuator of the rule
+     * @return true if the rule was registered
+     */
+    public boolean removeSetActuatorStateIf(Filter filter, Actuator actuator) {
+        return controlRules.remove(new ControlRule(filter, actuator, SeverCommandToActuator.SET_STATE));
+    }
 
-        boolean hasSent = false;
+    /**
+     * Stops toggling the actuator state when the given filter is satisfied
+     * @param filter filter of a rule registered with toggleActuatorStateIf
+     * @param actuator actuator of the rule
+     * @return true if the rule was registered
+     */
+    public boolean removeToggleActuatorStateIf(Filter filter, Actuator actuator) {
+        return controlRules.remove(new ControlRule(filter, actuator, SeverCommandToActuator.TOGGLE_STATE));
+    }
 
-        for (Event elem : log) {
-            if(elem.getEntityId() == actuator.getId()){
-                hasSent = true;
+    /**
+     * Sends the commands of the given rules to their actuators
+     * @param fired rules that fired
+     * @param arrival System.nanoTime() at which the triggering event arrived
+     */
+    private void fire(List<ControlRule> fired, long arrival) {
+        for (ControlRule rule : fired) {
+            Actuator actuator = rule.getActuator();
+            ServerRequest toSend;
+            if (rule.getCommand() == SeverCommandToActuator.TOGGLE_STATE) {
+                actuator.updateState(!(actuator.getState()));
+                toSend = new ServerRequest(SeverCommandToActuator.TOGGLE_STATE);
+            } else {
+                actuator.updateState(true);
+                toSend = new ServerRequest(SeverCommandToActuator.SET_STATE, true);
             }
+            actuatorChannels.send(actuator.getIP(), actuator.getPort(), client.getClientId(), toSend)
+                    .thenRun(() -> controlRules.recordTrigger(System.nanoTime() - arrival))
+                    .exceptionally(e -> {
+                        System.err.println("Could not send " + toSend + " to " + actuator + ": " + e);
+                        return null;
+                    });
         }
+    }
 
-        if(event.getClientId() == client.getClientId() && hasSent){ // NEED TO CHECK 1ST CONDITION
-            if(!(event == null)){
-                if(filter.satisfies(event)) {
-                    actuator.updateState(!(actuator.getState()));
-
-                    ServerRequest toSend = new ServerRequest(SeverCommandToActuator.TOGGLE_STATE);
-                    try {
-                        Socket socket = new Socket(actuator.getIP(), actuator.getPort());
-                        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()));
-                        out.print(client.getClientId() + "{" + toSend.toString() + "}");
-                        out.flush();
-                        out.close();
-
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-
-        }
+    /**
+     * Returns the standing actuator rules of the client,
+     * e.g. to monitor rule evaluation cost and trigger latency
+     * @return the control rule engine of the server
+     */
+    public ControlRuleEngine getControlRules() {
+        return controlRules;
     }
 
     /**
@@ -175,6 +439,47 @@ public class Server {
      */
     public void logIf(Filter filter) {
         this.filter = filter;
+        this.compiledFilter = filter == null ? null : filter.compile();
+    }
+
+    /**
+     * Push every event received from now on that satisfies the given filter to the client,
+     * one event per line on the socket of the current request.
+     * The socket stays open until the client disconnects.
+     *
+     * @param filter the filter to check
+     * @return the subscription, or null if there is no socket to push on
+     */
+    public Subscription notifyIf(Filter filter) {
+        if(clientSocket == null) {
+            return null;
+        }
+        try {
+            return subscribe(filter, clientSocket.getOutputStream(), 256, OverflowPolicy.COALESCE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Push every event received from now on that satisfies the given filter to a subscriber.
+     * Events are pushed by the subscription's own thread, so a slow subscriber never delays logging.
+     *
+     * @param filter the filter to check
+     * @param out the stream events are pushed on, one event per line
+     * @param capacity the number of events that may wait for a slow subscriber
+     * @param policy which events are given up when more than capacity events are waiting
+     * @return the subscription, which is removed from the server once closed
+     */
+    public Subscription subscribe(Filter filter, OutputStream out, int capacity, OverflowPolicy policy) {
+        Subscription subscription = new Subscription(filter, out, capacity, policy,
+                closed -> subscriptions.remove(filter, closed));
+        subscriptions.add(filter, subscription);
+        if(subscription.isClosed()) {
+            subscriptions.remove(filter, subscription);
+        }
+        return subscription;
     }
 
     /**
@@ -186,11 +491,15 @@ public class Server {
      * @return list of event IDs
      */
     public List<Integer> readLogs() {
-        ArrayList<Event> eventList = new ArrayList<>(serverEventLog.getLog());
-        eventList.sort(Comparator.comparingDouble(Event::getTimeStamp));
         ArrayList<Integer> eventListID = new ArrayList<>();
-        for(Event e : eventList) {
-            eventListID.add(e.getEntityId());
+        retained.readLock().lock();
+        try {
+            PrimitiveIterator.OfInt byTime = serverEventLog.indicesByTime(false);
+            while (byTime.hasNext()) {
+                eventListID.add(serverEventLog.entityIdAt(byTime.nextInt()));
+            }
+        } finally {
+            retained.readLock().unlock();
         }
         return eventListID;
     }
@@ -206,10 +515,14 @@ public class Server {
      */
     public List<Event> eventsInTimeWindow(TimeWindow timeWindow) {
         ArrayList<Event> eventList = new ArrayList<>();
-        for(Event e : this.serverEventLog) {
-            if(e.getTimeStamp() >= timeWindow.startTime && e.getTimeStamp() <= timeWindow.endTime) {
-                eventList.add(e);
+        retained.readLock().lock();
+        try {
+            PrimitiveIterator.OfInt inWindow = serverEventLog.indicesInTimeWindow(timeWindow.startTime, timeWindow.endTime);
+            while (inWindow.hasNext()) {
+                eventList.add(serverEventLog.get(inWindow.nextInt()));
             }
+        } finally {
+            retained.readLock().unlock();
         }
         if(clientSocket != null) {
             try {
@@ -224,6 +537,167 @@ public class Server {
         return eventList;
     }
 
+    /**
+     * Writes the events of the client in the given time window, as the list eventsInTimeWindow replies with.
+     * Events in sealed segments of a log kept on disk are formatted straight from the mapped segment files,
+     * found through the segments' timestamp index, instead of being created as Event objects.
+     * The matches of each segment are kept in primitive arrays and the segments are merged by timestamp.
+     *
+     * @param timeWindow the time window of events, inclusive of the start and end times
+     * @param out writer to write the list to, followed by a line separator
+     * @return number of events written
+     * @throws IOException if a sealed segment cannot be read
+     */
+    public int writeEventsInTimeWindow(TimeWindow timeWindow, PrintWriter out) throws IOException {
+        double start = timeWindow.startTime;
+        double end = timeWindow.endTime;
+        int written = 0;
+        StringBuilder text = new StringBuilder("[");
+        // lock before listing the sealed segments, so that compaction keeps every later event in memory
+        retained.readLock().lock();
+        try {
+            WriteAheadLog wal = serverEventLog.getWriteAheadLog();
+            List<SealedSegment> sealed = wal == null ? List.of() : wal.getSealedSegments();
+            long sealedEvents = 0;
+            PriorityQueue<SegmentRun> runs = new PriorityQueue<>();
+            for (SealedSegment segment : sealed) {
+                SegmentRun run = new SegmentRun(segment, start, end);
+                if (run.hasNext()) {
+                    runs.add(run);
+                }
+                sealedEvents = segment.getFirstIndex() + segment.size();
+            }
+
+            PrimitiveIterator.OfInt inWindow = serverEventLog.indicesInTimeWindow(start, end);
+            int recent = nextIndexFrom(inWindow, sealedEvents);
+            while (!runs.isEmpty() || recent >= 0) {
+                if (written++ > 0) {
+                    text.append(", ");
+                }
+                SegmentRun run = runs.peek();
+                if (run != null && (recent < 0 || run.before(serverEventLog.timeStampAt(recent), recent))) {
+                    runs.poll();
+                    run.appendNext(text);
+                    if (run.hasNext()) {
+                        runs.add(run);
+                    }
+                } else {
+                    text.append(serverEventLog.get(recent));
+                    recent = nextIndexFrom(inWindow, sealedEvents);
+                }
+                if (text.length() >= 8192) {
+                    out.append(text);
+                    text.setLength(0);
+                }
+            }
+        } finally {
+            retained.readLock().unlock();
+        }
+        text.append(']');
+        out.println(text);
+        out.flush();
+        return written;
+    }
+
+    /**
+     * @return next index of the iterator that is at least from, or -1 if there is none
+     */
+    private static int nextIndexFrom(PrimitiveIterator.OfInt indices, long from) {
+        while (indices.hasNext()) {
+            int index = indices.nextInt();
+            if (index >= from) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Events of a sealed segment in a time window, read in the order of the log's time index:
+     * by timestamp, then position in the log. Runs compare by their next event.
+     */
+    private static final class SegmentRun implements Comparable<SegmentRun> {
+        private final SealedSegment segment;
+        private double[] timeStamps = new double[16];
+        private long[] indices = new long[16];
+        private int[] positions = new int[16];
+        private final int[] order;
+        private int size = 0;
+        private int next = 0;
+
+        private SegmentRun(SealedSegment segment, double startTime, double endTime) {
+            this.segment = segment;
+            segment.forEachInWindow(startTime, endTime, this::add);
+            this.order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            for (int i = 1; i < size; i++) {
+                if (timeStamps[i] < timeStamps[i - 1]) {
+                    // events are visited in log order, so a stable sort by timestamp breaks ties by position
+                    sortByTimeStamp(order, new int[size], 0, size);
+                    break;
+                }
+            }
+        }
+
+        private void add(double timeStamp, long index, int position) {
+            if (size == timeStamps.length) {
+                timeStamps = Arrays.copyOf(timeStamps, size * 2);
+                indices = Arrays.copyOf(indices, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            timeStamps[size] = timeStamp;
+            indices[size] = index;
+            positions[size] = position;
+            size++;
+        }
+
+        /**
+         * Stable merge sort of order[from..to) by timestamp
+         */
+        private void sortByTimeStamp(int[] order, int[] scratch, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sortByTimeStamp(order, scratch, from, mid);
+            sortByTimeStamp(order, scratch, mid, to);
+            System.arraycopy(order, from, scratch, from, to - from);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right == to || (left < mid && timeStamps[scratch[left]] <= timeStamps[scratch[right]])) {
+                    order[i] = scratch[left++];
+                } else {
+                    order[i] = scratch[right++];
+                }
+            }
+        }
+
+        private boolean hasNext() {
+            return next < size;
+        }
+
+        private void appendNext(StringBuilder text) {
+            segment.appendEventText(positions[order[next++]], text);
+        }
+
+        private boolean before(double otherTimeStamp, long otherIndex) {
+            return compare(otherTimeStamp, otherIndex) < 0;
+        }
+
+        private int compare(double otherTimeStamp, long otherIndex) {
+            int byTime = Double.compare(timeStamps[order[next]], otherTimeStamp);
+            return byTime != 0 ? byTime : Long.compare(indices[order[next]], otherIndex);
+        }
+
+        @Override
+        public int compareTo(SegmentRun other) {
+            return compare(other.timeStamps[other.order[other.next]], other.indices[other.order[other.next]]);
+        }
+    }
+
     /**
      * Returns a set of IDs for all the entities of the client for which
      * we have received events so far.
@@ -232,21 +706,18 @@ public class Server {
      * @return list of all the entities of the client for which we have received events so far
      */
     public List<Integer> getAllEntities() {
-        HashSet<Integer> eventID = new HashSet<>();
-        for(Event e : this.serverEventLog) {
-            eventID.add(e.getEntityId());
-        }
+        List<Integer> eventID = activityCounter.entities();
         if(clientSocket != null) {
             try {
                 out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                out.println(eventID.stream().toList());
+                out.println(eventID);
                 out.flush();
                 out.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
-        return eventID.stream().toList();
+        return eventID;
     }
 
     /**
@@ -261,27 +732,46 @@ public class Server {
      * @return list of the latest n events of the client
      */
     public List<Event> lastNEvents(int n) {
-        ArrayList<Event> allEvents = new ArrayList<>();
-        for(Event e : this.serverEventLog) {
-            allEvents.add(e);
-        }
-        if(allEvents.isEmpty()) {
-            return allEvents;
-        }
-        allEvents.sort(Comparator.comparingDouble(Event::getTimeStamp));
-        if(allEvents.size() < n) {
-            return allEvents;
-        }
-        List<Event> inRange = checkDuplicate(allEvents);
         List<Event> lastNEventList = new ArrayList<>();
-        for(int i = inRange.size() - n; i < inRange.size(); i++) {
-            lastNEventList.add(inRange.get(i));
+        retained.readLock().lock();
+        try {
+            if(serverEventLog.size() - serverEventLog.getFirstRetained() < n) {
+                PrimitiveIterator.OfInt ascending = serverEventLog.indicesByTime(false);
+                while (ascending.hasNext()) {
+                    lastNEventList.add(serverEventLog.get(ascending.nextInt()));
+                }
+            } else if(n > 0 && recentEvents.covers(n)) {
+                lastNEventList = recentEvents.latest(n);
+            } else if(n > 0) {
+                // walk back from the latest timestamp, keeping the largest EntityId of each timestamp
+                PrimitiveIterator.OfInt descending = serverEventLog.indicesByTime(true);
+                int best = -1;
+                while (descending.hasNext()) {
+                    int i = descending.nextInt();
+                    if (best >= 0 && serverEventLog.timeStampAt(i) != serverEventLog.timeStampAt(best)) {
+                        lastNEventList.add(serverEventLog.get(best));
+                        best = -1;
+                        if (lastNEventList.size() == n) {
+                            break;
+                        }
+                    }
+                    if (best < 0 || serverEventLog.entityIdAt(i) >= serverEventLog.entityIdAt(best)) {
+                        best = i;
+                    }
+                }
+                if (best >= 0) {
+                    lastNEventList.add(serverEventLog.get(best));
+                }
+                Collections.reverse(lastNEventList);
+            }
+        } finally {
+            retained.readLock().unlock();
         }
 
         if(clientSocket != null) {
             try {
                 out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                out.println(checkDuplicate(inRange).toString());
+                out.println(lastNEventList);
                 out.flush();
                 out.close();
             } catch (IOException e) {
@@ -318,53 +808,181 @@ public class Server {
      * @return the most active entity ID of the client
      */
     public int mostActiveEntity() {
-        // implement this method
-        
-        int mostActiveId = 0;
-        int maxFrequency = 0;
-
-        Map<Integer, Integer> frequenciesOfEntities = new HashMap<Integer, Integer>();
+        int mostActiveId = activityCounter.mostActive();
 
+        if(clientSocket != null) {
+            try {
+                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(mostActiveId);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
 
-        for (Event event : this.serverEventLog) {
+        return mostActiveId;
+    }
 
-            if(frequenciesOfEntities.containsKey(event.getEntityId())){
-                frequenciesOfEntities.put(event.getEntityId(), frequenciesOfEntities.get(event.getEntityId()) + 1);
+    /**
+     * Returns the IDs of the k most active entities of the client
+     * in terms of the number of events they have generated, most active first.
+     * Entities with the same number of events are ordered by decreasing ID.
+     *
+     * @param k the max number of entities to list
+     * @return list of up to k entity IDs
+     */
+    public List<Integer> topKActiveEntities(int k) {
+        List<Integer> topK = activityCounter.topK(k);
+        if(clientSocket != null) {
+            try {
+                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(topK);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+        return topK;
+    }
 
-            else{
-                frequenciesOfEntities.put(event.getEntityId(), 1);
+    /**
+     * Registers a window that aggregates the sensor values of the client's events as they are logged,
+     * and sends its ID to the client
+     *
+     * @param window window to maintain
+     * @return ID of the window, used by windowResults and removeWindow
+     */
+    public int registerWindow(WindowAggregator window) {
+        int windowId = windowIds.getAndIncrement();
+        windows.put(windowId, window);
+        if(clientSocket != null) {
+            try {
+                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(windowId);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
+        return windowId;
+    }
 
-        for (Map.Entry<Integer, Integer> entry : frequenciesOfEntities.entrySet()) {
+    /**
+     * Stops maintaining a window
+     *
+     * @param windowId ID returned by registerWindow
+     * @return true if the window was registered
+     */
+    public boolean removeWindow(int windowId) {
+        return windows.remove(windowId) != null;
+    }
 
-            if(entry.getValue() > maxFrequency){
-                maxFrequency = entry.getValue();
-                mostActiveId = entry.getKey();
+    /**
+     * Returns the current results of the client's windows without reading the event log,
+     * and sends them to the client
+     *
+     * @return map from window ID to the aggregates of the window's current window
+     */
+    public Map<Integer, WindowResult> windowResults() {
+        Map<Integer, WindowResult> results = new TreeMap<>();
+        windows.forEach((windowId, window) -> results.put(windowId, window.getResult()));
+        if(clientSocket != null) {
+            try {
+                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(results);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+        return results;
+    }
 
-            else if(entry.getValue() == maxFrequency){
-                if(entry.getKey() > mostActiveId){
-                    maxFrequency = entry.getValue();
-                    mostActiveId = entry.getKey();
-                }
-            }
+    /**
+     * Estimates quantiles of the sensor values of all entities of a type, from a sketch kept as events
+     * are logged, and sends them to the client
+     *
+     * @param entityType type of the entities
+     * @param fractions ranks between 0 and 1, e.g. 0.5, 0.95 and 0.99
+     * @return estimated value of each rank, empty if no sensor events of the type have been logged
+     */
+    public List<Double> entityTypeQuantiles(String entityType, double... fractions) {
+        return quantiles(quantilesByType.get(entityType), fractions);
+    }
+
+    /**
+     * Estimates quantiles of the sensor values of an entity, from a sketch kept as events
+     * are logged, and sends them to the client
+     *
+     * @param entityId ID of the entity
+     * @param fractions ranks between 0 and 1, e.g. 0.5, 0.95 and 0.99
+     * @return estimated value of each rank, empty if no sensor events of the entity have been logged
+     */
+    public List<Double> entityQuantiles(int entityId, double... fractions) {
+        return quantiles(quantilesByEntity.get(entityId), fractions);
+    }
 
+    private List<Double> quantiles(QuantileSketch sketch, double[] fractions) {
+        List<Double> quantiles = new ArrayList<>();
+        if(sketch != null) {
+            for (double fraction : fractions) {
+                quantiles.add(sketch.quantile(fraction));
+            }
         }
+        if(clientSocket != null) {
+            try {
+                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                out.println(quantiles);
+                out.flush();
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return quantiles;
+    }
 
+    /**
+     * Estimates the number of distinct entities of the client that have sent events,
+     * and sends it to the client
+     *
+     * @return estimated number of entities, within a few percent
+     */
+    public long distinctEntities() {
+        long estimate = distinctEntities.estimate();
         if(clientSocket != null) {
             try {
                 out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                out.println(mostActiveId);
+                out.println(estimate);
                 out.flush();
                 out.close();
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        return estimate;
+    }
 
-        return mostActiveId;
+    /**
+     * Returns a copy of the sketch of the sensor values of an entity type, e.g. to merge with other clients
+     * @param entityType type of the entities
+     * @return copy of the sketch, empty if no sensor events of the type have been logged
+     */
+    public QuantileSketch getQuantileSketch(String entityType) {
+        QuantileSketch sketch = quantilesByType.get(entityType);
+        return sketch == null ? new QuantileSketch() : sketch.copy();
+    }
+
+    /**
+     * Returns a copy of the sketch of the client's entities, e.g. to merge with other clients
+     * @return copy of the sketch of the (client, entity) pairs that sent events
+     */
+    public DistinctCounter getDistinctEntitySketch() {
+        return distinctEntities.copy();
     }
 
     /**
@@ -380,36 +998,7 @@ public class Server {
      * @return list of the predicted timestamps
      */
     public List<Double> predictNextNTimeStamps(int entityId, int n) {
-        boolean exists = false;
-        List<Double> nextNTimeStamps = new ArrayList<>();
-
-        for(Event e : serverEventLog){
-            if(e.getEntityId() == entityId){
-                exists = true;
-            }
-        }
-
-        if(exists){
-            List<Double> startingValues = new ArrayList<>();
-            for(Event e : this.serverEventLog){
-                if(e.getEntityId() == entityId) {
-                    startingValues.add(e.getTimeStamp());
-                }
-            }
-            Thread predictThread = new Thread(new PredictorThread(entityId, n, startingValues, clientSocket));
-            predictThread.start();
-        } else {
-            try {
-                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                out.println(nextNTimeStamps);
-                out.flush();
-                out.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-
-        return nextNTimeStamps;
+        return predictNext(entityId, n, true);
     }
 
     /**
@@ -427,46 +1016,68 @@ public class Server {
      * @return list of the predicted timestamps
      */
     public List<Double> predictNextNValues(int entityId, int n) {
-        boolean exists = false;
-        List<Double> nextNValues = new ArrayList<>();
-
-        for(Event e : serverEventLog){
-            if(e.getEntityId() == entityId){
-                exists = true;
-            }
-        }
+        return predictNext(entityId, n, false);
+    }
 
-        if(exists){
+    /**
+     * Predicts the next n timestamps or values of an entity and sends them to the client.
+     * Without a prediction backend, the prediction is read from the entity's state kept by logEvent
+     * in O(n); otherwise the entity's history still in memory is collected from the log and passed
+     * to the backend, see setPredictionBackend.
+     */
+    private List<Double> predictNext(int entityId, int n, boolean timeStamps) {
+        List<Double> predicted = new ArrayList<>();
+        EntityPrediction state = predictions.get(entityId);
+        PredictionBackend backend = this.predictionBackend;
+        if(state != null && backend == null) {
+            predicted = timeStamps ? state.predictTimeStamps(n) : state.predictValues(n);
+        } else if(state != null) {
             List<Double> startingValues = new ArrayList<>();
-            for(Event e : this.serverEventLog){
-                if(e.getEntityId() == entityId) {
-                    if(e.getClass().equals(ActuatorEvent.class)) {
-                        if(e.getValueBoolean()) {
-                            startingValues.add(0.0);
-                        } else {
-                            startingValues.add(0.0);
-                        }
+            retained.readLock().lock();
+            try {
+                int size = serverEventLog.size();
+                for(int i = serverEventLog.getFirstRetained(); i < size; i++){
+                    if(serverEventLog.entityIdAt(i) == entityId){
+                        startingValues.add(timeStamps ? serverEventLog.timeStampAt(i) : valueAt(i));
                     }
                 }
+            } finally {
+                retained.readLock().unlock();
             }
-            Thread predictThread = new Thread(new PredictorThread(entityId, n, startingValues, clientSocket));
-            predictThread.start();
-        } else {
+            try {
+                predicted = backend.predict(entityId, n, startingValues);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if(clientSocket != null) {
             try {
                 out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                out.println(nextNValues);
+                out.println(predicted);
                 out.flush();
                 out.close();
-            } catch (IOException ex) {
-                ex.printStackTrace();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
+        return predicted;
+    }
 
-        return nextNValues;
+    /**
+     * @return value of the i-th logged event used for prediction, see EntityPrediction.valueOf
+     */
+    private double valueAt(int i) {
+        if(serverEventLog.isActuatorAt(i)) {
+            return serverEventLog.valueBooleanAt(i) ? 1.0 : 0.0;
+        }
+        return serverEventLog.valueDoubleAt(i);
     }
 
     public void processIncomingEvent(Event event) {
+        long arrival = System.nanoTime();
         this.logEvent(event);
+        fire(controlRules.observe(event), arrival);
     }
 
     public void processIncomingRequest(Request request, Socket clientSocket) {
@@ -497,7 +1108,15 @@ public class Server {
                     case ANALYSIS_GET_EVENTS_IN_WINDOW: {
                         TimeWindow window = new TimeWindow(Double.parseDouble(request.getRequestData().split("[{,=]")[1]),
                                 Double.parseDouble(request.getRequestData().split("[{,=]")[3]));
-                        eventsInTimeWindow(window);
+                        if (clientSocket != null && serverEventLog.getWriteAheadLog() != null) {
+                            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()))) {
+                                writeEventsInTimeWindow(window, writer);
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        } else {
+                            eventsInTimeWindow(window);
+                        }
                         break;
                     }
                     case ANALYSIS_GET_LATEST_EVENTS: {
@@ -508,6 +1127,55 @@ public class Server {
                         mostActiveEntity();
                         break;
                     }
+                    case ANALYSIS_GET_TOP_K_ACTIVE_ENTITIES: {
+                        topKActiveEntities(Integer.parseInt(request.getRequestData()));
+                        break;
+                    }
+                    case ANALYSIS_REGISTER_WINDOW: {
+                        registerWindow(WindowAggregator.parse(request.getRequestData()));
+                        break;
+                    }
+                    case ANALYSIS_GET_WINDOW_RESULTS: {
+                        windowResults();
+                        break;
+                    }
+                    case ANALYSIS_REMOVE_WINDOW: {
+                        removeWindow(Integer.parseInt(request.getRequestData()));
+                        break;
+                    }
+                    case ANALYSIS_GET_QUANTILES: {
+                        // EntityId=<id> or EntityType=<type>, then Quantiles=<fraction>;<fraction>...
+                        String[] fields = request.getRequestData().split("[,=]");
+                        double[] fractions = Arrays.stream(fields[3].split(";")).mapToDouble(Double::parseDouble).toArray();
+                        if (fields[0].trim().equals("EntityId")) {
+                            entityQuantiles(Integer.parseInt(fields[1].trim()), fractions);
+                        } else {
+                            entityTypeQuantiles(fields[1].trim(), fractions);
+                        }
+                        break;
+                    }
+                    case ANALYSIS_GET_DISTINCT_ENTITIES: {
+                        distinctEntities();
+                        break;
+                    }
+                    case ANALYSIS_SUMMARIZE_WINDOW: {
+                        // StartTime=<start>,EndTime=<end>,Resolution=<largest bucket width>
+                        String[] fields = request.getRequestData().split("[,=]");
+                        TimeWindow window = new TimeWindow(Double.parseDouble(fields[1]),
+                                Double.parseDouble(fields[3]));
+                        List<RollupBucket> summary = summarizeTimeWindow(window, Double.parseDouble(fields[5]));
+                        if (clientSocket != null) {
+                            try {
+                                out = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
+                                out.println(summary);
+                                out.flush();
+                                out.close();
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                        break;
+                    }
                     default: {
                         break;
                     }
@@ -517,7 +1185,8 @@ public class Server {
             case CONTROL: {
                 switch (request.getRequestCommand()) {
                     case CONTROL_NOTIFY_IF: {
-                        notify();
+                        FilterDeserializer fd = new FilterDeserializer();
+                        notifyIf(fd.deserialize(request.getRequestData()));
                         break;
                     }
                     case CONTROL_SET_ACTUATOR_STATE: {
@@ -537,6 +1206,22 @@ public class Server {
                         toggleActuatorStateIf(filter, actuator);
                         break;
                     }
+                    case CONTROL_REMOVE_SET_ACTUATOR_STATE: {
+                        FilterDeserializer fd = new FilterDeserializer();
+                        Filter filter = fd.deserialize(request.getRequestData().split("\\{([^}]*)\\}")[0]);
+                        ActuatorDeserializer ad = new ActuatorDeserializer();
+                        Actuator actuator = ad.deserialize(request.getRequestData().split("\\{([^}]*)\\}")[1]);
+                        removeSetActuatorStateIf(filter, actuator);
+                        break;
+                    }
+                    case CONTROL_REMOVE_TOGGLE_ACTUATOR_STATE: {
+                        FilterDeserializer fd = new FilterDeserializer();
+                        Filter filter = fd.deserialize(request.getRequestData().split("},")[0]);
+                        ActuatorDeserializer ad = new ActuatorDeserializer();
+                        Actuator actuator = ad.deserialize(request.getRequestData().split("},")[1]);
+                        removeToggleActuatorStateIf(filter, actuator);
+                        break;
+                    }
 
                     default: {
                         break;
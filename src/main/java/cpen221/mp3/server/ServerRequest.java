@@ -22,8 +22,16 @@ public class ServerRequest extends Request {
     private final boolean actuatorState;
 
     public ServerRequest(SeverCommandToActuator command, boolean actuatorState) {
-        super(null, null, null);
-        this.timeStamp = System.currentTimeMillis();
+        this(System.currentTimeMillis(), command, actuatorState);
+    }
+
+    /**
+     * Creates a command that was issued at the given time, such as one decoded from the wire
+     * @param timeStamp time at which the command was issued
+     */
+    public ServerRequest(double timeStamp, SeverCommandToActuator command, boolean actuatorState) {
+        super(timeStamp, null, null, null);
+        this.timeStamp = timeStamp;
         this.command = command;
         this.actuatorState = actuatorState;
     }
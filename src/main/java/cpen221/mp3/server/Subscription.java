@@ -0,0 +1,213 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.Event;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class Subscription {
+
+    // Rep Invariants:
+    //
+    // 1. Non-null Filter: The filter must not be null.
+    // 2. Positive Capacity: capacity must be positive.
+    // 3. Bounded Queue: pending holds at most capacity events, and latestByEntity at most capacity entities.
+    // 4. One Queue In Use: pending is empty if policy is COALESCE, latestByEntity is empty otherwise.
+    // 5. Closed Stays Closed: once closed is true it never becomes false again.
+
+    // Abstraction function:
+    // Maps the internal state of the Subscription class to a subscriber that is pushed every event
+    // satisfying its filter, one event per line, without making the server wait for it.
+    //
+    // Filter: filter represents the filter an event must satisfy to be pushed.
+    // Out: out represents the connection events are pushed on.
+    // Capacity: capacity represents the number of events that may wait for a slow subscriber.
+    // Policy: policy represents which events are given up when the subscriber falls behind.
+    // Pending: pending represents the events waiting to be pushed, oldest first.
+    // Latest By Entity: latestByEntity represents the newest waiting event of each entity, in COALESCE mode.
+    // Delivered: delivered represents the number of events written to out.
+    // Dropped: dropped represents the number of matching events given up because the queue was full.
+    // Closed: closed represents whether the subscription has ended.
+
+    private final Filter filter;
+    private final Writer out;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Consumer<Subscription> onClose;
+
+    private final ArrayDeque<Event> pending = new ArrayDeque<>();
+    private final Map<Integer, Event> latestByEntity = new LinkedHashMap<>();
+    private long delivered = 0;
+    private long dropped = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a subscription and starts the thread pushing its events
+     * @param filter filter an event must satisfy to be pushed
+     * @param out connection events are pushed on, one per line
+     * @param capacity number of events that may wait for a slow subscriber, must be positive
+     * @param policy DROP_OLDEST or DROP_NEWEST to give up single events when the queue is full,
+     *               COALESCE to keep only the newest waiting event of each entity
+     * @param onClose called with the subscription once it ends, may be null
+     */
+    public Subscription(Filter filter, OutputStream out, int capacity, OverflowPolicy policy, Consumer<Subscription> onClose) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.filter = filter;
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.onClose = onClose;
+
+        Thread sender = new Thread(this::send, "subscription-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Queues an event to be pushed, without waiting for the subscriber.
+     * If the queue is full, an event is given up according to the overflow policy.
+     * @param event event satisfying the filter of the subscription
+     */
+    public synchronized void offer(Event event) {
+        if (closed) {
+            return;
+        }
+        if (policy == OverflowPolicy.COALESCE) {
+            Integer entityId = event.getEntityId();
+            if (latestByEntity.containsKey(entityId)) {
+                dropped++;
+            } else if (latestByEntity.size() == capacity) {
+                Iterator<Integer> oldest = latestByEntity.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+                dropped++;
+            }
+            latestByEntity.put(entityId, event);
+        } else if (pending.size() < capacity) {
+            pending.addLast(event);
+        } else {
+            dropped++;
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                pending.removeFirst();
+                pending.addLast(event);
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Writes waiting events to the subscriber until the subscription is closed
+     * or the subscriber disconnects
+     */
+    private void send() {
+        List<Event> batch = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (!closed && pending.isEmpty() && latestByEntity.isEmpty()) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    batch.addAll(pending);
+                    batch.addAll(latestByEntity.values());
+                    pending.clear();
+                    latestByEntity.clear();
+                }
+                for (Event event : batch) {
+                    out.write(event.toString());
+                    out.write('\n');
+                }
+                out.flush();
+                synchronized (this) {
+                    delivered += batch.size();
+                }
+                batch.clear();
+            }
+        } catch (IOException e) {
+            // the subscriber disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Ends the subscription and closes its connection
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            latestByEntity.clear();
+            notifyAll();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the connection is gone either way
+        }
+        if (onClose != null) {
+            onClose.accept(this);
+        }
+    }
+
+    /**
+     * @return filter an event must satisfy to be pushed
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return overflow policy of the subscription
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return number of events waiting to be pushed
+     */
+    public synchronized int getQueueLength() {
+        return pending.size() + latestByEntity.size();
+    }
+
+    /**
+     * @return number of events written to the subscriber
+     */
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return number of matching events given up because the subscriber fell behind
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return true if the subscription has ended
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
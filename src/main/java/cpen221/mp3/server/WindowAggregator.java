@@ -0,0 +1,336 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class WindowAggregator {
+
+    // Rep Invariants:
+    //
+    // 1. Positive Length: length must be positive.
+    // 2. One Scope: exactly one of entityId and entityType is not null.
+    // 3. Valid Percentiles: every value of percentiles is in [0, 1], and sorted is null if percentiles is empty.
+    // 4. Two Stacks: the window holds front[frontSize-1..0] followed by back[0..backSize-1], oldest first,
+    //    and count == frontSize + backSize.
+    // 5. Running Extremes: frontMin[i] and frontMax[i] are the smallest and largest of frontValue[0..i],
+    //    and backMin and backMax the smallest and largest of backValue[0..backSize).
+    // 6. Running Totals: sum is the sum of the values in the window, and sorted counts each of them once.
+    // 7. Window Bounds: for SLIDING every timestamp in the window is greater than latest - length,
+    //    for TUMBLING every timestamp is in [windowStart, windowStart + length).
+
+    // Abstraction function:
+    // Maps the internal state of the WindowAggregator class to the sensor values of the events of one entity,
+    // or of one entity type, that fall in the current window, together with their count, mean, min, max
+    // and percentiles.
+    //
+    // Kind: kind represents whether windows follow each other (TUMBLING) or end at the latest event (SLIDING).
+    // Length: length represents the width of a window, in timestamp units.
+    // Entity ID, Entity Type: entityId or entityType represents which events are aggregated.
+    // Percentiles: percentiles represents the fractions whose nearest-rank values are reported.
+    // Front, Back: the two stacks represent the values in the window with their timestamps. Values are pushed
+    //              on back, and popped from front after back is moved over once front is empty, so every value
+    //              moves at most once and min and max stay O(1) per update.
+    // Sum, Count: sum and count are updated as values enter and leave the window.
+    // Sorted: sorted represents the values in the window as a sorted multiset, for percentiles.
+    // Latest: latest represents the largest timestamp added to a SLIDING window.
+    // Window Start: windowStart represents the start of the current TUMBLING window, NaN before the first event.
+    // Closed: closed represents the result of the last complete TUMBLING window, or null if there is none.
+
+    private final WindowKind kind;
+    private final double length;
+    private final Integer entityId;
+    private final String entityType;
+    private final double[] percentiles;
+
+    private double[] frontTime = new double[16];
+    private double[] frontValue = new double[16];
+    private double[] frontMin = new double[16];
+    private double[] frontMax = new double[16];
+    private int frontSize = 0;
+    private double[] backTime = new double[16];
+    private double[] backValue = new double[16];
+    private int backSize = 0;
+    private double backMin = Double.POSITIVE_INFINITY;
+    private double backMax = Double.NEGATIVE_INFINITY;
+
+    private double sum = 0;
+    private long count = 0;
+    private final TreeMap<Double, Integer> sorted;
+    private double latest = Double.NEGATIVE_INFINITY;
+    private double windowStart = Double.NaN;
+    private WindowResult closed = null;
+
+    /**
+     * Creates a window over the sensor values of one entity
+     * @param entityId ID of the entity
+     * @param kind TUMBLING for back-to-back windows, SLIDING for a window ending at the latest event
+     * @param length width of a window in timestamp units, must be positive
+     * @param percentiles fractions between 0 and 1 to report the nearest-rank values of, e.g. 0.5 and 0.99
+     */
+    public WindowAggregator(int entityId, WindowKind kind, double length, double... percentiles) {
+        this(entityId, null, kind, length, percentiles);
+    }
+
+    /**
+     * Creates a window over the sensor values of all entities of one type
+     * @param entityType type of the entities
+     * @param kind TUMBLING for back-to-back windows, SLIDING for a window ending at the latest event
+     * @param length width of a window in timestamp units, must be positive
+     * @param percentiles fractions between 0 and 1 to report the nearest-rank values of, e.g. 0.5 and 0.99
+     */
+    public WindowAggregator(String entityType, WindowKind kind, double length, double... percentiles) {
+        this(null, entityType, kind, length, percentiles);
+    }
+
+    private WindowAggregator(Integer entityId, String entityType, WindowKind kind, double length,
+                             double[] percentiles) {
+        if (!(length > 0)) {
+            throw new IllegalArgumentException("length must be positive");
+        }
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 1)) {
+                throw new IllegalArgumentException("percentiles must be between 0 and 1");
+            }
+        }
+        this.kind = kind;
+        this.length = length;
+        this.entityId = entityId;
+        this.entityType = entityType;
+        this.percentiles = percentiles.clone();
+        this.sorted = percentiles.length == 0 ? null : new TreeMap<>();
+    }
+
+    /**
+     * Creates a window from the data of an ANALYSIS_REGISTER_WINDOW request:
+     * comma-separated Kind, Length, EntityId or EntityType, and optionally Percentiles separated by ';',
+     * e.g. "Kind=SLIDING,Length=60000,EntityType=TempSensor,Percentiles=0.5;0.99"
+     * @param data request data
+     * @return window described by data
+     * @throws IllegalArgumentException if data does not describe a window
+     */
+    public static WindowAggregator parse(String data) {
+        WindowKind kind = null;
+        double length = 0;
+        Integer entityId = null;
+        String entityType = null;
+        double[] percentiles = new double[0];
+        for (String field : data.split(",")) {
+            String[] keyValue = field.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Invalid window field " + field);
+            }
+            String value = keyValue[1].trim();
+            switch (keyValue[0].trim()) {
+                case "Kind":
+                    kind = WindowKind.valueOf(value);
+                    break;
+                case "Length":
+                    length = Double.parseDouble(value);
+                    break;
+                case "EntityId":
+                    entityId = Integer.parseInt(value);
+                    break;
+                case "EntityType":
+                    entityType = value;
+                    break;
+                case "Percentiles":
+                    percentiles = Arrays.stream(value.split(";")).mapToDouble(Double::parseDouble).toArray();
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid window field " + field);
+            }
+        }
+        if (kind == null || (entityId == null) == (entityType == null)) {
+            throw new IllegalArgumentException("A window needs a Kind and one of EntityId and EntityType");
+        }
+        return new WindowAggregator(entityId, entityType, kind, length, percentiles);
+    }
+
+    /**
+     * Adds the value of an event if the window aggregates it. Takes O(1) amortized time,
+     * plus O(log n) for the percentiles of n values. Events are expected roughly in timestamp order:
+     * an event that belongs to a window that has already ended is ignored, and a late event
+     * of a SLIDING window leaves the window together with the events added before it.
+     * @param event event to add
+     * @return true if the value was added to the window
+     */
+    public synchronized boolean add(Event event) {
+        if (!(event instanceof SensorEvent) || !accepts(event)) {
+            return false;
+        }
+        double timeStamp = event.getTimeStamp();
+        if (kind == WindowKind.TUMBLING) {
+            double start = Math.floor(timeStamp / length) * length;
+            if (windowStart != windowStart) {
+                windowStart = start;
+            } else if (start < windowStart) {
+                return false;
+            } else if (start > windowStart) {
+                closed = result();
+                clear();
+                windowStart = start;
+            }
+        } else {
+            if (timeStamp <= latest - length) {
+                return false;
+            }
+            latest = Math.max(latest, timeStamp);
+            while (count > 0 && oldestTime() <= latest - length) {
+                pop();
+            }
+        }
+        push(timeStamp, event.getValueDouble());
+        return true;
+    }
+
+    private boolean accepts(Event event) {
+        return entityId != null ? event.getEntityId() == entityId : entityType.equals(event.getEntityType());
+    }
+
+    /**
+     * Returns the aggregates of the current window: for SLIDING the window ending at the latest event,
+     * for TUMBLING the window holding the latest event, which may still receive events
+     * @return aggregates of the current window
+     */
+    public synchronized WindowResult getResult() {
+        return result();
+    }
+
+    /**
+     * @return aggregates of the last complete TUMBLING window, or null if no window has ended yet
+     */
+    public synchronized WindowResult getClosedResult() {
+        return closed;
+    }
+
+    public WindowKind getKind() {
+        return kind;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    private WindowResult result() {
+        double start;
+        double end;
+        if (kind == WindowKind.TUMBLING) {
+            start = windowStart;
+            end = windowStart + length;
+        } else {
+            start = latest - length;
+            end = latest;
+        }
+        double[] values = new double[percentiles.length];
+        for (int p = 0; p < percentiles.length; p++) {
+            values[p] = percentile(percentiles[p]);
+        }
+        if (count == 0) {
+            return new WindowResult(start, end, 0, Double.NaN, Double.NaN, Double.NaN, percentiles, values);
+        }
+        double min = Math.min(backMin, frontSize == 0 ? Double.POSITIVE_INFINITY : frontMin[frontSize - 1]);
+        double max = Math.max(backMax, frontSize == 0 ? Double.NEGATIVE_INFINITY : frontMax[frontSize - 1]);
+        return new WindowResult(start, end, count, sum / count, min, max, percentiles, values);
+    }
+
+    /**
+     * @return value of nearest rank ceil(fraction * count), NaN if the window is empty
+     */
+    private double percentile(double fraction) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (Map.Entry<Double, Integer> entry : sorted.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return entry.getKey();
+            }
+        }
+        return sorted.lastKey();
+    }
+
+    private void push(double timeStamp, double value) {
+        if (backSize == backTime.length) {
+            backTime = Arrays.copyOf(backTime, backSize * 2);
+            backValue = Arrays.copyOf(backValue, backSize * 2);
+        }
+        backTime[backSize] = timeStamp;
+        backValue[backSize] = value;
+        backSize++;
+        backMin = Math.min(backMin, value);
+        backMax = Math.max(backMax, value);
+        sum += value;
+        count++;
+        if (sorted != null) {
+            sorted.merge(value, 1, Integer::sum);
+        }
+    }
+
+    private double oldestTime() {
+        return frontSize > 0 ? frontTime[frontSize - 1] : backTime[0];
+    }
+
+    private void pop() {
+        if (frontSize == 0) {
+            transfer();
+        }
+        frontSize--;
+        double value = frontValue[frontSize];
+        count--;
+        sum = count == 0 ? 0 : sum - value;
+        if (sorted != null) {
+            sorted.computeIfPresent(value, (v, n) -> n == 1 ? null : n - 1);
+        }
+    }
+
+    /**
+     * Moves back onto front, newest first, so the oldest value ends on top of front
+     */
+    private void transfer() {
+        if (frontTime.length < backSize) {
+            frontTime = new double[backTime.length];
+            frontValue = new double[backTime.length];
+            frontMin = new double[backTime.length];
+            frontMax = new double[backTime.length];
+        }
+        for (int i = backSize - 1; i >= 0; i--) {
+            double value = backValue[i];
+            frontTime[frontSize] = backTime[i];
+            frontValue[frontSize] = value;
+            frontMin[frontSize] = frontSize == 0 ? value : Math.min(value, frontMin[frontSize - 1]);
+            frontMax[frontSize] = frontSize == 0 ? value : Math.max(value, frontMax[frontSize - 1]);
+            frontSize++;
+        }
+        backSize = 0;
+        backMin = Double.POSITIVE_INFINITY;
+        backMax = Double.NEGATIVE_INFINITY;
+    }
+
+    private void clear() {
+        frontSize = 0;
+        backSize = 0;
+        backMin = Double.POSITIVE_INFINITY;
+        backMax = Double.NEGATIVE_INFINITY;
+        sum = 0;
+        count = 0;
+        if (sorted != null) {
+            sorted.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WindowAggregator{" +
+                "Kind=" + getKind() +
+                ",Length=" + getLength() +
+                (entityId != null ? ",EntityId=" + entityId : ",EntityType=" + entityType) +
+                ",Percentiles=" + Arrays.toString(percentiles) +
+                '}';
+    }
+}
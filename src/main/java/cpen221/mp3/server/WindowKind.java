@@ -0,0 +1,6 @@
+package cpen221.mp3.server;
+
+public enum WindowKind {
+    TUMBLING,
+    SLIDING
+}
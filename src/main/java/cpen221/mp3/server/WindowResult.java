@@ -0,0 +1,88 @@
+package cpen221.mp3.server;
+
+import java.util.Arrays;
+
+public class WindowResult {
+
+    // Rep Invariants:
+    //
+    // 1. Matching Percentiles: percentiles and percentileValues have the same length.
+    // 2. Empty Window: if count is 0, mean, min, max and every percentile value are NaN.
+
+    // Abstraction function:
+    // Maps the internal state of the WindowResult class to the aggregates of the sensor values
+    // in one window of a WindowAggregator.
+    //
+    // Start Time, End Time: startTime and endTime represent the time range the window covers.
+    // Count: count represents the number of values in the window.
+    // Mean, Min, Max: mean, min and max represent the average, smallest and largest value.
+    // Percentiles: percentiles represents the requested fractions between 0 and 1, and
+    //              percentileValues the nearest-rank value for each of them.
+
+    private final double startTime;
+    private final double endTime;
+    private final long count;
+    private final double mean;
+    private final double min;
+    private final double max;
+    private final double[] percentiles;
+    private final double[] percentileValues;
+
+    public WindowResult(double startTime, double endTime, long count, double mean, double min, double max,
+                        double[] percentiles, double[] percentileValues) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.count = count;
+        this.mean = mean;
+        this.min = min;
+        this.max = max;
+        this.percentiles = percentiles.clone();
+        this.percentileValues = percentileValues.clone();
+    }
+
+    public double getStartTime() {
+        return startTime;
+    }
+
+    public double getEndTime() {
+        return endTime;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @param i position of a percentile in the list the window was registered with
+     * @return nearest-rank value of the i-th requested percentile, NaN if the window is empty
+     */
+    public double getPercentile(int i) {
+        return percentileValues[i];
+    }
+
+    @Override
+    public String toString() {
+        return "WindowResult{" +
+                "StartTime=" + getStartTime() +
+                ",EndTime=" + getEndTime() +
+                ",Count=" + getCount() +
+                ",Mean=" + getMean() +
+                ",Min=" + getMin() +
+                ",Max=" + getMax() +
+                ",Percentiles=" + Arrays.toString(percentiles) +
+                ",PercentileValues=" + Arrays.toString(percentileValues) +
+                '}';
+    }
+}
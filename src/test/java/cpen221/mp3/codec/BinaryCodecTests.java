@@ -0,0 +1,118 @@
+package cpen221.mp3.codec;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.server.ServerRequest;
+import cpen221.mp3.server.SeverCommandToActuator;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecTests {
+
+    String csvFilePath = "data/tests/single_client_1000_events_out-of-order.csv";
+    CSVEventReader eventReader = new CSVEventReader(csvFilePath);
+    List<Event> eventList = eventReader.readEvents();
+
+    @Test
+    public void testEventRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * eventList.size());
+        for (Event event : eventList) {
+            BinaryCodec.encode(event, buffer);
+        }
+        buffer.flip();
+
+        for (Event expected : eventList) {
+            assertTrue(BinaryCodec.nextRecordLength(buffer) > 0);
+            Event actual = BinaryCodec.decodeEvent(buffer);
+            assertEquals(expected, actual);
+            assertEquals(expected.getValueDouble(), actual.getValueDouble());
+            assertEquals(expected.getValueBoolean(), actual.getValueBoolean());
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testUnknownEntityType() {
+        Event event = new SensorEvent(1.5, 2, 3, "HumiditySensor", 0.25);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodec.encode(event, buffer);
+        buffer.flip();
+        Event actual = BinaryCodec.decodeEvent(buffer);
+        assertEquals("HumiditySensor", actual.getEntityType());
+        assertEquals(0.25, actual.getValueDouble());
+    }
+
+    @Test
+    public void testIncompleteRecord() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodec.encode(new ActuatorEvent(1.0, 0, 7, "Switch", true), buffer);
+        int length = buffer.position();
+        buffer.flip();
+        buffer.limit(length - 1);
+        assertEquals(-1, BinaryCodec.nextRecordLength(buffer));
+        buffer.limit(length);
+        assertEquals(length, BinaryCodec.nextRecordLength(buffer));
+        assertEquals(BinaryCodec.ACTUATOR_EVENT, BinaryCodec.tag(buffer));
+    }
+
+    @Test
+    public void testRequestRoundTrip() {
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_LATEST_EVENTS, "5");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodec.writePreamble(buffer);
+        BinaryCodec.encode(request, 4, buffer);
+        buffer.flip();
+
+        assertTrue(BinaryCodec.isPreambleStart(buffer.get(0)));
+        assertEquals(BinaryCodec.VERSION, BinaryCodec.readPreamble(buffer));
+        assertEquals(BinaryCodec.REQUEST, BinaryCodec.tag(buffer));
+        assertEquals(4, BinaryCodec.requestClientId(buffer));
+        Request actual = BinaryCodec.decodeRequest(buffer);
+        assertEquals(RequestType.ANALYSIS, actual.getRequestType());
+        assertEquals(RequestCommand.ANALYSIS_GET_LATEST_EVENTS, actual.getRequestCommand());
+        assertEquals("5", actual.getRequestData());
+        assertEquals(request.getTimeStamp(), actual.getTimeStamp());
+    }
+
+    @Test
+    public void testRejectsUnknownRequestCommand() {
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_LATEST_EVENTS, "5");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodec.encode(request, 4, buffer);
+        buffer.put(18, (byte) RequestCommand.values().length);
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeRequest(buffer));
+
+        buffer.put(18, (byte) -1);
+        buffer.rewind();
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeRequest(buffer));
+    }
+
+    @Test
+    public void testServerRequestRoundTrip() {
+        ServerRequest request = new ServerRequest(SeverCommandToActuator.SET_STATE, true);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BinaryCodec.encode(request, 0, buffer);
+        buffer.flip();
+        ServerRequest actual = BinaryCodec.decodeServerRequest(buffer);
+        assertEquals(SeverCommandToActuator.SET_STATE, actual.getCommand());
+        assertTrue(actual.getActuatorState());
+        assertEquals(request.getTimeStamp(), actual.getTimeStamp());
+    }
+
+    @Test
+    public void testRejectsUnsupportedVersion() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0x00, 'B', 'W', 99});
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.readPreamble(buffer));
+    }
+}
@@ -0,0 +1,84 @@
+package cpen221.mp3.codec;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEventDeserializer;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.event.SensorEventDeserializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextEventScannerTests {
+
+    String csvFilePath = "data/tests/single_client_1000_events_out-of-order.csv";
+    CSVEventReader eventReader = new CSVEventReader(csvFilePath);
+    List<Event> eventList = eventReader.readEvents();
+
+    @Test
+    public void testMatchesDeserializers() {
+        SensorEventDeserializer sed = new SensorEventDeserializer();
+        for (Event event : eventList) {
+            String text = event.toString();
+            Event expected = text.startsWith("Sensor") ? sed.deserialize(text) : ActuatorEventDeserializer.deserialize(text);
+            Event actual = TextEventScanner.parseEvent(text);
+            assertEquals(expected, actual);
+            assertEquals(event.getTimeStamp(), actual.getTimeStamp());
+            assertEquals(event.getValueDouble(), actual.getValueDouble());
+            assertEquals(event.getValueBoolean(), actual.getValueBoolean());
+        }
+    }
+
+    @Test
+    public void testParseFromBytes() {
+        Event event = eventList.get(3);
+        ByteBuffer bytes = ByteBuffer.wrap(event.toString().getBytes(StandardCharsets.US_ASCII));
+        assertEquals(event, TextEventScanner.parseEvent(bytes));
+        assertEquals(0, bytes.position());
+    }
+
+    @Test
+    public void testParseDoubleMatchesJdk() {
+        Random random = new Random(221);
+        for (int i = 0; i < 100000; i++) {
+            double expected;
+            switch (i % 4) {
+                case 0 -> expected = random.nextDouble() * 40000;
+                case 1 -> expected = Math.round(random.nextDouble() * 1e6) / 1e3;
+                case 2 -> expected = System.currentTimeMillis() + random.nextInt(1000000);
+                default -> expected = Double.longBitsToDouble(random.nextLong());
+            }
+            String text = Double.toString(expected);
+            assertEquals(Double.parseDouble(text), TextEventScanner.parseDouble(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    public void testParseRequestFrame() {
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_LATEST_EVENTS, "12");
+        String frame = "{ClientInfo{ClientID=7}}," + request;
+        assertTrue(TextEventScanner.isRequestFrame(frame));
+        assertEquals(7, TextEventScanner.parseRequestClientId(frame));
+        Request actual = TextEventScanner.parseRequest(frame);
+        assertEquals(RequestType.ANALYSIS, actual.getRequestType());
+        assertEquals(RequestCommand.ANALYSIS_GET_LATEST_EVENTS, actual.getRequestCommand());
+        assertEquals("12", actual.getRequestData());
+        assertEquals(request.getTimeStamp(), actual.getTimeStamp());
+    }
+
+    @Test
+    public void testMalformedEvent() {
+        String text = new SensorEvent(1.0, 0, 1, "TempSensor", 2.0).toString();
+        assertThrows(IllegalArgumentException.class, () -> TextEventScanner.parseEvent(text.substring(0, text.length() - 1)));
+        assertThrows(IllegalArgumentException.class, () -> TextEventScanner.parseEvent("Sensor{TimeStamp=1.0}"));
+    }
+}
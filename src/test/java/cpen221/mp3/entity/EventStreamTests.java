@@ -0,0 +1,62 @@
+package cpen221.mp3.entity;
+
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventStreamTests {
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testGivesUpOnUnreachableEndpoint() throws Exception {
+        EventStream stream = new EventStream(500);
+        stream.setEndpoint("127.0.0.1", closedPort());
+        long start = System.currentTimeMillis();
+        assertFalse(stream.send(new SensorEvent(1, 0, 0, "TempSensor", 20)));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testEndpointChangeReachesRetryingSend() throws Exception {
+        EventStream stream = new EventStream(20000);
+        stream.setEndpoint("127.0.0.1", closedPort());
+        AtomicBoolean sent = new AtomicBoolean();
+        Thread sender = new Thread(() -> {
+            try {
+                sent.set(stream.send(new SensorEvent(1, 0, 0, "TempSensor", 20)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        sender.start();
+        Thread.sleep(300);
+
+        try (ServerSocket server = new ServerSocket(0)) {
+            long start = System.currentTimeMillis();
+            stream.setEndpoint("127.0.0.1", server.getLocalPort());
+            assertTrue(System.currentTimeMillis() - start < 1000);
+            try (Socket connection = server.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+                assertTrue(in.readLine().startsWith("SensorEvent{TimeStamp=1.0"));
+            }
+            sender.join(5000);
+            assertTrue(sent.get());
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.server.Server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineSchedulerTests {
+
+    /**
+     * Message handler whose tasks record the order they run in and wait for the given latch
+     */
+    private static class RecordingHandler extends MessageHandler {
+        private final List<String> order = new ArrayList<>();
+        private final Map<String, Long> durations;
+        private final CountDownLatch done;
+
+        private RecordingHandler(int expected, Map<String, Long> durations) {
+            super(0);
+            this.done = new CountDownLatch(expected);
+            this.durations = durations;
+            setWorkerPool(new WorkerPool(WorkerKind.PLATFORM, 1, 16, RejectionPolicy.BLOCK));
+        }
+
+        @Override
+        Runnable taskFor(Message message, Socket socket) {
+            String name = message.isEvent() ? "event" : message.getRequest().getRequestData();
+            return () -> {
+                synchronized (order) {
+                    order.add(name);
+                }
+                try {
+                    Thread.sleep(durations.getOrDefault(name, 0L));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            };
+        }
+    }
+
+    private Thread schedulerThread;
+
+    private DeadlineScheduler start(MessageHandler handler, int capacity) {
+        DeadlineScheduler scheduler = new DeadlineScheduler(handler, 1, capacity);
+        schedulerThread = new Thread(scheduler);
+        schedulerThread.setDaemon(true);
+        return scheduler;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        schedulerThread.interrupt();
+    }
+
+    private static Server server(int clientId, double maxWaitTime) {
+        Server server = new Server(new Client(clientId, "test@test.com", "127.0.0.1", 4578));
+        server.updateMaxWaitTime(maxWaitTime);
+        return server;
+    }
+
+    private static Message request(Server server, int clientId, String name) {
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES, name);
+        return new Message(request, server, System.currentTimeMillis(), clientId);
+    }
+
+    @Test
+    public void testEarliestDeadlineAcrossClients() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(7, Map.of());
+        DeadlineScheduler scheduler = start(handler, 16);
+        Server patient = server(0, 60);
+        Server urgent = server(1, 5);
+
+        // everything is queued before the scheduler starts dispatching
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit(request(patient, 0, "patient" + i), null);
+            scheduler.submit(request(urgent, 1, "urgent" + i), null);
+        }
+        scheduler.submit(new Message(new SensorEvent(0, 0, 0, "TempSensor", 20), System.currentTimeMillis()), null);
+        assertEquals(7, scheduler.getQueueLength());
+        schedulerThread.start();
+
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("event", "urgent0", "urgent1", "urgent2", "patient0", "patient1", "patient2"),
+                handler.order);
+        assertEquals(7, scheduler.getDispatched());
+        assertEquals(0, scheduler.getViolations());
+    }
+
+    @Test
+    public void testContinuousDraining() throws InterruptedException {
+        int messages = 1000;
+        RecordingHandler handler = new RecordingHandler(messages, Map.of());
+        DeadlineScheduler scheduler = start(handler, 4);
+        schedulerThread.start();
+
+        // producers outpace the backlog of 4 and are slowed down until the worker catches up
+        Server server = server(0, 60);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < messages / 4; i++) {
+                    scheduler.submit(request(server, 0, "request"), null);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        for (Thread producer : producers) {
+            producer.join(10000);
+        }
+
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        assertEquals(messages, scheduler.getDispatched());
+        assertEquals(0, scheduler.getQueueLength());
+    }
+
+    @Test
+    public void testViolationsCountedWhenProcessingStartsLate() throws InterruptedException {
+        RecordingHandler handler = new RecordingHandler(2, Map.of("slow", 600L));
+        DeadlineScheduler scheduler = start(handler, 16);
+        schedulerThread.start();
+
+        // the slow request starts in time and finishes late, which is not a violation,
+        // the request queued behind it starts late, which is
+        scheduler.submit(request(server(0, 0.3), 0, "slow"), null);
+        scheduler.submit(request(server(1, 0.3), 1, "queued"), null);
+
+        assertTrue(handler.done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getViolations());
+        assertEquals(Map.of(1, 1L), scheduler.getViolationsByClient());
+        assertTrue(scheduler.getMaxLateness() > 0);
+    }
+}
@@ -0,0 +1,169 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventLogTests {
+
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+        EventLog log = new EventLog();
+        int threads = 8;
+        int perThread = 20000;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int clientId = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    log.addEvent(new SensorEvent(i, clientId, i, "TempSensor", i));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        int lastSize = 0;
+        while (writers.stream().anyMatch(Thread::isAlive)) {
+            int size = log.size();
+            assertTrue(size >= lastSize);
+            int count = 0;
+            for (Event e : log) {
+                assertNotNull(e);
+                count++;
+            }
+            assertTrue(count >= size);
+            lastSize = size;
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(threads * perThread, log.size());
+        Set<String> seen = new HashSet<>();
+        for (Event e : log) {
+            seen.add(e.getClientId() + ":" + e.getEntityId());
+        }
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    public void testColumnarMatchesRow() {
+        List<Event> events = new CSVEventReader("data/tests/single_client_1000_events_out-of-order.csv").readEvents();
+        EventLog rows = new EventLog(StorageMode.ROW);
+        EventLog columns = new EventLog(StorageMode.COLUMNAR);
+        for (Event e : events) {
+            rows.addEvent(e);
+            columns.addEvent(e);
+        }
+
+        assertEquals(events.size(), columns.size());
+        for (int i = 0; i < events.size(); i++) {
+            Event expected = events.get(i);
+            Event actual = columns.get(i);
+            assertEquals(expected, actual);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(rows.timeStampAt(i), columns.timeStampAt(i));
+            assertEquals(rows.entityIdAt(i), columns.entityIdAt(i));
+            assertEquals(rows.isActuatorAt(i), columns.isActuatorAt(i));
+            assertEquals(rows.valueDoubleAt(i), columns.valueDoubleAt(i));
+            assertEquals(rows.valueBooleanAt(i), columns.valueBooleanAt(i));
+        }
+        assertEquals(rows.getLog(), columns.getLog());
+    }
+
+    @Test
+    public void testTimeIndex() {
+        List<Event> events = new CSVEventReader("data/tests/single_client_1000_events_out-of-order.csv").readEvents();
+        EventLog log = new EventLog(StorageMode.COLUMNAR);
+        for (Event e : events) {
+            log.addEvent(e);
+        }
+
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparingDouble(Event::getTimeStamp));
+        List<Event> byTime = new ArrayList<>();
+        PrimitiveIterator.OfInt ascending = log.indicesByTime(false);
+        while (ascending.hasNext()) {
+            byTime.add(log.get(ascending.nextInt()));
+        }
+        assertEquals(sorted, byTime);
+
+        double start = 5.0;
+        double end = 12.5;
+        List<Event> expected = new ArrayList<>();
+        for (Event e : sorted) {
+            if (e.getTimeStamp() >= start && e.getTimeStamp() <= end) {
+                expected.add(e);
+            }
+        }
+        List<Event> inWindow = new ArrayList<>();
+        PrimitiveIterator.OfInt window = log.indicesInTimeWindow(start, end);
+        while (window.hasNext()) {
+            inWindow.add(log.get(window.nextInt()));
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, inWindow);
+        assertFalse(log.indicesInTimeWindow(end, start).hasNext());
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterAppends() {
+        EventLog log = new EventLog();
+        assertNull(log.getEvent());
+        Event first = new SensorEvent(1, 0, 1, "TempSensor", 1);
+        log.addEvent(first);
+        ArrayList<Event> snapshot = log.getLog();
+        int iterated = 0;
+        for (Event e : log) {
+            log.addEvent(new SensorEvent(2, 0, 2, "TempSensor", 2));
+            iterated++;
+        }
+        assertEquals(1, iterated);
+        assertEquals(1, snapshot.size());
+        assertEquals(2, log.size());
+        assertEquals(first, log.getEvent());
+    }
+
+    @Test
+    public void testDiscardBefore() {
+        EventLog log = new EventLog(StorageMode.COLUMNAR);
+        for (int i = 0; i < 5000; i++) {
+            log.addEvent(new SensorEvent(5000 - i, 0, i, "TempSensor", i));
+        }
+        assertEquals(2048, log.discardBefore(3000));
+        assertEquals(2048, log.getFirstRetained());
+        assertEquals(5000, log.size());
+        assertEquals(2952, log.getLog().size());
+        assertEquals(2048, log.getLog().get(0).getEntityId());
+        assertThrows(IndexOutOfBoundsException.class, () -> log.get(2047));
+
+        List<Integer> byTime = new ArrayList<>();
+        log.indicesByTime(false).forEachRemaining((int i) -> byTime.add(i));
+        assertEquals(2952, byTime.size());
+        assertEquals(4999, byTime.get(0));
+        assertEquals(2048, byTime.get(byTime.size() - 1));
+
+        log.addEvent(new SensorEvent(0, 0, 5000, "TempSensor", 0));
+        assertEquals(5000, log.get(5000).getEntityId());
+        assertEquals(2048, log.discardBefore(100));
+
+        // positions obtained before a discard are skipped, or fail with IndexOutOfBoundsException if read
+        PrimitiveIterator.OfInt ascending = log.indicesByTime(false);
+        assertEquals(5000, ascending.nextInt());
+        assertEquals(4096, log.discardBefore(4500));
+        assertEquals(4999, ascending.nextInt());
+        assertThrows(IndexOutOfBoundsException.class, () -> log.timeStampAt(3000));
+    }
+}
@@ -0,0 +1,93 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.codec.BinaryCodec;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameDecoderTests {
+
+    private static void append(FrameDecoder decoder, String text) {
+        decoder.append(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String text(ByteBuffer frame) {
+        return frame == null ? null : StandardCharsets.UTF_8.decode(frame).toString();
+    }
+
+    @Test
+    public void testPartialFramesAreReassembled() {
+        FrameDecoder decoder = new FrameDecoder();
+        append(decoder, "abc");
+        assertTrue(decoder.negotiate());
+        assertFalse(decoder.isBinary());
+        assertNull(decoder.nextFrame());
+
+        append(decoder, "def\r\nxy");
+        assertEquals("abcdef", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+
+        append(decoder, "z\n");
+        assertEquals("xyz", text(decoder.nextFrame()));
+        assertNull(decoder.nextFrame());
+    }
+
+    @Test
+    public void testManyFramesPerRead() {
+        FrameDecoder decoder = new FrameDecoder();
+        StringBuilder frames = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            frames.append("frame").append(i).append('\n');
+        }
+        append(decoder, frames + "last frame  ");
+        assertTrue(decoder.negotiate());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("frame" + i, text(decoder.nextFrame()));
+        }
+        assertNull(decoder.nextFrame());
+        assertEquals("last frame", text(decoder.remaining()));
+        assertNull(decoder.remaining());
+    }
+
+    @Test
+    public void testBinaryNegotiation() {
+        ByteBuffer stream = ByteBuffer.allocate(1024);
+        BinaryCodec.writePreamble(stream);
+        for (int i = 0; i < 3; i++) {
+            BinaryCodec.encode(new SensorEvent(i, 0, i, "TempSensor", 20 + i), stream);
+        }
+        stream.flip();
+
+        // the preamble and the records arrive one byte at a time
+        FrameDecoder decoder = new FrameDecoder();
+        int records = 0;
+        while (stream.hasRemaining()) {
+            decoder.append(ByteBuffer.wrap(new byte[] {stream.get()}));
+            if (!decoder.negotiate()) {
+                assertTrue(stream.position() < BinaryCodec.PREAMBLE_LENGTH);
+                continue;
+            }
+            assertTrue(decoder.isBinary());
+            ByteBuffer record;
+            while ((record = decoder.nextRecord()) != null) {
+                assertEquals(records, BinaryCodec.decodeEvent(record).getEntityId());
+                records++;
+            }
+        }
+        assertEquals(3, records);
+    }
+
+    @Test
+    public void testOversizedFrameRejected() {
+        FrameDecoder decoder = new FrameDecoder();
+        append(decoder, "x".repeat(FrameDecoder.MAX_FRAME_LENGTH));
+        assertTrue(decoder.negotiate());
+        assertNull(decoder.nextFrame());
+        assertThrows(IllegalStateException.class, () -> append(decoder, "x"));
+    }
+}
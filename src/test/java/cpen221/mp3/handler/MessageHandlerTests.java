@@ -0,0 +1,67 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageHandlerTests {
+
+    private static String reply(MessageHandler handler, Request request, int clientId) throws IOException {
+        Message message = handler.parseFrame("{ClientInfo{ClientID=" + clientId + "}}," + request);
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket client = new Socket("127.0.0.1", listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            handler.taskFor(message, accepted).run();
+            return new BufferedReader(new InputStreamReader(client.getInputStream())).readLine();
+        }
+    }
+
+    @Test
+    public void testGlobalRequestsMergeClients() throws IOException {
+        MessageHandler handler = new MessageHandler(0);
+        for (int clientId = 0; clientId < 2; clientId++) {
+            for (int i = 0; i < 100; i++) {
+                SensorEvent event = new SensorEvent(i, clientId, i % 10, "TempSensor", clientId * 100 + i);
+                handler.taskFor(handler.parseFrame(event.toString()), null).run();
+            }
+        }
+
+        String own = reply(handler, new Request(RequestType.ANALYSIS,
+                RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES, "null"), 0);
+        assertEquals(10, Long.parseLong(own));
+        String all = reply(handler, new Request(RequestType.ANALYSIS,
+                RequestCommand.ANALYSIS_GET_GLOBAL_DISTINCT_ENTITIES, "null"), 0);
+        assertEquals(20, Long.parseLong(all));
+
+        String quantiles = reply(handler, new Request(RequestType.ANALYSIS,
+                RequestCommand.ANALYSIS_GET_GLOBAL_QUANTILES, "EntityType=TempSensor,Quantiles=0;1"), 1);
+        assertEquals("[0.0, 199.0]", quantiles);
+    }
+
+    @Test
+    public void testClientLogsOpenedOnFirstMessage(@TempDir Path directory) throws IOException {
+        MessageHandler handler = new MessageHandler(0);
+        handler.setDataDirectory(directory);
+        assertNotNull(handler.parseFrame(new SensorEvent(1, 3, 1, "TempSensor", 20).toString()));
+        assertTrue(Files.isDirectory(directory.resolve("client-3")));
+
+        // a client whose log cannot be opened loses its message, other clients are unaffected
+        Files.createFile(directory.resolve("client-4"));
+        assertNull(handler.parseFrame(new SensorEvent(1, 4, 1, "TempSensor", 20).toString()));
+        assertNotNull(handler.parseFrame(new SensorEvent(2, 3, 1, "TempSensor", 20).toString()));
+    }
+}
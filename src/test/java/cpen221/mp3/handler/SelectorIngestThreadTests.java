@@ -0,0 +1,183 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.codec.BinaryCodec;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorIngestThreadTests {
+
+    /**
+     * Message handler that records scheduled messages instead of processing them
+     */
+    private static class RecordingHandler extends MessageHandler {
+        private final BlockingQueue<Message> events = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Socket> replies = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Message> requests = new LinkedBlockingQueue<>();
+
+        private RecordingHandler() {
+            super(0);
+        }
+
+        @Override
+        void schedule(Message message, Socket socket) {
+            if (message.isEvent()) {
+                events.add(message);
+            } else {
+                requests.add(message);
+                if (socket != null) {
+                    replies.add(socket);
+                }
+            }
+        }
+    }
+
+    private RecordingHandler handler;
+    private SelectorIngestThread ingest;
+    private Thread ingestThread;
+    private ServerSocketChannel listener;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        handler = new RecordingHandler();
+        ingest = new SelectorIngestThread(handler);
+        ingestThread = new Thread(ingest);
+        ingestThread.setDaemon(true);
+        ingestThread.start();
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        ingestThread.interrupt();
+        listener.close();
+    }
+
+    private Socket connect() throws IOException {
+        Socket client = new Socket("127.0.0.1", listener.socket().getLocalPort());
+        SocketChannel accepted = listener.accept();
+        accepted.configureBlocking(false);
+        ingest.register(accepted);
+        return client;
+    }
+
+    private static String requestFrame(RequestCommand command) {
+        return "{ClientInfo{ClientID=0}}," + new Request(RequestType.ANALYSIS, command, "null");
+    }
+
+    private Set<Integer> takeEntityIds(int count) throws InterruptedException {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            Message message = handler.events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message, "only " + i + " of " + count + " events forwarded");
+            ids.add(message.getEvent().getEntityId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testTextFramesSplitAcrossWrites() throws IOException, InterruptedException {
+        try (Socket client = connect()) {
+            OutputStream out = client.getOutputStream();
+            String event = new SensorEvent(1, 0, 7, "TempSensor", 20).toString();
+            out.write(event.substring(0, 10).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(50);
+            out.write((event.substring(10) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(Set.of(7), takeEntityIds(1));
+        }
+    }
+
+    @Test
+    public void testManyFramesPerRead() throws IOException, InterruptedException {
+        StringBuilder frames = new StringBuilder();
+        Set<Integer> sent = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            frames.append(new SensorEvent(i, 0, i, "TempSensor", 20)).append('\n');
+            sent.add(i);
+        }
+        try (Socket client = connect()) {
+            client.getOutputStream().write(frames.toString().getBytes(StandardCharsets.UTF_8));
+            client.getOutputStream().flush();
+            assertEquals(sent, takeEntityIds(200));
+        }
+    }
+
+    @Test
+    public void testBinaryRecords() throws IOException, InterruptedException {
+        ByteBuffer stream = ByteBuffer.allocate(4096);
+        BinaryCodec.writePreamble(stream);
+        for (int i = 0; i < 50; i++) {
+            BinaryCodec.encode(new SensorEvent(i, 0, i, "TempSensor", 20), stream);
+        }
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES, "null");
+        BinaryCodec.encode(request, 0, stream);
+        stream.flip();
+        try (Socket client = connect()) {
+            client.getOutputStream().write(stream.array(), 0, stream.limit());
+            client.getOutputStream().flush();
+            assertEquals(50, takeEntityIds(50).size());
+            Message message = handler.requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES, message.getRequest().getRequestCommand());
+        }
+    }
+
+    @Test
+    public void testFramesAfterRequestAreForwarded() throws IOException, InterruptedException {
+        String frames = new SensorEvent(1, 0, 1, "TempSensor", 20) + "\n"
+                + requestFrame(RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES) + "\n"
+                + new SensorEvent(2, 0, 2, "TempSensor", 20) + "\n"
+                + requestFrame(RequestCommand.ANALYSIS_GET_QUANTILES) + "\n"
+                + new SensorEvent(3, 0, 3, "TempSensor", 20) + "\n";
+        try (Socket client = connect()) {
+            client.getOutputStream().write(frames.getBytes(StandardCharsets.UTF_8));
+            client.getOutputStream().flush();
+
+            assertEquals(Set.of(1, 2, 3), takeEntityIds(3));
+            Set<RequestCommand> commands = new HashSet<>();
+            for (int i = 0; i < 2; i++) {
+                Message message = handler.requests.poll(5, TimeUnit.SECONDS);
+                assertNotNull(message);
+                commands.add(message.getRequest().getRequestCommand());
+            }
+            assertEquals(Set.of(RequestCommand.ANALYSIS_GET_DISTINCT_ENTITIES,
+                    RequestCommand.ANALYSIS_GET_QUANTILES), commands);
+
+            // the first request is answered on the connection, in blocking mode
+            Socket reply = handler.replies.poll(5, TimeUnit.SECONDS);
+            assertNotNull(reply);
+            assertTrue(handler.replies.isEmpty());
+            PrintWriter out = new PrintWriter(reply.getOutputStream(), true);
+            out.println("20");
+            reply.close();
+            assertEquals("20", new BufferedReader(new InputStreamReader(client.getInputStream())).readLine());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cpen221.mp3.handler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkerPoolTests {
+
+    @Test
+    public void testRunsAllTasks() throws InterruptedException {
+        WorkerPool pool = new WorkerPool(WorkerKind.PLATFORM, 4, 16, RejectionPolicy.BLOCK);
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(pool.submit(count::incrementAndGet));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, count.get());
+        assertEquals(1000, pool.getCompletedTasks());
+        assertEquals(0, pool.getRejectedTasks());
+    }
+
+    @Test
+    public void testFullPoolPolicies() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Runnable blocker = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        WorkerPool drop = new WorkerPool(WorkerKind.PLATFORM, 1, 1, RejectionPolicy.DROP);
+        assertTrue(drop.submit(blocker));
+        started.await();
+        assertTrue(drop.submit(blocker));
+        assertEquals(1, drop.getActiveWorkers());
+        assertEquals(1, drop.getQueueLength());
+        assertFalse(drop.submit(blocker));
+        assertEquals(1, drop.getRejectedTasks());
+
+        WorkerPool abort = new WorkerPool(WorkerKind.PLATFORM, 1, 0, RejectionPolicy.ABORT);
+        assertTrue(abort.submit(blocker));
+        assertThrows(RejectedExecutionException.class, () -> abort.submit(blocker));
+
+        WorkerPool callerRuns = new WorkerPool(WorkerKind.PLATFORM, 1, 0, RejectionPolicy.CALLER_RUNS);
+        assertTrue(callerRuns.submit(blocker));
+        Thread caller = Thread.currentThread();
+        AtomicInteger ranOnCaller = new AtomicInteger();
+        assertTrue(callerRuns.submit(() -> {
+            if (Thread.currentThread() == caller) {
+                ranOnCaller.incrementAndGet();
+            }
+        }));
+        assertEquals(1, ranOnCaller.get());
+        assertEquals(1, callerRuns.getCallerRunsTasks());
+
+        release.countDown();
+        drop.shutdown();
+        abort.shutdown();
+        callerRuns.shutdown();
+    }
+
+    @Test
+    public void testVirtualFallsBackWhenUnsupported() throws InterruptedException {
+        WorkerPool pool = new WorkerPool(WorkerKind.VIRTUAL, 2, 8, RejectionPolicy.BLOCK);
+        CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            pool.submit(done::countDown);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(pool.getKind());
+        pool.shutdown();
+    }
+}
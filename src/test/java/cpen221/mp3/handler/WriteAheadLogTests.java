@@ -0,0 +1,127 @@
+package cpen221.mp3.handler;
+
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogTests {
+
+    private static Event eventAt(int i) {
+        if (i % 3 == 0) {
+            return new ActuatorEvent(i, 7, i % 10, "Switch", i % 2 == 0);
+        }
+        return new SensorEvent(i, 7, i % 10, "TempSensor", i * 0.5);
+    }
+
+    @Test
+    public void testRecoverAcrossSegments(@TempDir Path directory) throws IOException {
+        List<Event> expected = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, 5, e -> fail("empty log"))) {
+            for (int i = 0; i < 1000; i++) {
+                Event event = eventAt(i);
+                expected.add(event);
+                assertEquals(i + 1, wal.append(event));
+            }
+            wal.sync();
+            assertEquals(1000, wal.getDurable());
+            assertTrue(wal.getSegments().size() > 1);
+        }
+
+        List<Event> recovered = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 4096, 5, recovered::add)) {
+            assertEquals(expected, recovered);
+            assertEquals(1001, wal.append(eventAt(1000)));
+        }
+    }
+
+    @Test
+    public void testTornTailIsTruncated(@TempDir Path directory) throws IOException {
+        Path segment;
+        try (WriteAheadLog wal = new WriteAheadLog(directory, e -> { })) {
+            for (int i = 0; i < 10; i++) {
+                wal.append(eventAt(i));
+            }
+            segment = wal.getSegments().get(0);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<Event> recovered = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(directory, recovered::add)) {
+            assertEquals(9, recovered.size());
+            wal.append(eventAt(42));
+        }
+
+        recovered.clear();
+        new WriteAheadLog(directory, recovered::add).close();
+        assertEquals(10, recovered.size());
+        assertEquals(eventAt(42), recovered.get(9));
+    }
+
+    @Test
+    public void testSealedSegmentWindows(@TempDir Path directory) throws IOException {
+        List<Event> appended = new ArrayList<>();
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 8192, 5, e -> { })) {
+            for (int i = 0; i < 2000; i++) {
+                // timestamps mostly increase, with some events arriving late
+                Event event = new SensorEvent(i % 7 == 0 ? i - 150 : i, 1, i % 5, "TempSensor", i);
+                appended.add(event);
+                wal.append(event);
+            }
+            List<SealedSegment> sealed = wal.getSealedSegments();
+            assertEquals(wal.getSegments().size() - 1, sealed.size());
+
+            double[][] windows = {{100, 400}, {-200, 0}, {1500.5, 1500.5}, {1700, 1500}, {0, 5000}};
+            for (double[] window : windows) {
+                List<Long> found = new ArrayList<>();
+                StringBuilder text = new StringBuilder();
+                for (SealedSegment segment : sealed) {
+                    segment.forEachInWindow(window[0], window[1], (timeStamp, index, position) -> {
+                        found.add(index);
+                        segment.appendEventText(position, text.append('|'));
+                    });
+                }
+                List<Long> expected = new ArrayList<>();
+                StringBuilder expectedText = new StringBuilder();
+                long sealedEvents = sealed.get(sealed.size() - 1).getFirstIndex() + sealed.get(sealed.size() - 1).size();
+                for (int i = 0; i < sealedEvents; i++) {
+                    double timeStamp = appended.get(i).getTimeStamp();
+                    if (timeStamp >= window[0] && timeStamp <= window[1]) {
+                        expected.add((long) i);
+                        expectedText.append('|').append(appended.get(i));
+                    }
+                }
+                assertEquals(expected, found);
+                assertEquals(expectedText.toString(), text.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testEventLogReopens(@TempDir Path directory) throws IOException {
+        EventLog log = EventLog.open(directory, StorageMode.COLUMNAR);
+        for (int i = 0; i < 2500; i++) {
+            log.addEvent(eventAt(i));
+        }
+        log.sync();
+        List<Event> before = log.getLog();
+        log.close();
+
+        EventLog reopened = EventLog.open(directory, StorageMode.ROW);
+        assertEquals(before, reopened.getLog());
+        reopened.close();
+    }
+}
@@ -0,0 +1,143 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.entity.Actuator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActuatorChannelPoolTests {
+
+    @Test
+    public void testPipelinedCommandsShareOneConnection() throws Exception {
+        Actuator actuator = new Actuator(98, 0, "Switch", false);
+        AtomicInteger connections = new AtomicInteger();
+        try (ServerSocket commandSocket = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                while (true) {
+                    Socket socket;
+                    try {
+                        socket = commandSocket.accept();
+                    } catch (IOException e) {
+                        return;
+                    }
+                    connections.incrementAndGet();
+                    new Thread(() -> actuator.handle(socket)).start();
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            ActuatorChannelPool pool = new ActuatorChannelPool();
+            List<CompletableFuture<Boolean>> acks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                acks.add(pool.send("127.0.0.1", commandSocket.getLocalPort(), 0,
+                        new ServerRequest(SeverCommandToActuator.TOGGLE_STATE)));
+            }
+            for (int i = 0; i < acks.size(); i++) {
+                assertEquals(i % 2 == 0, acks.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(pool.send("127.0.0.1", commandSocket.getLocalPort(), 0,
+                    new ServerRequest(SeverCommandToActuator.SET_STATE, true)).get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, connections.get());
+            assertEquals(1, pool.size());
+            assertTrue(actuator.getState());
+            pool.close();
+            assertEquals(0, pool.size());
+        }
+    }
+
+    @Test
+    public void testUnreachableActuator() throws IOException, InterruptedException, TimeoutException {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+        ActuatorChannelPool pool = new ActuatorChannelPool();
+        CompletableFuture<Boolean> ack = pool.send("127.0.0.1", port, 0,
+                new ServerRequest(SeverCommandToActuator.TOGGLE_STATE));
+        assertThrows(ExecutionException.class, () -> ack.get(5, TimeUnit.SECONDS));
+        assertEquals(0, pool.size());
+
+        // commands sent right after a failed connect fail at once instead of connecting again
+        CompletableFuture<Boolean> retry = pool.send("127.0.0.1", port, 0,
+                new ServerRequest(SeverCommandToActuator.TOGGLE_STATE));
+        assertTrue(retry.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testStalledActuatorDoesNotBlockSender() throws IOException, InterruptedException {
+        try (ServerSocket commandSocket = new ServerSocket()) {
+            commandSocket.setReceiveBufferSize(4096);
+            commandSocket.bind(new InetSocketAddress("127.0.0.1", 0));
+            ActuatorChannelPool pool = new ActuatorChannelPool(1000, 16);
+            pool.send("127.0.0.1", commandSocket.getLocalPort(), 0,
+                    new ServerRequest(SeverCommandToActuator.TOGGLE_STATE));
+
+            // the actuator accepts the connection but never reads a command
+            try (Socket stalled = commandSocket.accept()) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (pool.size() == 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(1, pool.size());
+
+                long start = System.nanoTime();
+                boolean rejected = false;
+                for (int i = 0; i < 1_000_000 && !rejected; i++) {
+                    rejected = pool.send("127.0.0.1", commandSocket.getLocalPort(), 0,
+                            new ServerRequest(SeverCommandToActuator.TOGGLE_STATE)).isCompletedExceptionally();
+                }
+                assertTrue(rejected);
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+                pool.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedCommandIsSkipped() throws IOException {
+        Actuator actuator = new Actuator(97, 0, "Switch", false);
+        try (ServerSocket commandSocket = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                try {
+                    actuator.handle(commandSocket.accept());
+                } catch (IOException e) {
+                    // the test failed to connect
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            try (Socket socket = new Socket("127.0.0.1", commandSocket.getLocalPort())) {
+                Writer out = new OutputStreamWriter(socket.getOutputStream());
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                out.write("0{ServerRequest{Command=EXPLODE,State=true}}\n");
+                out.write("0{not a command}\n");
+                out.write("0{" + new ServerRequest(SeverCommandToActuator.SET_STATE, true) + "}\n");
+                out.flush();
+                assertEquals("false", in.readLine());
+                assertEquals("false", in.readLine());
+                assertEquals("true", in.readLine());
+            }
+            assertTrue(actuator.getState());
+        }
+    }
+}
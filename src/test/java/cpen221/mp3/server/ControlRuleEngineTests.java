@@ -0,0 +1,93 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.entity.Actuator;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ControlRuleEngineTests {
+
+    Actuator valve = new Actuator(60, 0, "Switch", false);
+    Actuator otherClientValve = new Actuator(61, 1, "Switch", false);
+    Filter hot = new Filter("value", DoubleOperator.GREATER_THAN, 30);
+
+    @Test
+    public void testRulesFireOnLatestEvent() {
+        ControlRuleEngine engine = new ControlRuleEngine(0);
+        ControlRule set = new ControlRule(hot, valve, SeverCommandToActuator.SET_STATE);
+        ControlRule other = new ControlRule(hot, otherClientValve, SeverCommandToActuator.SET_STATE);
+        engine.register(set);
+        engine.register(other);
+
+        assertEquals(List.of(set), engine.observe(new SensorEvent(2, 0, 1, "TempSensor", 31)));
+        assertTrue(engine.observe(new SensorEvent(3, 0, 1, "TempSensor", 20)).isEmpty());
+        // arrives late, so it is not the latest event
+        assertTrue(engine.observe(new SensorEvent(1, 0, 1, "TempSensor", 40)).isEmpty());
+        assertEquals(3, engine.getLatestEvent().getTimeStamp());
+        assertEquals(2, engine.getEvaluations());
+
+        assertTrue(engine.remove(set));
+        assertTrue(engine.observe(new SensorEvent(4, 0, 1, "TempSensor", 35)).isEmpty());
+        assertEquals(1, engine.getRuleCount());
+    }
+
+    @Test
+    public void testToggleNeedsActuatorEvent() {
+        ControlRuleEngine engine = new ControlRuleEngine(0);
+        ControlRule toggle = new ControlRule(hot, valve, SeverCommandToActuator.TOGGLE_STATE);
+        engine.register(toggle);
+
+        assertTrue(engine.observe(new SensorEvent(1, 0, 1, "TempSensor", 31)).isEmpty());
+        assertFalse(engine.hasSeen(60));
+        engine.observe(new ActuatorEvent(2, 0, 60, "Switch", true));
+        assertTrue(engine.hasSeen(60));
+        assertEquals(List.of(toggle), engine.observe(new SensorEvent(3, 0, 1, "TempSensor", 31)));
+    }
+
+    @Test
+    public void testSetRuleChecksLatestEventOnRegister() {
+        ControlRuleEngine engine = new ControlRuleEngine(0);
+        Filter warm = new Filter("value", DoubleOperator.GREATER_THAN, 20);
+        assertTrue(engine.register(new ControlRule(warm, valve, SeverCommandToActuator.SET_STATE)).isEmpty());
+        engine.observe(new SensorEvent(1, 0, 1, "TempSensor", 31));
+
+        ControlRule set = new ControlRule(hot, valve, SeverCommandToActuator.SET_STATE);
+        assertEquals(List.of(set), engine.register(set));
+        assertTrue(engine.register(new ControlRule(hot, otherClientValve, SeverCommandToActuator.SET_STATE)).isEmpty());
+        // the valve has not sent an event yet
+        assertTrue(engine.register(new ControlRule(hot, valve, SeverCommandToActuator.TOGGLE_STATE)).isEmpty());
+    }
+
+    @Test
+    public void testToggleRuleChecksLatestEventOnRegister() {
+        ControlRuleEngine engine = new ControlRuleEngine(0);
+        engine.observe(new ActuatorEvent(1, 0, 60, "Switch", false));
+        engine.observe(new SensorEvent(2, 0, 1, "TempSensor", 31));
+
+        ControlRule toggle = new ControlRule(hot, valve, SeverCommandToActuator.TOGGLE_STATE);
+        assertEquals(List.of(toggle), engine.register(toggle));
+    }
+
+    @Test
+    public void testDuplicateRulesRegisteredOnce() {
+        ControlRuleEngine engine = new ControlRuleEngine(0);
+        engine.observe(new SensorEvent(1, 0, 1, "TempSensor", 31));
+        Filter sameHot = new Filter("value", DoubleOperator.GREATER_THAN, 30);
+
+        assertEquals(1, engine.register(new ControlRule(hot, valve, SeverCommandToActuator.SET_STATE)).size());
+        assertTrue(engine.register(new ControlRule(sameHot, valve, SeverCommandToActuator.SET_STATE)).isEmpty());
+        engine.register(new ControlRule(hot, valve, SeverCommandToActuator.TOGGLE_STATE));
+        assertEquals(2, engine.getRuleCount());
+        assertEquals(1, engine.observe(new SensorEvent(2, 0, 1, "TempSensor", 32)).size());
+
+        // an equal rule removes the registered one, even with a different filter instance
+        assertTrue(engine.remove(new ControlRule(sameHot, valve, SeverCommandToActuator.SET_STATE)));
+        assertFalse(engine.remove(new ControlRule(sameHot, valve, SeverCommandToActuator.SET_STATE)));
+        assertEquals(1, engine.getRuleCount());
+    }
+}
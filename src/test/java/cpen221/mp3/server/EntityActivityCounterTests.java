@@ -0,0 +1,59 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.event.Event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntityActivityCounterTests {
+
+    @Test
+    public void testMatchesRecount() {
+        List<Event> events = new CSVEventReader("data/tests/single_client_1000_events_out-of-order.csv").readEvents();
+        EntityActivityCounter counter = new EntityActivityCounter();
+        Map<Integer, Integer> frequencies = new HashMap<>();
+        for (Event e : events) {
+            counter.increment(e.getEntityId());
+            frequencies.merge(e.getEntityId(), 1, Integer::sum);
+            assertEquals(expectedTopK(frequencies, 1).get(0), counter.mostActive());
+        }
+        assertEquals(frequencies.size(), counter.size());
+        assertEquals(expectedTopK(frequencies, 10), counter.topK(10));
+        assertEquals(expectedTopK(frequencies, frequencies.size()), counter.topK(frequencies.size() + 5));
+    }
+
+    @Test
+    public void testManyEntities() {
+        EntityActivityCounter counter = new EntityActivityCounter();
+        Map<Integer, Integer> frequencies = new HashMap<>();
+        Random random = new Random(221);
+        for (int i = 0; i < 50000; i++) {
+            int entityId = random.nextInt(5000) - 2500;
+            counter.increment(entityId);
+            frequencies.merge(entityId, 1, Integer::sum);
+        }
+        assertEquals(expectedTopK(frequencies, 25), counter.topK(25));
+        for (Map.Entry<Integer, Integer> entry : frequencies.entrySet()) {
+            assertEquals(entry.getValue(), counter.count(entry.getKey()));
+        }
+        assertFalse(counter.contains(10000));
+        assertEquals(0, new EntityActivityCounter().mostActive());
+    }
+
+    private static List<Integer> expectedTopK(Map<Integer, Integer> frequencies, int k) {
+        List<Integer> ids = new ArrayList<>(frequencies.keySet());
+        ids.sort((a, b) -> {
+            int byCount = Integer.compare(frequencies.get(b), frequencies.get(a));
+            return byCount != 0 ? byCount : Integer.compare(b, a);
+        });
+        return ids.subList(0, Math.min(k, ids.size()));
+    }
+}
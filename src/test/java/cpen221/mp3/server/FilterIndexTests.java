@@ -0,0 +1,81 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FilterIndexTests {
+
+    List<Event> eventList = new CSVEventReader("data/tests/single_client_1000_events_in-order.csv").readEvents();
+
+    @Test
+    public void testMatchesEveryRule() {
+        Random random = new Random(221);
+        List<Filter> leaves = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            DoubleOperator operator = DoubleOperator.values()[random.nextInt(DoubleOperator.values().length)];
+            if (random.nextBoolean()) {
+                leaves.add(new Filter("value", operator, random.nextInt(3) == 0
+                        ? eventList.get(random.nextInt(eventList.size())).getValueDouble()
+                        : 15 + random.nextDouble() * 20));
+            } else {
+                leaves.add(new Filter("timestamp", operator, random.nextInt(3) == 0
+                        ? eventList.get(random.nextInt(eventList.size())).getTimeStamp()
+                        : random.nextDouble() * 30));
+            }
+        }
+        for (BooleanOperator operator : BooleanOperator.values()) {
+            leaves.add(new Filter(operator, true));
+            leaves.add(new Filter(operator, false));
+        }
+
+        List<Filter> filters = new ArrayList<>(leaves);
+        for (int i = 0; i < 100; i++) {
+            List<Filter> parts = new ArrayList<>();
+            int size = 2 + random.nextInt(3);
+            for (int j = 0; j < size; j++) {
+                parts.add(leaves.get(random.nextInt(leaves.size())));
+            }
+            filters.add(new Filter(parts));
+        }
+
+        FilterIndex<Integer> index = new FilterIndex<>();
+        for (int i = 0; i < filters.size(); i++) {
+            index.add(filters.get(i), i);
+        }
+        assertEquals(filters.size(), index.size());
+
+        for (Event event : eventList) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < filters.size(); i++) {
+                if (filters.get(i).satisfies(event)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = index.matches(event);
+            Collections.sort(actual);
+            assertEquals(expected, actual, event.toString());
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        Filter hot = new Filter("value", DoubleOperator.GREATER_THAN, 30);
+        FilterIndex<String> index = new FilterIndex<>();
+        index.add(hot, "alarm");
+        Event event = new SensorEvent(1, 0, 1, "TempSensor", 31);
+        assertEquals(List.of("alarm"), index.matches(event));
+        assertTrue(index.remove(hot, "alarm"));
+        assertFalse(index.remove(hot, "alarm"));
+        assertTrue(index.matches(event).isEmpty());
+    }
+}
@@ -4,6 +4,8 @@ import cpen221.mp3.CSVEventReader;
 import cpen221.mp3.event.ActuatorEvent;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
+import cpen221.mp3.handler.EventLog;
+import cpen221.mp3.handler.StorageMode;
 import static cpen221.mp3.server.BooleanOperator.EQUALS;
 import static cpen221.mp3.server.DoubleOperator.GREATER_THAN_OR_EQUALS;
 import static cpen221.mp3.server.DoubleOperator.LESS_THAN;
@@ -11,6 +13,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
 
 import org.junit.jupiter.api.Test;
 
@@ -131,6 +135,74 @@ public class FilterTests{
         assertEquals(filteredEvents, complexFilter.sift(eventsList));
     }
 
+    @Test
+    public void testCompiledMatchesSatisfies() {
+        for (Filter filter : randomFilters()) {
+            Predicate<Event> compiled = filter.compile();
+            for (Event event : eventList) {
+                assertEquals(filter.satisfies(event), compiled.test(event), filter.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testSelectMatchesSatisfies() {
+        int length = eventList.size();
+        double[] timeStamps = new double[length];
+        double[] values = new double[length];
+        long[] actuators = new long[(length + 63) / 64];
+        long[] booleans = new long[(length + 63) / 64];
+        for (int i = 0; i < length; i++) {
+            Event event = eventList.get(i);
+            timeStamps[i] = event.getTimeStamp();
+            values[i] = event.getValueDouble();
+            if (event instanceof ActuatorEvent) {
+                actuators[i / 64] |= 1L << i;
+            }
+            if (event.getValueBoolean()) {
+                booleans[i / 64] |= 1L << i;
+            }
+        }
+
+        EventLog log = new EventLog(StorageMode.COLUMNAR);
+        for (Event event : eventList) {
+            log.addEvent(event);
+        }
+
+        for (Filter filter : randomFilters()) {
+            long[] selection = filter.select(length, timeStamps, values, actuators, booleans);
+            for (int i = 0; i < length; i++) {
+                boolean selected = (selection[i / 64] & (1L << i)) != 0;
+                assertEquals(filter.satisfies(eventList.get(i)), selected, filter.toString());
+            }
+            assertEquals(filter.sift(eventList), log.sift(filter));
+        }
+    }
+
+    private List<Filter> randomFilters() {
+        Random random = new Random(221);
+        List<Filter> leaves = new ArrayList<>();
+        for (DoubleOperator operator : DoubleOperator.values()) {
+            leaves.add(new Filter("value", operator, 20 + random.nextDouble() * 10));
+            leaves.add(new Filter("timestamp", operator, random.nextDouble() * 30));
+        }
+        for (BooleanOperator operator : BooleanOperator.values()) {
+            leaves.add(new Filter(operator, true));
+            leaves.add(new Filter(operator, false));
+        }
+
+        List<Filter> filters = new ArrayList<>(leaves);
+        for (int i = 0; i < 50; i++) {
+            List<Filter> parts = new ArrayList<>();
+            int size = 1 + random.nextInt(5);
+            for (int j = 0; j < size; j++) {
+                parts.add(leaves.get(random.nextInt(leaves.size())));
+            }
+            filters.add(new Filter(parts));
+        }
+        return filters;
+    }
+
     
 }
 
@@ -0,0 +1,60 @@
+package cpen221.mp3.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OnlinePredictorTests {
+
+    @Test
+    public void testMatchesPredictor() {
+        Random random = new Random(221);
+        for (int trial = 0; trial < 2000; trial++) {
+            int length = 1 + random.nextInt(trial % 4 == 0 ? 500 : 8);
+            List<Double> values = new ArrayList<>();
+            OnlinePredictor online = new OnlinePredictor();
+            for (int i = 0; i < length; i++) {
+                double value;
+                if (trial % 5 == 0) {
+                    value = i % 2 == 0 ? 1.0 : 2.0;
+                } else if (trial % 7 == 0) {
+                    value = random.nextInt(3);
+                } else {
+                    value = random.nextGaussian() * 100;
+                }
+                values.add(value);
+                online.add(value);
+            }
+            int n = 1 + random.nextInt(10);
+            List<Double> expected = new Predictor(0, n, values).predict();
+            assertEquals(expected, online.predict(n));
+        }
+    }
+
+    @Test
+    public void testExtrapolateArray() {
+        double[] history = new double[100_000];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 3 * i + 1;
+        }
+        double[] predicted = Predictor.extrapolate(history, history.length, 3);
+        assertEquals(3, predicted.length);
+        for (int i = 0; i < predicted.length; i++) {
+            assertEquals(3 * (history.length + i) + 1, predicted[i], 1e-3);
+        }
+
+        List<Double> boxed = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            boxed.add(history[i]);
+        }
+        List<Double> fromList = Predictor.extrapolate(boxed, 3);
+        double[] fromArray = Predictor.extrapolate(history, 1000, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(fromArray[i], fromList.get(i));
+        }
+    }
+}
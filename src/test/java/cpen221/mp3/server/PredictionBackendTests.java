@@ -0,0 +1,69 @@
+package cpen221.mp3.server;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PredictionBackendTests {
+
+    @Test
+    public void testLocalBackend() {
+        LocalPredictionBackend local = new LocalPredictionBackend();
+        assertEquals(List.of(2.0, 1.0, 2.0), local.predict(0, 3, List.of(2.0, 1.0, 2.0, 1.0)));
+        assertTrue(local.predict(0, 3, new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void testRemoteBackendMatchesLocal() throws IOException {
+        List<String> methods = new ArrayList<>();
+        HttpServer stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.createContext("/predict", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            String form = exchange.getRequestMethod().equals("POST")
+                    ? new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+                    : exchange.getRequestURI().getRawQuery();
+            Map<String, String> params = new HashMap<>();
+            for (String pair : form.split("&")) {
+                String[] kv = pair.split("=", 2);
+                params.put(kv[0], URLDecoder.decode(kv[1], StandardCharsets.UTF_8));
+            }
+            List<Double> prediction = new LocalPredictionBackend().predict(Integer.parseInt(params.get("param1")),
+                    Integer.parseInt(params.get("param2")), RemotePredictionBackend.parseValues(params.get("param3")));
+            byte[] body = prediction.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stub.start();
+        try {
+            PredictionBackend remote = new RemotePredictionBackend(
+                    "http://127.0.0.1:" + stub.getAddress().getPort() + "/predict");
+            PredictionBackend local = new LocalPredictionBackend();
+
+            List<Double> shortHistory = List.of(0.0, 1.0, 2.0, 3.0);
+            assertEquals(local.predict(5, 3, shortHistory), remote.predict(5, 3, shortHistory));
+
+            List<Double> longHistory = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                longHistory.add(20 + Math.sin(i) * 3.14159);
+            }
+            assertEquals(local.predict(5, 10, longHistory), remote.predict(5, 10, longHistory));
+            assertEquals(List.of("GET", "POST"), methods);
+        } finally {
+            stub.stop(0);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecentEventsTests {
+
+    @Test
+    public void testMatchesFullScan() {
+        Random random = new Random(221);
+        RecentEvents recent = new RecentEvents(16);
+        Server server = new Server(new Client(0, "test@test.com", "127.0.0.1", 4578));
+        List<Event> added = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // mostly in order, with late events and repeated timestamps
+            double timeStamp = random.nextInt(10) == 0 ? random.nextInt(Math.max(1, i / 2)) : i / 2;
+            Event event = new SensorEvent(timeStamp, 0, random.nextInt(20), "TempSensor", i);
+            recent.add(event);
+            added.add(event);
+
+            // checkDuplicate keeps the first event with the largest entity ID of each timestamp, like RecentEvents
+            List<Event> deduplicated = server.checkDuplicate(added);
+            List<Event> expected = deduplicated.subList(Math.max(0, deduplicated.size() - 10), deduplicated.size());
+            assertEquals(expected, recent.latest(10));
+        }
+        assertEquals(16, recent.size());
+        assertTrue(recent.covers(16));
+        assertFalse(recent.covers(17));
+    }
+
+    @Test
+    public void testLastNEventsUsesRing() {
+        List<Event> eventList = new CSVEventReader("data/tests/single_client_1000_events_out-of-order.csv").readEvents();
+        Server server = new Server(new Client(0, "test@test.com", "127.0.0.1", 4578));
+        for (Event event : eventList) {
+            server.processIncomingEvent(event);
+        }
+        List<Event> expected = server.checkDuplicate(eventList);
+        for (int n : new int[] {1, 10, 500, 1000}) {
+            List<Event> result = server.lastNEvents(n);
+            int from = Math.max(0, expected.size() - n);
+            assertEquals(expected.subList(from, expected.size()).size(), result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(expected.get(from + i).getTimeStamp(), result.get(i).getTimeStamp());
+                assertEquals(expected.get(from + i).getEntityId(), result.get(i).getEntityId());
+            }
+        }
+    }
+}
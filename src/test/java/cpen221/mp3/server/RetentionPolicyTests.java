@@ -0,0 +1,170 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetentionPolicyTests {
+
+    Client client = new Client(0, "test@test.com", "1.1.1.1", 1);
+
+    @Test
+    public void testCompactionDropsColdEvents() {
+        Server server = new Server(client);
+        server.setRetentionPolicy(new RetentionPolicy(60000));
+        for (int i = 0; i < 10000; i++) {
+            server.logEvent(new SensorEvent(i * 100, 0, i % 4, "TempSensor", i % 50));
+        }
+        server.compact();
+
+        // 999900 is the latest timestamp, so raw events before 939900 are out of the hot window
+        List<?> raw = server.eventsInTimeWindow(new TimeWindow(0, 1000000));
+        assertTrue(raw.size() >= 601 && raw.size() < 601 + 1024);
+        assertEquals(10000, server.lastNEvents(10000).size() + (10000 - raw.size()));
+
+        // one-minute buckets come from the rollup tier, and still cover the dropped events
+        List<RollupBucket> minutes = server.summarizeTimeWindow(new TimeWindow(0, 999999), 60000);
+        long count = 0;
+        for (RollupBucket bucket : minutes) {
+            assertEquals(60000, bucket.getResolution());
+            assertTrue(bucket.getMin() <= bucket.getMean() && bucket.getMean() <= bucket.getMax());
+            count += bucket.getCount();
+        }
+        assertEquals(10000, count);
+        assertEquals(4 * 17, minutes.size());
+
+        // a resolution between tiers picks the finer one
+        assertEquals(1000, server.summarizeTimeWindow(new TimeWindow(0, 5000), 30000).get(0).getResolution());
+    }
+
+    @Test
+    public void testRollupTiersArePruned() {
+        Server server = new Server(client);
+        // seconds are kept for 10 seconds, minutes for 10 minutes
+        server.setRetentionPolicy(new RetentionPolicy(1000,
+                new double[]{1000, 60000}, new double[]{10000, 600000}));
+        for (int i = 0; i < 10000; i++) {
+            server.logEvent(new SensorEvent(i * 100, 0, 3, "TempSensor", i % 50));
+        }
+        server.compact();
+
+        // 999900 is the latest timestamp, so second buckets ending by 989900 are gone
+        List<RollupBucket> seconds = server.summarizeTimeWindow(new TimeWindow(0, 999999), 1000);
+        assertEquals(989000, seconds.get(0).getStartTime());
+        assertEquals(11, seconds.size());
+        List<RollupBucket> minutes = server.summarizeTimeWindow(new TimeWindow(0, 999999), 60000);
+        assertEquals(360000, minutes.get(0).getStartTime());
+        assertEquals(11, minutes.size());
+
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(1000,
+                new double[]{1000, 60000}, new double[]{10000}));
+        assertEquals(1440000, new RetentionPolicy(1000).getRollupRetentions()[0]);
+    }
+
+    @Test
+    public void testQueriesDuringCompaction() throws InterruptedException {
+        Server server = new Server(client);
+        server.setRetentionPolicy(new RetentionPolicy(1000));
+        for (int i = 0; i < 20000; i++) {
+            server.logEvent(new SensorEvent(i, 0, i % 8, "TempSensor", i % 50));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                try {
+                    server.lastNEvents(19000);
+                    server.eventsInTimeWindow(new TimeWindow(0, 1e9));
+                    server.readLogs();
+                } catch (Throwable t) {
+                    failures.add(t);
+                    return;
+                }
+            }
+        });
+        reader.start();
+        for (int i = 20000; i < 60000; i++) {
+            server.logEvent(new SensorEvent(i, 0, i % 8, "TempSensor", i % 50));
+            if (i % 500 == 0) {
+                server.compact();
+            }
+        }
+        done.set(true);
+        reader.join();
+
+        assertTrue(failures.isEmpty(), () -> failures.peek().toString());
+        assertTrue(server.eventsInTimeWindow(new TimeWindow(0, 1e9)).size() < 1000 + 1024 + 500);
+    }
+
+    @Test
+    public void testSummaryMatchesRawEvents() {
+        Server compacting = new Server(client);
+        Server raw = new Server(client);
+        compacting.setRetentionPolicy(new RetentionPolicy(1e12));
+        for (int i = 0; i < 3000; i++) {
+            ActuatorEvent event = new ActuatorEvent(i * 37.5, 0, 7, "Switch", i % 3 == 0);
+            compacting.logEvent(event);
+            raw.logEvent(event);
+            if (i == 1500) {
+                compacting.compact();
+            }
+        }
+
+        TimeWindow window = new TimeWindow(12345, 98765);
+        List<RollupBucket> fromTiers = compacting.summarizeTimeWindow(window, 1000);
+        List<RollupBucket> fromRaw = raw.summarizeTimeWindow(window, 1000);
+        assertEquals(fromRaw.toString(), fromTiers.toString());
+        assertEquals(12000, fromTiers.get(0).getStartTime());
+        assertEquals(98000, fromTiers.get(fromTiers.size() - 1).getStartTime());
+    }
+
+    @Test
+    public void testOutOfOrderEventKeepsLaterEvents() {
+        Server server = new Server(client);
+        server.setRetentionPolicy(new RetentionPolicy(1000));
+        // a late-stamped event logged first holds back the cold events logged after it
+        server.logEvent(new SensorEvent(100000, 0, 1, "TempSensor", 1));
+        for (int i = 0; i < 5000; i++) {
+            server.logEvent(new SensorEvent(i, 0, 2, "TempSensor", 1));
+        }
+        server.compact();
+        assertEquals(5001, server.eventsInTimeWindow(new TimeWindow(0, 1e9)).size());
+    }
+
+    @Test
+    public void testSummarizeWindowRequest() throws IOException {
+        Server server = new Server(client);
+        server.setRetentionPolicy(new RetentionPolicy(60000));
+        for (int i = 0; i < 5000; i++) {
+            server.logEvent(new SensorEvent(i * 100, 0, i % 4, "TempSensor", i % 50));
+        }
+        server.compact();
+
+        Request request = new Request(RequestType.ANALYSIS, RequestCommand.ANALYSIS_SUMMARIZE_WINDOW,
+                "StartTime=0,EndTime=499999,Resolution=60000");
+        try (ServerSocket listener = new ServerSocket(0);
+             Socket requester = new Socket("127.0.0.1", listener.getLocalPort());
+             Socket accepted = listener.accept()) {
+            server.processIncomingRequest(request, accepted);
+            String reply = new BufferedReader(new InputStreamReader(requester.getInputStream())).readLine();
+            assertEquals(server.summarizeTimeWindow(new TimeWindow(0, 499999), 60000).toString(), reply);
+        }
+    }
+}
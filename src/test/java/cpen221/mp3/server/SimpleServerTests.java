@@ -1,16 +1,28 @@
 package cpen221.mp3.server;
 
 import cpen221.mp3.client.Client;
+import cpen221.mp3.client.Request;
+import cpen221.mp3.client.RequestCommand;
+import cpen221.mp3.client.RequestType;
 import cpen221.mp3.entity.Actuator;
 import cpen221.mp3.event.ActuatorEvent;
 import cpen221.mp3.event.Event;
 import cpen221.mp3.event.SensorEvent;
 import cpen221.mp3.CSVEventReader;
+import cpen221.mp3.handler.EventLog;
+import cpen221.mp3.handler.StorageMode;
+import cpen221.mp3.handler.WriteAheadLog;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.*;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SimpleServerTests {
@@ -35,6 +47,19 @@ public class SimpleServerTests {
         assertEquals(true, actuator1.getState());
     }
 
+    @Test
+    public void testSetActuatorStateIfChecksLatestEvent() {
+        Server server = new Server(client);
+        Actuator actuator = new Actuator(98, 0, "Switch", false);
+        for (int i = 0; i < 10; i++) {
+            Event event = eventList.get(i);
+            server.processIncomingEvent(new SensorEvent(event.getTimeStamp(), 0, event.getEntityId(), "TempSensor", 30));
+        }
+        Filter sensorValueFilter = new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23);
+        server.setActuatorStateIf(sensorValueFilter, actuator);
+        assertEquals(true, actuator.getState());
+    }
+
     @Test
     public void testMaxWaitTime() {
 
@@ -67,8 +92,27 @@ public class SimpleServerTests {
             server.processIncomingEvent(eventList.get(i));
         }
         Filter sensorValueFilter = new Filter("value", DoubleOperator.GREATER_THAN_OR_EQUALS, 23);
+        // the latest event satisfies the filter and the actuator has sent an event, so it toggles at once
         server.toggleActuatorStateIf(sensorValueFilter, actuator1);
-        assertEquals(true, actuator1.getState());
+        assertEquals(false, actuator1.getState());
+    }
+
+    @Test
+    public void testToggleRuleRequests() {
+        Server server = new Server(client);
+        Filter filter = new Filter("value", DoubleOperator.LESS_THAN, 0);
+        String data = filter + "," + actuator1;
+
+        server.processIncomingRequest(new Request(RequestType.CONTROL,
+                RequestCommand.CONTROL_TOGGLE_ACTUATOR_STATE, data), null);
+        server.processIncomingRequest(new Request(RequestType.CONTROL,
+                RequestCommand.CONTROL_TOGGLE_ACTUATOR_STATE, data), null);
+        assertEquals(1, server.getControlRules().getRuleCount());
+
+        server.processIncomingRequest(new Request(RequestType.CONTROL,
+                RequestCommand.CONTROL_REMOVE_TOGGLE_ACTUATOR_STATE, data), null);
+        assertEquals(0, server.getControlRules().getRuleCount());
+        assertFalse(server.removeToggleActuatorStateIf(filter, actuator1));
     }
 
     @Test
@@ -82,6 +126,69 @@ public class SimpleServerTests {
         assertEquals(9, result.size());
     }
 
+    @Test
+    public void testWriteEventsInTimeWindowFromSegments(@TempDir Path directory) throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 2048, 5, e -> { })) {
+            for (int i = 0; i < 900; i++) {
+                wal.append(eventList.get(i));
+            }
+            assertTrue(wal.getSegments().size() > 10);
+        }
+        EventLog log = EventLog.open(directory, StorageMode.COLUMNAR);
+        Server server = new Server(client, log);
+        for (int i = 900; i < 1000; i++) {
+            server.processIncomingEvent(eventList.get(i));
+        }
+
+        double[][] windows = {{0.2, 1}, {0, 1000}, {50.5, 80}, {-5, -1}};
+        for (double[] window : windows) {
+            TimeWindow tw = new TimeWindow(window[0], window[1]);
+            StringWriter text = new StringWriter();
+            int written = server.writeEventsInTimeWindow(tw, new PrintWriter(text));
+            List<Event> expected = server.eventsInTimeWindow(tw);
+            assertEquals(expected.size(), written);
+            assertEquals(expected.toString(), text.toString().trim());
+        }
+
+        // compaction keeps the events that are only in the active segment in memory
+        server.setRetentionPolicy(new RetentionPolicy(100));
+        for (int i = 0; i < 4000; i++) {
+            server.processIncomingEvent(new SensorEvent(1000 + i, 0, i % 10, "TempSensor", i));
+        }
+        server.compact();
+        assertTrue(log.getFirstRetained() <= log.getWriteAheadLog().getSealedEvents());
+        StringWriter text = new StringWriter();
+        assertEquals(5000, server.writeEventsInTimeWindow(new TimeWindow(0, 1e9), new PrintWriter(text)));
+        server.setRetentionPolicy(null);
+        log.close();
+    }
+
+    @Test
+    public void testWriteEventsInTimeWindowOutOfOrder(@TempDir Path directory) throws IOException {
+        // timestamps jump back and forth within and across segments, and repeat
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 2048, 5, e -> { })) {
+            for (int i = 0; i < 900; i++) {
+                wal.append(new SensorEvent((i * 37) % 300, 0, i, "TempSensor", i));
+            }
+        }
+        EventLog log = EventLog.open(directory, StorageMode.COLUMNAR);
+        Server server = new Server(client, log);
+        for (int i = 900; i < 1000; i++) {
+            server.processIncomingEvent(new SensorEvent((i * 37) % 300, 0, i, "TempSensor", i));
+        }
+
+        double[][] windows = {{0, 300}, {10, 20}, {150, 150}, {299, 1000}};
+        for (double[] window : windows) {
+            TimeWindow tw = new TimeWindow(window[0], window[1]);
+            StringWriter text = new StringWriter();
+            int written = server.writeEventsInTimeWindow(tw, new PrintWriter(text));
+            List<Event> expected = server.eventsInTimeWindow(tw);
+            assertEquals(expected.size(), written);
+            assertEquals(expected.toString(), text.toString().trim());
+        }
+        log.close();
+    }
+
     @Test
     public void testLastNEvents() {
         Server server = new Server(client);
@@ -205,6 +312,27 @@ public class SimpleServerTests {
         assertEquals(expected,result);
     }
 
+    @Test
+    public void testPredictNextN() {
+        Server server = new Server(client);
+        List<Double> timeStamps = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Event event = eventList.get(i);
+            server.processIncomingEvent(event);
+            if (event.getEntityId() == 0) {
+                timeStamps.add(event.getTimeStamp());
+                values.add(event.getValueDouble());
+            }
+        }
+        assertEquals(new Predictor(0, 3, timeStamps).predict(), server.predictNextNTimeStamps(0, 3));
+        assertEquals(new Predictor(0, 3, values).predict(), server.predictNextNValues(0, 3));
+        assertEquals(List.of(), server.predictNextNValues(1000, 3));
+
+        server.setPredictionBackend(new LocalPredictionBackend());
+        assertEquals(new Predictor(0, 3, values).predict(), server.predictNextNValues(0, 3));
+    }
+
     // @Test
     // public void testClient(){
     //     Server server = new Server
@@ -0,0 +1,101 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SketchTests {
+
+    /**
+     * @return fraction of values at most x
+     */
+    private static double rankOf(double[] sorted, double x) {
+        int below = 0;
+        while (below < sorted.length && sorted[below] <= x) {
+            below++;
+        }
+        return (double) below / sorted.length;
+    }
+
+    @Test
+    public void testQuantilesWithinRankError() {
+        Random random = new Random(2024);
+        double[] values = new double[200000];
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 50 + 400;
+            (i % 3 == 0 ? left : right).update(values[i]);
+        }
+        assertTrue(left.getRetained() < 3 * 200 + 64);
+
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(left);
+        merged.merge(right);
+        assertEquals(values.length, merged.getCount());
+        assertEquals(values.length / 3 + 1, left.getCount());
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double fraction : new double[]{0.01, 0.25, 0.5, 0.95, 0.99}) {
+            assertEquals(fraction, rankOf(sorted, merged.quantile(fraction)), 0.02);
+        }
+        assertEquals(sorted[0], merged.quantile(0));
+        assertEquals(sorted[sorted.length - 1], merged.quantile(1));
+        assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+    }
+
+    @Test
+    public void testDistinctCounterMerges() {
+        DistinctCounter a = new DistinctCounter();
+        DistinctCounter b = new DistinctCounter();
+        for (long key = 0; key < 60000; key++) {
+            a.add(key);
+            a.add(key);
+            b.add(key + 30000);
+        }
+        assertEquals(60000, a.estimate(), 60000 * 0.05);
+        a.merge(b);
+        assertEquals(90000, a.estimate(), 90000 * 0.05);
+
+        DistinctCounter small = new DistinctCounter();
+        for (long key = 0; key < 100; key++) {
+            small.add(key * 7919);
+        }
+        assertEquals(100, small.estimate(), 3);
+    }
+
+    @Test
+    public void testServerSketches() {
+        Server first = new Server(new Client(0, "a@test.com", "1.1.1.1", 1));
+        Server second = new Server(new Client(1, "b@test.com", "1.1.1.1", 1));
+        for (int i = 0; i < 1000; i++) {
+            first.logEvent(new SensorEvent(i, 0, i % 10, "CO2Sensor", i));
+            second.logEvent(new SensorEvent(i, 1, i % 5, "CO2Sensor", 1000 + i));
+            first.logEvent(new ActuatorEvent(i, 0, 100, "Switch", true));
+        }
+        List<Double> quartiles = first.entityTypeQuantiles("CO2Sensor", 0.25, 0.5, 0.75);
+        assertEquals(250, quartiles.get(0), 20);
+        assertEquals(500, quartiles.get(1), 20);
+        assertEquals(750, quartiles.get(2), 20);
+        assertEquals(List.of(3.0, 993.0), first.entityQuantiles(3, 0, 1));
+        assertTrue(first.entityTypeQuantiles("Switch", 0.5).isEmpty());
+        assertEquals(11, first.distinctEntities());
+
+        QuantileSketch merged = first.getQuantileSketch("CO2Sensor");
+        merged.merge(second.getQuantileSketch("CO2Sensor"));
+        assertEquals(1000, merged.quantile(0.5), 40);
+
+        DistinctCounter entities = first.getDistinctEntitySketch();
+        entities.merge(second.getDistinctEntitySketch());
+        assertEquals(16, entities.estimate());
+    }
+}
@@ -0,0 +1,73 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.Event;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionTests {
+
+    @Test
+    public void testPushesMatchingEvents() throws InterruptedException {
+        Server server = new Server(new Client(0, "test@test.com", "127.0.0.1", 4578));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Filter hot = new Filter("value", DoubleOperator.GREATER_THAN, 30);
+        Subscription subscription = server.subscribe(hot, out, 16, OverflowPolicy.DROP_OLDEST);
+
+        Event cold = new SensorEvent(1, 0, 1, "TempSensor", 20);
+        Event warm = new SensorEvent(2, 0, 1, "TempSensor", 31);
+        server.logEvent(cold);
+        server.logEvent(warm);
+
+        for (int i = 0; i < 200 && subscription.getDelivered() < 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, subscription.getDelivered());
+        assertEquals(warm.toString() + "\n", out.toString(StandardCharsets.UTF_8));
+
+        subscription.close();
+        server.logEvent(warm);
+        assertEquals(0, subscription.getQueueLength());
+    }
+
+    @Test
+    public void testSlowSubscriberDoesNotStallLogging() throws InterruptedException {
+        Server server = new Server(new Client(0, "test@test.com", "127.0.0.1", 4578));
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream stalled = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        Filter any = new Filter("timestamp", DoubleOperator.GREATER_THAN_OR_EQUALS, 0);
+        Subscription newest = server.subscribe(any, stalled, 4, OverflowPolicy.DROP_NEWEST);
+        Subscription coalesced = server.subscribe(any, OutputStream.nullOutputStream(), 4, OverflowPolicy.COALESCE);
+        coalesced.close();
+        Subscription perEntity = server.subscribe(any, stalled, 4, OverflowPolicy.COALESCE);
+
+        for (int i = 0; i < 1000; i++) {
+            server.logEvent(new SensorEvent(i, 0, i % 3, "TempSensor", i));
+        }
+
+        assertTrue(newest.getQueueLength() <= 4);
+        assertTrue(newest.getDropped() >= 1000 - 4 - 4);
+        assertTrue(perEntity.getQueueLength() <= 3);
+        assertTrue(perEntity.getDropped() >= 1000 - 3 - 3);
+        assertTrue(coalesced.isClosed());
+        release.countDown();
+    }
+}
@@ -0,0 +1,95 @@
+package cpen221.mp3.server;
+
+import cpen221.mp3.client.Client;
+import cpen221.mp3.event.ActuatorEvent;
+import cpen221.mp3.event.SensorEvent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WindowAggregatorTests {
+
+    @Test
+    public void testSlidingMatchesRecomputation() {
+        WindowAggregator window = new WindowAggregator("TempSensor", WindowKind.SLIDING, 500, 0.5, 0.9, 1);
+        Random random = new Random(221);
+        List<double[]> added = new ArrayList<>();
+        double time = 0;
+        for (int i = 0; i < 5000; i++) {
+            time += random.nextInt(20);
+            double value = random.nextInt(100) / 4.0;
+            assertTrue(window.add(new SensorEvent(time, 0, i % 3, "TempSensor", value)));
+            assertFalse(window.add(new SensorEvent(time, 0, i % 3, "CO2Sensor", value)));
+            added.add(new double[]{time, value});
+
+            if (i % 97 == 0) {
+                List<Double> inWindow = new ArrayList<>();
+                double sum = 0;
+                for (double[] event : added) {
+                    if (event[0] > time - 500) {
+                        inWindow.add(event[1]);
+                        sum += event[1];
+                    }
+                }
+                Collections.sort(inWindow);
+                WindowResult result = window.getResult();
+                assertEquals(inWindow.size(), result.getCount());
+                assertEquals(sum / inWindow.size(), result.getMean(), 1e-9);
+                assertEquals(inWindow.get(0), result.getMin());
+                assertEquals(inWindow.get(inWindow.size() - 1), result.getMax());
+                assertEquals(inWindow.get((int) Math.ceil(0.5 * inWindow.size()) - 1), result.getPercentile(0));
+                assertEquals(inWindow.get((int) Math.ceil(0.9 * inWindow.size()) - 1), result.getPercentile(1));
+                assertEquals(result.getMax(), result.getPercentile(2));
+            }
+        }
+        // too late for the window
+        assertFalse(window.add(new SensorEvent(time - 600, 0, 1, "TempSensor", 1)));
+    }
+
+    @Test
+    public void testTumblingWindows() {
+        WindowAggregator window = new WindowAggregator(4, WindowKind.TUMBLING, 1000);
+        assertEquals(0, window.getResult().getCount());
+        for (int t = 0; t < 2500; t += 100) {
+            window.add(new SensorEvent(t, 0, 4, "PressureSensor", t / 100.0));
+            window.add(new SensorEvent(t, 0, 5, "PressureSensor", -1));
+            window.add(new ActuatorEvent(t, 0, 4, "Switch", true));
+        }
+        WindowResult closed = window.getClosedResult();
+        assertEquals(1000, closed.getStartTime());
+        assertEquals(10, closed.getCount());
+        assertEquals(10, closed.getMin());
+        assertEquals(19, closed.getMax());
+        assertEquals(14.5, closed.getMean());
+
+        WindowResult current = window.getResult();
+        assertEquals(2000, current.getStartTime());
+        assertEquals(5, current.getCount());
+        assertFalse(window.add(new SensorEvent(1999, 0, 4, "PressureSensor", 0)));
+    }
+
+    @Test
+    public void testWindowRequests() {
+        Server server = new Server(new Client(0, "test@test.com", "1.1.1.1", 1));
+        int windowId = server.registerWindow(
+                WindowAggregator.parse("Kind=SLIDING,Length=10,EntityId=2,Percentiles=0.5"));
+        for (int t = 0; t < 100; t++) {
+            server.processIncomingEvent(new SensorEvent(t, 0, 2, "TempSensor", t));
+        }
+        Map<Integer, WindowResult> results = server.windowResults();
+        assertEquals(10, results.get(windowId).getCount());
+        assertEquals(94.5, results.get(windowId).getMean());
+        assertEquals(94, results.get(windowId).getPercentile(0));
+
+        assertTrue(server.removeWindow(windowId));
+        assertTrue(server.windowResults().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> WindowAggregator.parse("Kind=SLIDING,Length=10"));
+    }
+}